@@ -0,0 +1,83 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.AnalyticsLinkService;
+import com.example.shortener.CachingLinkService;
+import com.example.shortener.Durability;
+import com.example.shortener.InstrumentedLinkService;
+import com.example.shortener.LinkMetrics;
+import com.example.shortener.LinkService;
+import com.example.shortener.LinkServiceImpl;
+import com.example.shortener.OffHeapLinkService;
+import com.example.shortener.PersistentLinkService;
+import com.example.shortener.RateLimitedLinkService;
+import com.example.shortener.VisitAnalytics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Реестр реализаций {@link LinkService}, которые прогоняются через общий набор бенчмарков.
+ * Новое хранилище подключается добавлением ветки сюда и значения в {@code @Param("backend")}.
+ * Файлы хранилищ создаются в каталоге, который передает бенчмарк и удаляет после прогона.
+ */
+public final class LinkServiceBackends {
+
+    public static final String MEMORY = "memory";
+    public static final String WAL = "wal";
+    public static final String OFFHEAP = "offheap";
+    /** Кэш горячих ссылок с пакетным сбросом переходов поверх журнала. */
+    public static final String CACHED_WAL = "cached-wal";
+    /** Хранилище в памяти с замером задержек, чтобы видеть цену метрик относительно {@link #MEMORY}. */
+    public static final String INSTRUMENTED = "instrumented";
+    /** Хранилище в памяти за ограничителем частоты с недостижимыми лимитами: цена проверки на каждом вызове. */
+    public static final String RATE_LIMITED = "rate-limited";
+    /** Хранилище в памяти с записью каждого перехода в аналитику: цена записи в кольцевой буфер. */
+    public static final String ANALYTICS = "analytics";
+
+    private static final long OFFHEAP_MAX_LINKS = 20_000_000;
+    private static final long OFFHEAP_ARENA_BYTES = 8L << 30;
+    private static final long CACHE_MAX_BYTES = 256L << 20;
+    private static final long CACHE_FLUSH_INTERVAL_MILLIS = 100;
+
+    private LinkServiceBackends() {
+    }
+
+    /** @param directory каталог для файлов хранилища; хранилищам в памяти не нужен */
+    public static LinkService open(String backend, Path directory) throws Exception {
+        switch (backend) {
+            case MEMORY:
+                return new LinkServiceImpl();
+            case WAL:
+                return new PersistentLinkService(directory, Durability.ASYNC, 0);
+            case OFFHEAP:
+                return new OffHeapLinkService(directory, OFFHEAP_MAX_LINKS, OFFHEAP_ARENA_BYTES);
+            case CACHED_WAL:
+                return new CachingLinkService(open(WAL, directory), CACHE_MAX_BYTES, CACHE_FLUSH_INTERVAL_MILLIS);
+            case INSTRUMENTED:
+                LinkMetrics metrics = new LinkMetrics();
+                return new InstrumentedLinkService(new LinkServiceImpl(Clock.systemUTC(), metrics), metrics);
+            case RATE_LIMITED:
+                return new RateLimitedLinkService(open(MEMORY, directory), 1e9, Integer.MAX_VALUE, 1e9, Integer.MAX_VALUE, 1 << 24);
+            case ANALYTICS:
+                return new AnalyticsLinkService(open(MEMORY, directory), new VisitAnalytics(1 << 20, 1 << 16, 1024, 100));
+            default:
+                throw new IllegalArgumentException("Неизвестное хранилище: " + backend);
+        }
+    }
+
+    /** Удаляет каталог хранилища со всем содержимым: сегменты журнала и многогигабайтную арену off-heap. */
+    public static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.Link;
+import com.example.shortener.LinkService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Общий набор операций {@link LinkService}. Число потоков задают наследники,
+ * остальные измерения - параметры: хранилище, размер хранилища и распределение ключей.
+ * <p>
+ * Режим {@link Mode#SampleTime} дает перцентили задержек, частоту выделения памяти
+ * показывает профилировщик {@code -prof gc}.
+ * <p>
+ * Ссылки, созданные замером {@link #create()}, удаляются после каждой итерации, чтобы
+ * хранилище оставалось размера {@code storeSize}. Место в арене off-heap при этом не
+ * возвращается, поэтому арена рассчитана с запасом. Каждый поток пишет от своего
+ * владельца: общий владелец превратил бы индекс по пользователю в точку конкуренции.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public abstract class LinkServiceBenchmark {
+
+    static final String OWNER = "bench-user";
+    static final String URL = "https://example.com/some/fairly/typical/path?utm_source=benchmark";
+
+    /** Доля обращений к горячим ключам и размер горячего набора при распределении {@code hot}. */
+    private static final double HOT_ACCESS_SHARE = 0.9;
+    private static final int HOT_SET_DIVISOR = 100;
+
+    /** Число владельцев, между которыми распределены ссылки заполненного хранилища. */
+    private static final int OWNERS = 64;
+
+    @Param({LinkServiceBackends.MEMORY, LinkServiceBackends.WAL, LinkServiceBackends.OFFHEAP,
+            LinkServiceBackends.CACHED_WAL, LinkServiceBackends.INSTRUMENTED,
+            LinkServiceBackends.RATE_LIMITED, LinkServiceBackends.ANALYTICS})
+    public String backend;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int storeSize;
+
+    @Param({"uniform", "hot"})
+    public String keyPattern;
+
+    private Path directory;
+    private LinkService linkService;
+    private String[] keys;
+    private int hotSetSize;
+
+    private final Queue<Writer> writers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger writerCount = new AtomicInteger();
+    private final ThreadLocal<Writer> writer = ThreadLocal.withInitial(() -> {
+        Writer created = new Writer(OWNER + "-writer-" + writerCount.getAndIncrement());
+        writers.add(created);
+        return created;
+    });
+
+    /** Владелец и созданные им за итерацию ссылки; список трогает только свой поток. */
+    private static final class Writer {
+        final String owner;
+        final List<String> created = new ArrayList<>();
+
+        Writer(String owner) {
+            this.owner = owner;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void populate() throws Exception {
+        directory = Files.createTempDirectory("bench-" + backend);
+        linkService = LinkServiceBackends.open(backend, directory);
+        keys = new String[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            keys[i] = linkService.create(URL, ownerOf(i), Integer.MAX_VALUE).getShortUrl();
+        }
+        hotSetSize = Math.max(1, storeSize / HOT_SET_DIVISOR);
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeCreated() {
+        for (Writer w : writers) {
+            for (String shortUrl : w.created) {
+                linkService.delete(shortUrl, w.owner);
+            }
+            w.created.clear();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        try {
+            linkService.close();
+        } finally {
+            LinkServiceBackends.deleteDirectory(directory);
+        }
+    }
+
+    private static String ownerOf(int keyIndex) {
+        return OWNER + "-" + (keyIndex % OWNERS);
+    }
+
+    private int nextKeyIndex() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if ("hot".equals(keyPattern) && random.nextDouble() < HOT_ACCESS_SHARE) {
+            return random.nextInt(hotSetSize);
+        }
+        return random.nextInt(keys.length);
+    }
+
+    private String nextKey() {
+        return keys[nextKeyIndex()];
+    }
+
+    @Benchmark
+    public Link create() {
+        Writer w = writer.get();
+        Link link = linkService.create(URL, w.owner, Integer.MAX_VALUE);
+        w.created.add(link.getShortUrl());
+        return link;
+    }
+
+    @Benchmark
+    public void getByShortUrl(Blackhole bh) {
+        bh.consume(linkService.getByShortUrl(nextKey()));
+    }
+
+    @Benchmark
+    public void getOriginalUrlAndRegisterVisit(Blackhole bh) {
+        bh.consume(linkService.getOriginalUrlAndRegisterVisit(nextKey()));
+    }
+
+    @Benchmark
+    public boolean updateLimit() {
+        int index = nextKeyIndex();
+        return linkService.updateLimit(keys[index], ownerOf(index), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Удаление требует существующей ссылки, поэтому замер включает ее создание;
+     * стоимость самого удаления - разность с {@link #create()}.
+     */
+    @Benchmark
+    public boolean createAndDelete() {
+        String owner = writer.get().owner;
+        Link link = linkService.create(URL, owner, Integer.MAX_VALUE);
+        return linkService.delete(link.getShortUrl(), owner);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.shortener.bench;
+
+import org.openjdk.jmh.annotations.Threads;
+
+@Threads(Threads.MAX)
+public class MultiThreadLinkServiceBenchmark extends LinkServiceBenchmark {
+}
@@ -0,0 +1,7 @@
+package com.example.shortener.bench;
+
+import org.openjdk.jmh.annotations.Threads;
+
+@Threads(1)
+public class SingleThreadLinkServiceBenchmark extends LinkServiceBenchmark {
+}
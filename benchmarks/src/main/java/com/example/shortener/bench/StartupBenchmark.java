@@ -0,0 +1,95 @@
+package com.example.shortener.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время от запуска JVM до завершения короткого пакетного прогона консольного приложения:
+ * каждый вызов стартует новый процесс {@code java -jar target/shortener.jar --batch --headless}.
+ * <p>
+ * {@code launch}: {@code jar} - обычный запуск, {@code cds} - с архивом классов из
+ * {@code mvn -Pappcds package}. Пути переопределяются свойствами {@code startup.java},
+ * {@code startup.jar} и {@code startup.archive}; по умолчанию бенчмарк запускается из корня проекта.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String COMMANDS = "create https://example.com/startup 5\nlist\ninfo missing1\nmissing1\n";
+
+    @Param({"jar", "cds"})
+    public String launch;
+
+    private List<String> command;
+    private Path commandsFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        String java = System.getProperty("startup.java", Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        Path jar = Paths.get(System.getProperty("startup.jar", "target/shortener.jar"));
+        Path archive = Paths.get(System.getProperty("startup.archive", "target/shortener.jsa"));
+        if (!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("Не найден " + jar.toAbsolutePath() + ": выполните mvn package в корне проекта");
+        }
+        commandsFile = Files.createTempFile("startup", ".txt");
+        Files.write(commandsFile, COMMANDS.getBytes(StandardCharsets.UTF_8));
+
+        command = new ArrayList<>();
+        command.add(java);
+        if (launch.equals("cds")) {
+            if (!Files.isRegularFile(archive)) {
+                throw new IllegalStateException("Не найден " + archive.toAbsolutePath() + ": выполните mvn -Pappcds package");
+            }
+            // Без архива JVM молча запустится без него, а с -Xshare:on завершится ошибкой
+            command.add("-Xshare:on");
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-Dstorage.backend=memory");
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--batch");
+        command.add("--headless");
+        command.add(commandsFile.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(commandsFile);
+    }
+
+    @Benchmark
+    public int startAndRunBatch() throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Процесс завершился с кодом " + exitCode + ": " + String.join(" ", command));
+        }
+        return exitCode;
+    }
+}
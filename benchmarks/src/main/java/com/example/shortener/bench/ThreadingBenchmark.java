@@ -0,0 +1,97 @@
+package com.example.shortener.bench;
+
+import com.example.shortener.AsyncLinkService;
+import com.example.shortener.LinkServiceImpl;
+import com.example.shortener.ThreadingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Потоки платформы против виртуальных на блокирующем хранилище: каждый переход ждет
+ * {@code latencyMicros}, как запрос к журналу на диске или к узлу кластера.
+ * За вызов бенчмарка отправляется {@code concurrency} асинхронных переходов и ожидаются все.
+ * <p>
+ * Вариант {@code virtual} требует Java 21; на более старой JVM запуск завершается ошибкой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadingBenchmark {
+
+    /** Пул потоков платформы: типичный размер пула обработчиков запросов. */
+    private static final int PLATFORM_THREADS = 200;
+    private static final int STORE_SIZE = 10_000;
+
+    @Param({"platform", "virtual"})
+    public String threadingModel;
+
+    @Param({"1000", "10000"})
+    public int concurrency;
+
+    @Param({"1000"})
+    public long latencyMicros;
+
+    private ExecutorService executor;
+    private AsyncLinkService linkService;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ThreadingModel model = ThreadingModel.valueOf(threadingModel.toUpperCase(Locale.ROOT));
+        if (model == ThreadingModel.VIRTUAL && !ThreadingModel.isVirtualSupported()) {
+            throw new IllegalStateException("Виртуальные потоки требуют Java 21");
+        }
+        long latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        LinkServiceImpl storage = new LinkServiceImpl() {
+            @Override
+            public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+                LockSupport.parkNanos(latencyNanos);
+                return super.getOriginalUrlAndRegisterVisit(shortUrl);
+            }
+        };
+        keys = new String[STORE_SIZE];
+        for (int i = 0; i < STORE_SIZE; i++) {
+            keys[i] = storage.create(LinkServiceBenchmark.URL, LinkServiceBenchmark.OWNER, Integer.MAX_VALUE).getShortUrl();
+        }
+        executor = model.newTaskExecutor("bench-request", PLATFORM_THREADS);
+        linkService = AsyncLinkService.adapt(storage, executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        linkService.close();
+    }
+
+    @Benchmark
+    public int resolveConcurrently() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            futures[i] = linkService.getOriginalUrlAndRegisterVisit(keys[i % STORE_SIZE]);
+        }
+        CompletableFuture.allOf(futures).join();
+        return futures.length;
+    }
+}
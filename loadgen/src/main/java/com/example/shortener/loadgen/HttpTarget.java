@@ -0,0 +1,132 @@
+package com.example.shortener.loadgen;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * HTTP-фронтенд {@code RedirectHttpServer}. Размер хранилища, очистки и куча сервера
+ * берутся из {@code GET /metrics}, если эндпоинт включен; сборки мусора сервера не видны.
+ */
+final class HttpTarget implements LoadTarget {
+
+    private static final String USER_HEADER = "X-User-Uuid";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(TIMEOUT)
+            .build();
+
+    HttpTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public String create(String url, String userUuid, int limit) throws Exception {
+        String body = "url=" + URLEncoder.encode(url, StandardCharsets.UTF_8) + "&limit=" + limit;
+        HttpResponse<String> response = send(request("/api/links", userUuid)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+        expect(response, 201);
+        return field(response.body(), "shortUrl");
+    }
+
+    @Override
+    public boolean redirect(String shortUrl) throws Exception {
+        return found(send(request("/" + shortUrl, null).GET()), 302);
+    }
+
+    @Override
+    public boolean info(String shortUrl) throws Exception {
+        return found(send(request("/api/links/" + shortUrl, null).GET()), 200);
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int limit) throws Exception {
+        return found(send(request("/api/links/" + shortUrl + "?limit=" + limit, userUuid)
+                .PUT(HttpRequest.BodyPublishers.noBody())), 204);
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) throws Exception {
+        return found(send(request("/api/links/" + shortUrl, userUuid).DELETE()), 204);
+    }
+
+    @Override
+    public ServiceStats stats() throws Exception {
+        ServiceStats stats = new ServiceStats();
+        HttpResponse<String> response = send(request("/metrics", null).GET());
+        if (response.statusCode() != 200) {
+            return stats;
+        }
+        for (String line : response.body().split("\n")) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            int space = line.lastIndexOf(' ');
+            if (space < 0) {
+                continue;
+            }
+            String name = line.substring(0, space);
+            switch (name) {
+                case "shortener_links_stored":
+                    stats.storeSize = Long.parseLong(line.substring(space + 1));
+                    break;
+                case "shortener_purge_runs_total":
+                    stats.purgeRuns = Long.parseLong(line.substring(space + 1));
+                    break;
+                case "shortener_jvm_heap_used_bytes":
+                    stats.heapUsedBytes = Long.parseLong(line.substring(space + 1));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        // HttpClient закрывает соединения сам при сборке мусора
+    }
+
+    private HttpRequest.Builder request(String path, String userUuid) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT);
+        return userUuid != null ? builder.header(USER_HEADER, userUuid) : builder;
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws Exception {
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static boolean found(HttpResponse<String> response, int success) {
+        if (response.statusCode() == success) {
+            return true;
+        }
+        expect(response, 404);
+        return false;
+    }
+
+    private static void expect(HttpResponse<String> response, int status) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static String field(String json, String name) {
+        String key = "\"" + name + "\":\"";
+        int start = json.indexOf(key);
+        if (start < 0) {
+            throw new IllegalStateException("В ответе нет поля " + name + ": " + json);
+        }
+        start += key.length();
+        return json.substring(start, json.indexOf('"', start));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.shortener.loadgen;
+
+import com.example.shortener.Configuration;
+import com.example.shortener.LinkMetrics;
+import com.example.shortener.LinkService;
+import com.example.shortener.LinkServiceFactory;
+import com.example.shortener.LinkServiceImpl;
+import com.example.shortener.OffHeapLinkService;
+import com.example.shortener.PersistentLinkService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Хранилище в процессе генератора: видны его куча, сборки мусора и размер. */
+final class InProcessTarget implements LoadTarget {
+
+    private static final long OFFHEAP_MAX_LINKS = 20_000_000;
+    private static final long OFFHEAP_ARENA_BYTES = 8L << 30;
+
+    private final LinkService service;
+    private final LinkMetrics metrics;
+    // Временный каталог хранилища, удаляется при закрытии; null для хранилищ без файлов
+    private final Path directory;
+
+    private InProcessTarget(LinkService service, LinkMetrics metrics, Path directory) {
+        this.service = service;
+        this.metrics = metrics;
+        this.directory = directory;
+    }
+
+    /**
+     * @param backend   memory, wal, offheap или config (хранилище и декораторы из {@code config.properties})
+     * @param timeScale во сколько раз ускорить часы хранилища; поддерживают memory и wal
+     */
+    static InProcessTarget open(String backend, double timeScale) throws IOException {
+        LinkMetrics metrics = new LinkMetrics();
+        Clock clock = timeScale == 1 ? Clock.systemDefaultZone() : new ScaledClock(timeScale);
+        switch (backend) {
+            case "memory":
+                return new InProcessTarget(new LinkServiceImpl(clock, metrics), metrics, null);
+            case "wal":
+                Path walDirectory = Files.createTempDirectory("loadgen-wal");
+                return new InProcessTarget(new PersistentLinkService(walDirectory, Configuration.getWalDurability(),
+                        Configuration.getSnapshotIntervalSeconds(), clock, metrics), metrics, walDirectory);
+            case "offheap":
+                Path offHeapDirectory = Files.createTempDirectory("loadgen-offheap");
+                OffHeapLinkService offHeap = new OffHeapLinkService(offHeapDirectory, OFFHEAP_MAX_LINKS, OFFHEAP_ARENA_BYTES);
+                metrics.gauge("links_stored", offHeap::size);
+                return new InProcessTarget(offHeap, metrics, offHeapDirectory);
+            case "config":
+                return new InProcessTarget(LinkServiceFactory.fromConfiguration(metrics), metrics, null);
+            default:
+                throw new IllegalArgumentException("Неизвестное хранилище: " + backend);
+        }
+    }
+
+    @Override
+    public String create(String url, String userUuid, int limit) {
+        return service.create(url, userUuid, limit).getShortUrl();
+    }
+
+    @Override
+    public boolean redirect(String shortUrl) {
+        return service.resolveAndRegisterVisit(shortUrl) != null;
+    }
+
+    @Override
+    public boolean info(String shortUrl) {
+        return service.lookup(shortUrl) != null;
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int limit) {
+        return service.updateLimit(shortUrl, userUuid, limit);
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        return service.delete(shortUrl, userUuid);
+    }
+
+    @Override
+    public ServiceStats stats() {
+        ServiceStats stats = new ServiceStats();
+        stats.sampleLocalJvm();
+        Long stored = metrics.getGauges().get("links_stored");
+        stats.storeSize = stored != null ? stored : -1;
+        stats.purgeRuns = metrics.getPurgeRuns();
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } finally {
+            if (directory != null) {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    // Журнал и арена off-heap за долгий прогон занимают гигабайты и не нужны после него
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось удалить каталог хранилища " + directory, e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.shortener.loadgen;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Генератор нагрузки для долгих прогонов: воспроизводит продовые запросы к {@code LinkService}
+ * в процессе или к HTTP-фронтенду и раз в интервал печатает пропускную способность,
+ * перцентили задержек, кучу, сборки мусора и размер хранилища.
+ * <p>
+ * Рабочий набор - {@code --keys} живых ссылок, популярность которых распределена по Ципфу.
+ * Переход по ссылке, которая истекла или исчерпала лимит, считается промахом, и на ее место
+ * создается новая; удаление тоже заменяет ссылку новой. Создания кладут новую ссылку на
+ * случайное место, а старая остается в хранилище до истечения срока жизни - так хранилище
+ * проходит через весь цикл роста и очистки. {@code --time-scale} ускоряет часы хранилища
+ * в процессе, чтобы сутки срока жизни укладывались в минуты прогона.
+ * <p>
+ * С {@code --rate} нагрузка открытая: задержка отсчитывается от запланированного момента
+ * запроса, поэтому паузы сервиса видны в перцентилях, а не прячутся в снижении частоты.
+ *
+ * <pre>
+ * java -jar loadgen/target/loadgen.jar [--target memory|wal|offheap|config|http://host:port]
+ *     [--duration 8h] [--threads N] [--rate ops/s] [--mix create=5,redirect=80,info=10,update=3,delete=2]
+ *     [--keys N] [--zipf s] [--users N] [--limit N] [--time-scale x] [--interval 10s] [--csv file]
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final String URL_PREFIX = "https://example.com/loadgen/";
+
+    private final LoadOptions options;
+    private final LoadTarget target;
+    private final LoadReport report;
+    private final ZipfSampler popularity;
+    private final AtomicReferenceArray<Entry> pool;
+    private final String[] users;
+    private volatile boolean running = true;
+
+    private LoadGenerator(LoadOptions options, LoadTarget target, LoadReport report) {
+        this.options = options;
+        this.target = target;
+        this.report = report;
+        this.popularity = new ZipfSampler(options.keys, options.zipfExponent);
+        this.pool = new AtomicReferenceArray<>(options.keys);
+        this.users = new String[options.users];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        System.out.println("Нагрузка: " + options);
+        try (LoadTarget target = options.openTarget();
+             LoadReport report = new LoadReport(System.out, options.csvFile)) {
+            new LoadGenerator(options, target, report).run();
+        }
+    }
+
+    private void run() throws Exception {
+        preload();
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        Thread[] workers = new Thread[options.threads];
+        // Каждый поток держит свою долю общей частоты
+        long intervalNanos = options.rate > 0 ? (long) (1e9 * options.threads / options.rate) : 0;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> work(deadline, intervalNanos), "loadgen-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        long nextReport = startNanos;
+        while (running && System.nanoTime() < deadline) {
+            nextReport += TimeUnit.SECONDS.toNanos(options.intervalSeconds);
+            LockSupport.parkNanos(Math.max(0, Math.min(nextReport, deadline) - System.nanoTime()));
+            report.sample(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), target.stats());
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        report.printSummary(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+    }
+
+    /** Заполняет рабочий набор до начала замеров. */
+    private void preload() throws InterruptedException {
+        System.out.println("Создание " + options.keys + " ссылок рабочего набора...");
+        AtomicInteger next = new AtomicInteger();
+        Thread[] loaders = new Thread[options.threads];
+        for (int i = 0; i < loaders.length; i++) {
+            loaders[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int slot = next.getAndIncrement(); slot < options.keys; slot = next.getAndIncrement()) {
+                    try {
+                        pool.set(slot, newEntry(random));
+                    } catch (Exception e) {
+                        report.error(Operation.CREATE, e);
+                    }
+                }
+            }, "loadgen-preload-" + i);
+            loaders[i].start();
+        }
+        for (Thread loader : loaders) {
+            loader.join();
+        }
+    }
+
+    private void work(long deadline, long intervalNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intended = System.nanoTime();
+        while (running) {
+            long start;
+            if (intervalNanos > 0) {
+                intended += intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                start = intended;
+            } else {
+                start = System.nanoTime();
+            }
+            if (start >= deadline) {
+                return;
+            }
+            Operation operation = options.mix.pick(random.nextDouble());
+            try {
+                execute(operation, random, start);
+            } catch (Exception e) {
+                report.error(operation, e);
+            }
+        }
+    }
+
+    private void execute(Operation operation, ThreadLocalRandom random, long start) throws Exception {
+        if (operation == Operation.CREATE) {
+            Entry entry = newEntry(random);
+            report.record(operation, System.nanoTime() - start);
+            pool.set(random.nextInt(options.keys), entry);
+            return;
+        }
+        int slot = popularity.sample(random) - 1;
+        Entry entry = pool.get(slot);
+        if (entry == null) {
+            // Ссылка этого места не создалась при заполнении из-за ошибки
+            replace(slot, random);
+            return;
+        }
+        boolean found;
+        switch (operation) {
+            case REDIRECT:
+                found = target.redirect(entry.shortUrl);
+                break;
+            case INFO:
+                found = target.info(entry.shortUrl);
+                break;
+            case UPDATE:
+                found = target.updateLimit(entry.shortUrl, entry.userUuid, options.limit);
+                break;
+            case DELETE:
+                found = target.delete(entry.shortUrl, entry.userUuid);
+                break;
+            default:
+                throw new IllegalStateException("Неизвестная операция: " + operation);
+        }
+        report.record(operation, System.nanoTime() - start);
+        if (!found) {
+            report.miss(operation);
+        }
+        if (operation == Operation.DELETE || (!found && operation == Operation.REDIRECT)) {
+            replace(slot, random);
+        }
+    }
+
+    // Замена на новую ссылку измеряется как отдельное создание
+    private void replace(int slot, ThreadLocalRandom random) {
+        long start = System.nanoTime();
+        try {
+            Entry entry = newEntry(random);
+            report.record(Operation.CREATE, System.nanoTime() - start);
+            pool.set(slot, entry);
+        } catch (Exception e) {
+            report.error(Operation.CREATE, e);
+        }
+    }
+
+    private Entry newEntry(ThreadLocalRandom random) throws Exception {
+        String userUuid = users[random.nextInt(users.length)];
+        // Длина пути от 8 до 128 символов, как у обычных ссылок с параметрами
+        StringBuilder url = new StringBuilder(URL_PREFIX);
+        int length = 8 + random.nextInt(121);
+        for (int i = 0; i < length; i++) {
+            url.append((char) ('a' + random.nextInt(26)));
+        }
+        return new Entry(target.create(url.toString(), userUuid, options.limit), userUuid);
+    }
+
+    private static final class Entry {
+        final String shortUrl;
+        final String userUuid;
+
+        Entry(String shortUrl, String userUuid) {
+            this.shortUrl = shortUrl;
+            this.userUuid = userUuid;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.shortener.loadgen;
+
+import com.example.shortener.Configuration;
+
+/** Параметры прогона из командной строки. */
+final class LoadOptions {
+
+    String target = "memory";
+    long durationSeconds = 600;
+    int threads = Runtime.getRuntime().availableProcessors() * 2;
+    /** Операций в секунду на все потоки; 0 - без ограничения (закрытая модель нагрузки). */
+    double rate;
+    OperationMix mix = OperationMix.parse("create=5,redirect=80,info=10,update=3,delete=2");
+    int keys = 100_000;
+    double zipfExponent = 1.1;
+    int users = 10_000;
+    int limit = Configuration.getDefaultLimit();
+    double timeScale = 1;
+    long intervalSeconds = 10;
+    String csvFile;
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--target":
+                    options.target = value;
+                    break;
+                case "--duration":
+                    options.durationSeconds = parseSeconds(value);
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(value);
+                    break;
+                case "--rate":
+                    options.rate = Double.parseDouble(value);
+                    break;
+                case "--mix":
+                    options.mix = OperationMix.parse(value);
+                    break;
+                case "--keys":
+                    options.keys = Integer.parseInt(value);
+                    break;
+                case "--zipf":
+                    options.zipfExponent = Double.parseDouble(value);
+                    break;
+                case "--users":
+                    options.users = Integer.parseInt(value);
+                    break;
+                case "--limit":
+                    options.limit = Integer.parseInt(value);
+                    break;
+                case "--time-scale":
+                    options.timeScale = Double.parseDouble(value);
+                    break;
+                case "--interval":
+                    options.intervalSeconds = parseSeconds(value);
+                    break;
+                case "--csv":
+                    options.csvFile = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+            i++;
+        }
+        if (options.timeScale != 1 && !options.target.equals("memory") && !options.target.equals("wal")) {
+            // Часы offheap и config не подменяются: ускорение молча не действовало бы
+            throw new IllegalArgumentException("--time-scale поддерживается только для хранилищ memory и wal");
+        }
+        return options;
+    }
+
+    boolean isHttp() {
+        return target.startsWith("http://") || target.startsWith("https://");
+    }
+
+    LoadTarget openTarget() throws Exception {
+        return isHttp() ? new HttpTarget(target) : InProcessTarget.open(target, timeScale);
+    }
+
+    /** {@code 90}, {@code 30s}, {@code 15m} или {@code 8h}. */
+    static long parseSeconds(String value) {
+        char unit = value.charAt(value.length() - 1);
+        switch (unit) {
+            case 's':
+                return Long.parseLong(value.substring(0, value.length() - 1));
+            case 'm':
+                return Long.parseLong(value.substring(0, value.length() - 1)) * 60;
+            case 'h':
+                return Long.parseLong(value.substring(0, value.length() - 1)) * 3600;
+            default:
+                return Long.parseLong(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "цель " + target + ", " + durationSeconds + " с, потоков " + threads
+                + ", частота " + (rate > 0 ? rate + " оп/с" : "без ограничения")
+                + ", смесь " + mix + ", ключей " + keys + ", zipf " + zipfExponent
+                + ", пользователей " + users + ", лимит " + limit
+                + (timeScale != 1 ? ", ускорение времени x" + timeScale : "")
+                + ", срок жизни ссылки " + Configuration.getExpirationSeconds() + " с";
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.shortener.loadgen;
+
+import com.example.shortener.LatencyHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки, промахи и ошибки по операциям: за каждый интервал отчета и за весь прогон.
+ * <p>
+ * Раз в интервал печатает строку с пропускной способностью, задержками, кучей, сборками
+ * мусора и размером хранилища (и пишет ее в CSV), а в конце - итог с трендами кучи после
+ * сборки и размера хранилища в час, по которым видна медленная утечка.
+ */
+final class LoadReport implements Closeable {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private final AtomicReferenceArray<LatencyHistogram> interval = new AtomicReferenceArray<>(OPERATIONS.length);
+    private final LatencyHistogram[] total = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] misses = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+    private final AtomicReferenceArray<String> firstErrors = new AtomicReferenceArray<>(OPERATIONS.length);
+    private final PrintStream out;
+    private final PrintWriter csv;
+
+    // Состояние ниже меняет только поток отчета
+    private final List<double[]> trend = new ArrayList<>();
+    private long lastSampleNanos = System.nanoTime();
+    private long lastMisses;
+    private long lastErrors;
+    private long lastGcCount = -1;
+    private long lastGcTimeMillis = -1;
+    private long worstLatencyNanos;
+    private long worstLatencyAtSeconds;
+    private Operation worstOperation;
+
+    LoadReport(PrintStream out, String csvFile) throws IOException {
+        this.out = out;
+        for (Operation operation : OPERATIONS) {
+            interval.set(operation.ordinal(), new LatencyHistogram());
+            total[operation.ordinal()] = new LatencyHistogram();
+            misses[operation.ordinal()] = new LongAdder();
+            errors[operation.ordinal()] = new LongAdder();
+        }
+        this.csv = csvFile != null
+                ? new PrintWriter(Files.newBufferedWriter(Paths.get(csvFile), StandardCharsets.UTF_8))
+                : null;
+        if (csv != null) {
+            StringBuilder header = new StringBuilder("elapsed_s,ops_per_s");
+            for (Operation operation : OPERATIONS) {
+                String op = operation.label();
+                header.append(',').append(op).append("_ops");
+                for (double percentile : PERCENTILES) {
+                    header.append(',').append(op).append("_p").append(formatPercentile(percentile)).append("_us");
+                }
+                header.append(',').append(op).append("_max_us");
+            }
+            header.append(",misses,errors,heap_used_mb,heap_after_gc_mb,gc_count,gc_time_ms,store_size,purge_runs");
+            csv.println(header);
+        }
+    }
+
+    void record(Operation operation, long nanos) {
+        interval.get(operation.ordinal()).record(nanos);
+        total[operation.ordinal()].record(nanos);
+    }
+
+    /** Ссылка не найдена: истек срок жизни, исчерпан лимит или она удалена. */
+    void miss(Operation operation) {
+        misses[operation.ordinal()].increment();
+    }
+
+    void error(Operation operation, Exception e) {
+        errors[operation.ordinal()].increment();
+        firstErrors.compareAndSet(operation.ordinal(), null, String.valueOf(e));
+    }
+
+    /** Закрывает интервал: печатает строку отчета и запоминает точку тренда. */
+    void sample(long elapsedSeconds, ServiceStats stats) {
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        lastSampleNanos = now;
+        LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+        long operations = 0;
+        for (Operation operation : OPERATIONS) {
+            histograms[operation.ordinal()] = interval.getAndSet(operation.ordinal(), new LatencyHistogram());
+            operations += histograms[operation.ordinal()].getCount();
+        }
+        long missCount = sum(misses);
+        long errorCount = sum(errors);
+        long gcCount = stats.gcCount < 0 || lastGcCount < 0 ? -1 : stats.gcCount - lastGcCount;
+        long gcTime = stats.gcTimeMillis < 0 || lastGcTimeMillis < 0 ? -1 : stats.gcTimeMillis - lastGcTimeMillis;
+        lastGcCount = stats.gcCount;
+        lastGcTimeMillis = stats.gcTimeMillis;
+
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT, "[%6d с] %9.0f оп/с", elapsedSeconds, operations / seconds));
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = histograms[operation.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            if (histogram.getMax() > worstLatencyNanos) {
+                worstLatencyNanos = histogram.getMax();
+                worstLatencyAtSeconds = elapsedSeconds;
+                worstOperation = operation;
+            }
+            line.append(" | ").append(operation.label())
+                    .append(" p99 ").append(formatNanos(histogram.valueAtPercentile(99)))
+                    .append(" max ").append(formatNanos(histogram.getMax()));
+        }
+        line.append(" | промахов ").append(missCount - lastMisses).append(", ошибок ").append(errorCount - lastErrors);
+        if (stats.heapUsedBytes >= 0) {
+            line.append(" | куча ").append(stats.heapUsedBytes >> 20).append(" МБ");
+        }
+        if (stats.heapAfterGcBytes >= 0) {
+            line.append(" (после GC ").append(stats.heapAfterGcBytes >> 20).append(" МБ)");
+        }
+        if (gcCount >= 0) {
+            line.append(", GC ").append(gcCount).append(" за ").append(gcTime).append(" мс");
+        }
+        if (stats.storeSize >= 0) {
+            line.append(" | ссылок ").append(stats.storeSize);
+        }
+        if (stats.purgeRuns >= 0) {
+            line.append(", очисток ").append(stats.purgeRuns);
+        }
+        out.println(line);
+
+        if (csv != null) {
+            StringBuilder row = new StringBuilder();
+            row.append(elapsedSeconds).append(',').append(String.format(Locale.ROOT, "%.1f", operations / seconds));
+            for (Operation operation : OPERATIONS) {
+                LatencyHistogram histogram = histograms[operation.ordinal()];
+                row.append(',').append(histogram.getCount());
+                for (double percentile : PERCENTILES) {
+                    row.append(',').append(histogram.valueAtPercentile(percentile) / 1000);
+                }
+                row.append(',').append(histogram.getMax() / 1000);
+            }
+            row.append(',').append(missCount - lastMisses).append(',').append(errorCount - lastErrors)
+                    .append(',').append(stats.heapUsedBytes < 0 ? -1 : stats.heapUsedBytes >> 20)
+                    .append(',').append(stats.heapAfterGcBytes < 0 ? -1 : stats.heapAfterGcBytes >> 20)
+                    .append(',').append(gcCount).append(',').append(gcTime)
+                    .append(',').append(stats.storeSize).append(',').append(stats.purgeRuns);
+            csv.println(row);
+            csv.flush();
+        }
+        lastMisses = missCount;
+        lastErrors = errorCount;
+        trend.add(new double[]{elapsedSeconds, stats.heapAfterGcBytes, stats.storeSize});
+    }
+
+    /** Итог прогона: перцентили по операциям за все время, худшая задержка и тренды. */
+    void printSummary(long elapsedSeconds) {
+        out.println();
+        out.println("Итог за " + elapsedSeconds + " с:");
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = total[operation.ordinal()];
+            if (histogram.getCount() == 0 && errors[operation.ordinal()].sum() == 0) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "  %-8s %12d оп", operation.label(),
+                    histogram.getCount()));
+            for (double percentile : PERCENTILES) {
+                line.append("  p").append(formatPercentile(percentile)).append(' ')
+                        .append(formatNanos(histogram.valueAtPercentile(percentile)));
+            }
+            line.append("  max ").append(formatNanos(histogram.getMax()))
+                    .append("  промахов ").append(misses[operation.ordinal()].sum())
+                    .append("  ошибок ").append(errors[operation.ordinal()].sum());
+            out.println(line);
+            String firstError = firstErrors.get(operation.ordinal());
+            if (firstError != null) {
+                out.println("           первая ошибка: " + firstError);
+            }
+        }
+        if (worstOperation != null) {
+            out.println("  Худшая задержка: " + formatNanos(worstLatencyNanos) + " (" + worstOperation.label()
+                    + " на " + worstLatencyAtSeconds + " с) - сравните с моментами очистки и сборки мусора");
+        }
+        // Первая четверть прогона - прогрев и заполнение хранилища, в тренд не входит
+        List<double[]> steady = trend.subList(trend.size() / 4, trend.size());
+        double heapSlope = slopePerHour(steady, 1);
+        double storeSlope = slopePerHour(steady, 2);
+        if (!Double.isNaN(heapSlope)) {
+            out.println(String.format(Locale.ROOT, "  Тренд кучи после GC: %+.1f МБ/ч", heapSlope / (1 << 20)));
+        }
+        if (!Double.isNaN(storeSlope)) {
+            out.println(String.format(Locale.ROOT, "  Тренд размера хранилища: %+.0f ссылок/ч", storeSlope));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (csv != null) {
+            csv.close();
+        }
+    }
+
+    /** Наклон прямой наименьших квадратов по точкам с известным значением, в единицах за час. */
+    private static double slopePerHour(List<double[]> points, int column) {
+        double n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumXY = 0;
+        double sumXX = 0;
+        for (double[] point : points) {
+            if (point[column] < 0) {
+                continue;
+            }
+            n++;
+            sumX += point[0];
+            sumY += point[column];
+            sumXY += point[0] * point[column];
+            sumXX += point[0] * point[0];
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        if (n < 3 || denominator == 0) {
+            return Double.NaN;
+        }
+        return (n * sumXY - sumX * sumY) / denominator * 3600;
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long sum = 0;
+        for (LongAdder adder : adders) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1000) {
+            return nanos + " нс";
+        }
+        if (nanos < 1_000_000) {
+            return (nanos / 1000) + " мкс";
+        }
+        return String.format(Locale.ROOT, "%.1f мс", nanos / 1e6);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
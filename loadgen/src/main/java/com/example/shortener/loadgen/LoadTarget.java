@@ -0,0 +1,26 @@
+package com.example.shortener.loadgen;
+
+/**
+ * То, что нагружает генератор: хранилище в том же процессе или HTTP-фронтенд.
+ * Отказ сервиса (например, 429 или 503) приводит к исключению и считается ошибкой.
+ */
+interface LoadTarget extends AutoCloseable {
+
+    /** @return короткий код созданной ссылки */
+    String create(String url, String userUuid, int limit) throws Exception;
+
+    /** @return false, если ссылки нет, срок ее жизни истек или исчерпан лимит */
+    boolean redirect(String shortUrl) throws Exception;
+
+    boolean info(String shortUrl) throws Exception;
+
+    boolean updateLimit(String shortUrl, String userUuid, int limit) throws Exception;
+
+    boolean delete(String shortUrl, String userUuid) throws Exception;
+
+    /** Состояние сервиса для отчета; неизвестные значения равны -1. */
+    ServiceStats stats() throws Exception;
+
+    @Override
+    void close() throws Exception;
+}
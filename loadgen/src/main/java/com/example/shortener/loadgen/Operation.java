@@ -0,0 +1,14 @@
+package com.example.shortener.loadgen;
+
+/** Вид запроса в смеси нагрузки. */
+enum Operation {
+    CREATE,
+    REDIRECT,
+    INFO,
+    UPDATE,
+    DELETE;
+
+    String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.shortener.loadgen;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Доли операций в нагрузке, например {@code create=5,redirect=80,info=10,update=3,delete=2}. */
+final class OperationMix {
+
+    private final Operation[] operations = Operation.values();
+    private final double[] cumulative = new double[operations.length];
+    private final Map<Operation, Double> weights;
+    // На случай, когда u больше последней накопленной доли из-за округления
+    private Operation last;
+
+    private OperationMix(Map<Operation, Double> weights) {
+        this.weights = weights;
+        double total = 0;
+        for (double weight : weights.values()) {
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Сумма долей операций должна быть положительной");
+        }
+        double running = 0;
+        for (int i = 0; i < operations.length; i++) {
+            double weight = weights.getOrDefault(operations[i], 0.0);
+            running += weight / total;
+            cumulative[i] = running;
+            if (weight > 0) {
+                last = operations[i];
+            }
+        }
+    }
+
+    static OperationMix parse(String spec) {
+        Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Ожидается операция=доля: " + part);
+            }
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase());
+            double weight = Double.parseDouble(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Доля не может быть отрицательной: " + part);
+            }
+            weights.put(operation, weight);
+        }
+        return new OperationMix(weights);
+    }
+
+    /** Операция для равномерно распределенного {@code u} из [0, 1). */
+    Operation pick(double u) {
+        for (int i = 0; i < cumulative.length; i++) {
+            if (u < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Operation, Double> entry : weights.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey().label()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
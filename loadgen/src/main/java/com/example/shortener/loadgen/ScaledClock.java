@@ -0,0 +1,48 @@
+package com.example.shortener.loadgen;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Часы, идущие в {@code scale} раз быстрее настоящих: ссылки со сроком жизни в сутки
+ * истекают за минуты прогона, и очистка работает на полном потоке истечений.
+ */
+final class ScaledClock extends Clock {
+
+    private final long startMillis;
+    private final long startNanos;
+    private final double scale;
+    private final ZoneId zone;
+
+    ScaledClock(double scale) {
+        this(System.currentTimeMillis(), System.nanoTime(), scale, ZoneId.systemDefault());
+    }
+
+    private ScaledClock(long startMillis, long startNanos, double scale, ZoneId zone) {
+        this.startMillis = startMillis;
+        this.startNanos = startNanos;
+        this.scale = scale;
+        this.zone = zone;
+    }
+
+    @Override
+    public long millis() {
+        return startMillis + (long) ((System.nanoTime() - startNanos) / 1e6 * scale);
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis());
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new ScaledClock(startMillis, startNanos, scale, zone);
+    }
+}
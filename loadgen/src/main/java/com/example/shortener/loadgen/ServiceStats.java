@@ -0,0 +1,38 @@
+package com.example.shortener.loadgen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/** Снимок состояния нагружаемого сервиса; неизвестные значения равны -1. */
+final class ServiceStats {
+
+    long storeSize = -1;
+    long purgeRuns = -1;
+    long heapUsedBytes = -1;
+    /** Занятая куча сразу после последней сборки: медленная утечка видна как ее рост. */
+    long heapAfterGcBytes = -1;
+    long gcCount = -1;
+    long gcTimeMillis = -1;
+
+    /** Заполняет показатели кучи и сборщика мусора текущей JVM. */
+    void sampleLocalJvm() {
+        heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long afterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) {
+                afterGc += usage.getUsed();
+            }
+        }
+        heapAfterGcBytes = afterGc;
+        gcCount = 0;
+        gcTimeMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTimeMillis += Math.max(0, collector.getCollectionTime());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.shortener;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Декоратор, записывающий каждый успешный переход в {@link VisitAnalytics}.
+ * Запись - одна операция с кольцевым буфером без блокировок, агрегаты считаются в фоне.
+ */
+public class AnalyticsLinkService implements LinkService {
+
+    private final LinkService delegate;
+    private final VisitAnalytics analytics;
+
+    public AnalyticsLinkService(LinkService delegate, VisitAnalytics analytics) {
+        this.delegate = delegate;
+        this.analytics = analytics;
+    }
+
+    public VisitAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        return delegate.create(originalUrl, userUuid, limit);
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return delegate.getByShortUrl(shortUrl);
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        return delegate.lookup(shortUrl);
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        String originalUrl = delegate.resolveAndRegisterVisit(shortUrl);
+        if (originalUrl != null) {
+            analytics.record(shortUrl);
+        }
+        return originalUrl;
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        int registered = delegate.registerVisits(shortUrl, count);
+        long code = ShortCode.encode(shortUrl);
+        for (int i = 0; i < registered; i++) {
+            analytics.record(code);
+        }
+        return registered;
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        return delegate.delete(shortUrl, userUuid);
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        return delegate.updateLimit(shortUrl, userUuid, newLimit);
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        return delegate.listByUser(userUuid, offset, limit);
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        return delegate.deleteAllByUser(userUuid);
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        return delegate.updateLimitForUser(userUuid, newLimit);
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        return delegate.importLink(link);
+    }
+
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        return delegate.importLinks(links);
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        delegate.forEachLink(action);
+    }
+
+    @Override
+    public void close() {
+        analytics.close();
+        delegate.close();
+    }
+}
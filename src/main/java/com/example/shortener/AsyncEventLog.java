@@ -0,0 +1,153 @@
+package com.example.shortener;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронный структурированный журнал событий хранилища.
+ * <p>
+ * Поток запроса только кладет событие в ограниченную очередь; строка в формате logfmt
+ * ({@code time=... level=INFO event=link_expired short_url=... msg="..."}) собирается и
+ * печатается отдельным фоновым потоком. Если очередь переполнена, событие отбрасывается
+ * и учитывается в {@link #getDroppedCount()}, чтобы медленный вывод не тормозил переходы.
+ * Фоновый поток запускается первым событием: короткий запуск без событий обходится без него.
+ */
+final class AsyncEventLog {
+
+    /** Вид события и шаблон сообщения для человека; {@code %s} - объект события. */
+    enum Event {
+        LINK_EXPIRED("link_expired", "short_url", "Уведомление: Ссылка %s удалена по истечении срока жизни."),
+        LIMIT_EXHAUSTED("limit_exhausted", "short_url", "Уведомление: Лимит для ссылки %s исчерпан, ссылка удалена."),
+        PURGE("purge", "removed", "Произведена плановая очистка: удалено истекших ссылок - %s.");
+
+        private final String name;
+        private final String key;
+        private final String template;
+
+        Event(String name, String key, String template) {
+            this.name = name;
+            this.key = key;
+            this.template = template;
+        }
+    }
+
+    private static final class Entry {
+        final long timeMillis;
+        final Event event;
+        final String subject;
+
+        Entry(long timeMillis, Event event, String subject) {
+            this.timeMillis = timeMillis;
+            this.event = event;
+            this.subject = subject;
+        }
+    }
+
+    // Общий журнал создается при первом обращении, а не при загрузке LinkServiceImpl
+    private static final class Shared {
+        static final AsyncEventLog INSTANCE = new AsyncEventLog(System.out, Configuration.getLogQueueCapacity());
+    }
+
+    private final BlockingQueue<Entry> queue;
+    private final PrintStream out;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong accepted = new AtomicLong();
+    private volatile long written;
+    private final Thread writer;
+    private volatile boolean started;
+
+    AsyncEventLog(PrintStream out, int capacity) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = new Thread(this::writeLoop, "event-log");
+        this.writer.setDaemon(true);
+    }
+
+    static AsyncEventLog shared() {
+        return Shared.INSTANCE;
+    }
+
+    void log(Event event, String subject) {
+        if (!started) {
+            start();
+        }
+        if (queue.offer(new Entry(System.currentTimeMillis(), event, subject))) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** Ждет, пока фоновый поток допишет все события, принятые до вызова. */
+    void flush() {
+        long target = accepted.get();
+        while (written < target && started && writer.isAlive()) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void start() {
+        if (started) {
+            return;
+        }
+        writer.start();
+        // Поток-демон не держит JVM, поэтому остаток очереди дописывается при завершении
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "event-log-shutdown"));
+        started = true;
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        StringBuilder line = new StringBuilder(160);
+        while (true) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                write(batch, line);
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        write(batch, new StringBuilder(160));
+    }
+
+    // Вывод последовательный: фоновый поток и flush не перемешивают строки
+    private synchronized void write(List<Entry> batch, StringBuilder line) {
+        for (Entry entry : batch) {
+            line.setLength(0);
+            line.append("time=").append(Instant.ofEpochMilli(entry.timeMillis))
+                    .append(" level=INFO event=").append(entry.event.name)
+                    .append(' ').append(entry.event.key).append('=').append(entry.subject)
+                    .append(" msg=\"").append(String.format(entry.event.template, entry.subject)).append('"');
+            out.println(line);
+        }
+        out.flush();
+        written += batch.size();
+    }
+}
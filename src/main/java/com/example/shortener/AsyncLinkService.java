@@ -0,0 +1,40 @@
+package com.example.shortener;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Асинхронный вариант {@link LinkService}: операции возвращают {@link CompletableFuture}
+ * и не блокируют вызывающий поток. Ошибки хранилища завершают будущее исключением.
+ */
+public interface AsyncLinkService extends AutoCloseable {
+
+    CompletableFuture<Link> create(String originalUrl, String userUuid, int limit);
+
+    CompletableFuture<Optional<Link>> getByShortUrl(String shortUrl);
+
+    CompletableFuture<Optional<String>> getOriginalUrlAndRegisterVisit(String shortUrl);
+
+    CompletableFuture<Boolean> delete(String shortUrl, String userUuid);
+
+    CompletableFuture<Boolean> updateLimit(String shortUrl, String userUuid, int newLimit);
+
+    CompletableFuture<List<Link>> listByUser(String userUuid, int offset, int limit);
+
+    CompletableFuture<Integer> deleteAllByUser(String userUuid);
+
+    CompletableFuture<Integer> updateLimitForUser(String userUuid, int newLimit);
+
+    /**
+     * Асинхронная обертка над синхронным хранилищем: каждый вызов выполняется на {@code executor},
+     * например на виртуальных потоках {@link ThreadingModel#newTaskExecutor(String, int)}.
+     */
+    static AsyncLinkService adapt(LinkService linkService, Executor executor) {
+        return new AsyncLinkServiceAdapter(linkService, executor);
+    }
+
+    @Override
+    default void close() {}
+}
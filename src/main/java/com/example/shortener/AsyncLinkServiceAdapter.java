@@ -0,0 +1,66 @@
+package com.example.shortener;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncLinkService} поверх синхронного {@link LinkService}: вызовы выполняются на
+ * переданном исполнителе. Исполнитель принадлежит вызывающему коду и здесь не закрывается.
+ */
+public class AsyncLinkServiceAdapter implements AsyncLinkService {
+
+    private final LinkService delegate;
+    private final Executor executor;
+
+    public AsyncLinkServiceAdapter(LinkService delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Link> create(String originalUrl, String userUuid, int limit) {
+        return CompletableFuture.supplyAsync(() -> delegate.create(originalUrl, userUuid, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<Link>> getByShortUrl(String shortUrl) {
+        return CompletableFuture.supplyAsync(() -> delegate.getByShortUrl(shortUrl), executor);
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return CompletableFuture.supplyAsync(() -> delegate.getOriginalUrlAndRegisterVisit(shortUrl), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(String shortUrl, String userUuid) {
+        return CompletableFuture.supplyAsync(() -> delegate.delete(shortUrl, userUuid), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateLimit(String shortUrl, String userUuid, int newLimit) {
+        return CompletableFuture.supplyAsync(() -> delegate.updateLimit(shortUrl, userUuid, newLimit), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<Link>> listByUser(String userUuid, int offset, int limit) {
+        return CompletableFuture.supplyAsync(() -> delegate.listByUser(userUuid, offset, limit), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> deleteAllByUser(String userUuid) {
+        return CompletableFuture.supplyAsync(() -> delegate.deleteAllByUser(userUuid), executor);
+    }
+
+    @Override
+    public CompletableFuture<Integer> updateLimitForUser(String userUuid, int newLimit) {
+        return CompletableFuture.supplyAsync(() -> delegate.updateLimitForUser(userUuid, newLimit), executor);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.shortener;
+
+import java.awt.Desktop;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Открытие ссылки в браузере через {@link Desktop}. Вынесено из {@link ConsoleApp}, чтобы AWT
+ * загружался только при первом переходе в интерактивном режиме, а без графики - никогда.
+ */
+final class BrowserLauncher {
+
+    private BrowserLauncher() {
+    }
+
+    /** @return сообщение пользователю о результате */
+    static String browse(String url) {
+        if (!Desktop.isDesktopSupported() || !Desktop.getDesktop().isSupported(Desktop.Action.BROWSE)) {
+            return "Автоматическое открытие браузера не поддерживается. Пожалуйста, откройте ссылку вручную.";
+        }
+        try {
+            Desktop.getDesktop().browse(new URI(url));
+            return "Команда на открытие браузера отправлена.";
+        } catch (IOException | URISyntaxException e) {
+            return "Произошла ошибка при попытке открыть ссылку: " + e.getMessage();
+        }
+    }
+}
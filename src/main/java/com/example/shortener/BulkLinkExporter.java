@@ -0,0 +1,57 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Clock;
+
+/**
+ * Потоковая выгрузка всех действующих ссылок хранилища в {@link LinkRecordFormat}.
+ * Ссылки не собираются в список: каждая пишется в буфер сразу при обходе хранилища.
+ */
+public class BulkLinkExporter {
+
+    private final LinkService source;
+    private final Clock clock;
+
+    public BulkLinkExporter(LinkService source) {
+        this(source, Clock.systemDefaultZone());
+    }
+
+    public BulkLinkExporter(LinkService source, Clock clock) {
+        this.source = source;
+        this.clock = clock;
+    }
+
+    /** @return число выгруженных ссылок; истекшие ссылки пропускаются */
+    public long export(Writer output, LinkRecordFormat format) throws IOException {
+        String header = format.header();
+        if (header != null) {
+            output.write(header);
+            output.write(System.lineSeparator());
+        }
+        long now = clock.millis();
+        long[] exported = new long[1];
+        StringBuilder line = new StringBuilder(256);
+        try {
+            source.forEachLink(link -> {
+                if (link.isExpiredAt(now)) {
+                    return;
+                }
+                line.setLength(0);
+                format.write(link, line);
+                line.append(System.lineSeparator());
+                try {
+                    output.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        output.flush();
+        return exported[0];
+    }
+}
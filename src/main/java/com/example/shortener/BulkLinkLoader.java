@@ -0,0 +1,251 @@
+package com.example.shortener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потоковая загрузка ссылок с сохранением исходных коротких кодов.
+ * <p>
+ * Поток чтения режет вход на пачки строк и кладет их в ограниченную очередь, поэтому
+ * в памяти одновременно находится не больше {@code 2 * threads} пачек. Рабочие потоки
+ * разбирают строки, проверяют URL ({@link UrlValidator}) и добавляют пачку одним вызовом
+ * {@link LinkService#importLinks(List)}. Отклоненные строки с причиной пишутся в
+ * {@code rejects}, ход загрузки сообщается {@link ProgressListener}.
+ */
+public class BulkLinkLoader {
+
+    private static final long EXPIRATION_SECONDS = Configuration.getExpirationSeconds();
+    private static final int DEFAULT_LIMIT = Configuration.getDefaultLimit();
+    private static final String[] POISON = new String[0];
+
+    private final LinkService target;
+    private final int threads;
+    private final int batchSize;
+    private final Clock clock;
+
+    public BulkLinkLoader(LinkService target, int threads, int batchSize) {
+        this(target, threads, batchSize, Clock.systemDefaultZone());
+    }
+
+    public BulkLinkLoader(LinkService target, int threads, int batchSize, Clock clock) {
+        this.target = target;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.clock = clock;
+    }
+
+    /** Сообщается после каждой прочитанной пачки. */
+    public interface ProgressListener {
+        void onProgress(long read, long imported, long rejected);
+    }
+
+    /** Итог загрузки. */
+    public static final class Report {
+        private final long read;
+        private final long imported;
+        private final long rejected;
+        private final long elapsedMillis;
+
+        Report(long read, long imported, long rejected, long elapsedMillis) {
+            this.read = read;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRead() {
+            return read;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "прочитано " + read + ", загружено " + imported + ", отклонено " + rejected
+                    + " за " + elapsedMillis + " мс";
+        }
+    }
+
+    /**
+     * Загружает все строки {@code input}.
+     *
+     * @param rejects  куда писать отклоненные строки ({@code номер\tпричина\tстрока}), может быть null
+     * @param listener получатель хода загрузки, может быть null
+     */
+    public Report load(BufferedReader input, LinkRecordFormat format, Writer rejects, ProgressListener listener)
+            throws IOException {
+        long start = System.nanoTime();
+        LongAdder imported = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        BlockingQueue<String[]> queue = new ArrayBlockingQueue<>(threads * 2);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(workers.submit(() -> {
+                work(queue, format, rejects, imported, rejected);
+                return null;
+            }));
+        }
+
+        long read = 0;
+        // Номер строки в файле вместе с заголовком; read считает только строки данных
+        long lineNumber = 0;
+        try {
+            String[] batch = new String[batchSize + 1];
+            int size = 0;
+            String line;
+            boolean first = true;
+            while ((line = input.readLine()) != null) {
+                lineNumber++;
+                if (first) {
+                    first = false;
+                    if (format.isHeader(line)) {
+                        continue;
+                    }
+                }
+                read++;
+                if (size == 0) {
+                    // Первый элемент пачки - номер первой строки, чтобы отчет об ошибках ссылался на файл
+                    batch[0] = Long.toString(lineNumber);
+                }
+                batch[++size] = line;
+                if (size == batchSize) {
+                    put(queue, batch, futures);
+                    batch = new String[batchSize + 1];
+                    size = 0;
+                    if (listener != null) {
+                        listener.onProgress(read, imported.sum(), rejected.sum());
+                    }
+                }
+            }
+            if (size > 0) {
+                String[] tail = new String[size + 1];
+                System.arraycopy(batch, 0, tail, 0, size + 1);
+                put(queue, tail, futures);
+            }
+            for (int i = 0; i < threads; i++) {
+                put(queue, POISON, futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Загрузка прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка загрузки: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        if (rejects != null) {
+            rejects.flush();
+        }
+        Report report = new Report(read, imported.sum(), rejected.sum(), (System.nanoTime() - start) / 1_000_000);
+        if (listener != null) {
+            listener.onProgress(report.getRead(), report.getImported(), report.getRejected());
+        }
+        return report;
+    }
+
+    // Если рабочий поток упал, очередь больше не разбирается: проверяем это, пока ждем места
+    private static void put(BlockingQueue<String[]> queue, String[] batch, List<Future<?>> futures)
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<?> future : futures) {
+                if (future.isDone()) {
+                    future.get();
+                }
+            }
+        }
+    }
+
+    private void work(BlockingQueue<String[]> queue, LinkRecordFormat format, Writer rejects,
+                      LongAdder imported, LongAdder rejected) throws InterruptedException, IOException {
+        List<Link> links = new ArrayList<>(batchSize);
+        // Позиция строки в пачке для каждой разобранной ссылки: importLinks возвращает те же экземпляры
+        Map<Link, Integer> positions = new IdentityHashMap<>(batchSize * 2);
+        while (true) {
+            String[] batch = queue.take();
+            if (batch == POISON) {
+                return;
+            }
+            links.clear();
+            positions.clear();
+            long firstLine = Long.parseLong(batch[0]);
+            long now = clock.millis();
+            for (int i = 1; i < batch.length; i++) {
+                long lineNumber = firstLine + i - 1;
+                try {
+                    Link link = toLink(format.parse(batch[i]), now);
+                    links.add(link);
+                    positions.put(link, i);
+                } catch (IllegalArgumentException e) {
+                    rejected.increment();
+                    reject(rejects, lineNumber, e.getMessage(), batch[i]);
+                }
+            }
+            if (links.isEmpty()) {
+                continue;
+            }
+            List<Link> duplicates = target.importLinks(links);
+            imported.add(links.size() - duplicates.size());
+            rejected.add(duplicates.size());
+            if (rejects != null) {
+                for (Link duplicate : duplicates) {
+                    int position = positions.get(duplicate);
+                    reject(rejects, firstLine + position - 1, "Код уже занят", batch[position]);
+                }
+            }
+        }
+    }
+
+    private Link toLink(LinkRecordFormat.Record record, long now) {
+        if (!UrlValidator.isValid(record.originalUrl)) {
+            throw new IllegalArgumentException("Невалидный URL");
+        }
+        if (record.userUuid.isEmpty()) {
+            throw new IllegalArgumentException("Пустой UUID владельца");
+        }
+        long createdAt = record.createdAtMillis >= 0 ? record.createdAtMillis : now;
+        long expiresAt = record.expiresAtMillis >= 0 ? record.expiresAtMillis : createdAt + EXPIRATION_SECONDS * 1000;
+        int limit = record.limit >= 0 ? record.limit : DEFAULT_LIMIT;
+        Link link = new Link(record.originalUrl, record.shortUrl, record.userUuid, limit, createdAt, expiresAt);
+        if (record.visitCount > 0) {
+            link.advanceVisitCount(record.visitCount);
+        }
+        return link;
+    }
+
+    private static void reject(Writer rejects, long lineNumber, String reason, String line) throws IOException {
+        if (rejects == null) {
+            return;
+        }
+        synchronized (rejects) {
+            rejects.write(lineNumber + "\t" + reason + "\t" + line + System.lineSeparator());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.shortener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Массовая загрузка и выгрузка ссылок хранилища из {@code config.properties}:
+ * {@code java -cp shortener.jar com.example.shortener.BulkTool import|export <file> [csv|ndjson]}.
+ * Отклоненные при загрузке строки пишутся в {@code <file>.rejects}.
+ */
+public class BulkTool {
+
+    private static final int BATCH_SIZE = 1000;
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Использование: BulkTool import|export <file> [csv|ndjson]");
+            return;
+        }
+        Path file = Paths.get(args[1]);
+        LinkRecordFormat format = args.length > 2
+                ? LinkRecordFormat.valueOf(args[2].toUpperCase())
+                : LinkRecordFormat.forFileName(file.getFileName().toString());
+        try (LinkService linkService = LinkServiceFactory.fromConfiguration()) {
+            if (args[0].equals("import")) {
+                load(linkService, file, format);
+            } else {
+                try (Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    long exported = new BulkLinkExporter(linkService).export(output, format);
+                    System.out.println("Выгружено ссылок: " + exported + ".");
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Произошла критическая ошибка: " + e.getMessage());
+        }
+    }
+
+    private static void load(LinkService linkService, Path file, LinkRecordFormat format) throws IOException {
+        Path rejectsFile = Paths.get(file + ".rejects");
+        int threads = Runtime.getRuntime().availableProcessors();
+        BulkLinkLoader loader = new BulkLinkLoader(linkService, threads, BATCH_SIZE);
+        try (BufferedReader input = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            long[] reported = new long[1];
+            BulkLinkLoader.Report report = loader.load(input, format, rejects, (read, imported, rejected) -> {
+                if (read - reported[0] >= 100_000) {
+                    reported[0] = read;
+                    System.out.println("Обработано строк: " + read + ", загружено: " + imported
+                            + ", отклонено: " + rejected);
+                }
+            });
+            System.out.println("Загрузка завершена: " + report + ".");
+            if (report.getRejected() > 0) {
+                System.out.println("Отклоненные строки: " + rejectsFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,556 @@
+package com.example.shortener;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Кэширующий декоратор {@link LinkService} для горячих ссылок.
+ * <p>
+ * Хранит соответствие короткий код → оригинальный URL и обслуживает переходы
+ * без обращения к хранилищу. Объем кэша ограничен суммарным весом записей в байтах,
+ * а вытеснение следует политике W-TinyLFU: новые записи попадают в небольшое окно LRU,
+ * а в основную сегментированную LRU-область (probation/protected) допускаются, только
+ * если {@link FrequencySketch} оценивает их частоту выше, чем у вытесняемой записи.
+ * <p>
+ * Переходы считаются в записи кэша в пределах остатка лимита, известного при загрузке
+ * ({@link VisitQuota} раздает его потокам порциями), и фоновым потоком сбрасываются в хранилище пачками через
+ * {@link LinkService#registerVisits(String, int)}. Поэтому декоратор должен быть
+ * единственной точкой регистрации переходов для обернутого хранилища.
+ */
+public class CachingLinkService implements LinkService {
+
+    private static final long ENTRY_OVERHEAD_BYTES = 192;
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final LinkService delegate;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+    private final Queue<Node> dirty = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher = ThreadingModel.configured().newScheduler("cache-flush");
+
+    // Состояние политики вытеснения меняется только под policyLock
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AccessOrder window = new AccessOrder();
+    private final AccessOrder probation = new AccessOrder();
+    private final AccessOrder protectedOrder = new AccessOrder();
+    private final long maxWeight;
+    private final long maxWindowWeight;
+    private final long maxProtectedWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder flushedVisits = new LongAdder();
+
+    public CachingLinkService(LinkService delegate, long maxWeightBytes, long flushIntervalMillis) {
+        this(delegate, maxWeightBytes, flushIntervalMillis, Clock.systemDefaultZone());
+    }
+
+    public CachingLinkService(LinkService delegate, long maxWeightBytes, long flushIntervalMillis, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.maxWeight = maxWeightBytes;
+        this.maxWindowWeight = Math.max(1, (long) (maxWeightBytes * WINDOW_SHARE));
+        this.maxProtectedWeight = (long) ((maxWeightBytes - maxWindowWeight) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, maxWeightBytes / ENTRY_OVERHEAD_BYTES));
+        flusher.scheduleWithFixedDelay(this::flushDirty, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        return delegate.create(originalUrl, userUuid, limit);
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        flush(data.get(shortUrl));
+        return delegate.getByShortUrl(shortUrl);
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        flush(data.get(shortUrl));
+        return delegate.lookup(shortUrl);
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        Node node = data.get(shortUrl);
+        boolean cached = node != null;
+        if (cached) {
+            recordAccess(node);
+        } else {
+            node = load(shortUrl);
+            if (node == null) {
+                misses.increment();
+                return null;
+            }
+        }
+
+        if (node.expiresAtMillis >= clock.millis() && node.tryAcquireVisit()) {
+            if (node.markDirty()) {
+                dirty.add(node);
+            }
+            (cached ? hits : misses).increment();
+            return node.originalUrl;
+        }
+        // Ссылка истекла, запись выведена из кэша или остаток лимита исчерпан:
+        // решение принимает хранилище, которое к этому моменту знает обо всех переходах из кэша
+        flush(node);
+        String originalUrl = delegate.resolveAndRegisterVisit(shortUrl);
+        if (originalUrl == null) {
+            // Мертвая запись не должна занимать место в кэше и считаться попаданием
+            discard(retire(shortUrl));
+            misses.increment();
+        } else {
+            (cached ? hits : misses).increment();
+        }
+        return originalUrl;
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        Node node = retire(shortUrl);
+        int granted = delegate.registerVisits(shortUrl, count);
+        discard(node);
+        return granted;
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        Node node = retire(shortUrl);
+        boolean deleted = delegate.delete(shortUrl, userUuid);
+        discard(node);
+        return deleted;
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        Node node = retire(shortUrl);
+        boolean updated = delegate.updateLimit(shortUrl, userUuid, newLimit);
+        discard(node);
+        return updated;
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        List<Link> links = delegate.listByUser(userUuid, offset, limit);
+        // Счетчики переходов берем из хранилища после сброса накопленного в кэше
+        List<Link> flushedLinks = new ArrayList<>(links.size());
+        for (Link link : links) {
+            Node node = data.get(link.getShortUrl());
+            if (flush(node) == 0) {
+                flushedLinks.add(link);
+            } else {
+                Link current = delegate.lookup(link.getShortUrl());
+                if (current != null) {
+                    flushedLinks.add(current);
+                }
+            }
+        }
+        return flushedLinks;
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        List<Node> retired = retireAll(userUuid);
+        int deleted = delegate.deleteAllByUser(userUuid);
+        retired.forEach(this::discard);
+        return deleted;
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        List<Node> retired = retireAll(userUuid);
+        int updated = delegate.updateLimitForUser(userUuid, newLimit);
+        retired.forEach(this::discard);
+        return updated;
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        return delegate.importLink(link);
+    }
+
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        return delegate.importLinks(links);
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        for (Node node : data.values()) {
+            flush(node);
+        }
+        delegate.forEachLink(action);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /** Среднее время загрузки записи из хранилища в наносекундах. */
+    public double getAverageLoadNanos() {
+        long loadCount = loads.sum();
+        return loadCount == 0 ? 0 : (double) loadNanos.sum() / loadCount;
+    }
+
+    public long getFlushedVisitCount() {
+        return flushedVisits.sum();
+    }
+
+    public long getWeightedSize() {
+        policyLock.lock();
+        try {
+            return window.weight + probation.weight + protectedOrder.weight;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private Node load(String shortUrl) {
+        long start = System.nanoTime();
+        Link link = delegate.lookup(shortUrl);
+        loads.increment();
+        loadNanos.add(System.nanoTime() - start);
+        if (link == null) {
+            return null;
+        }
+        Node node = new Node(shortUrl, link.getOriginalUrl(), link.getExpiresAtMillis(),
+                Math.max(0, link.getLimit() - link.getVisitCount()));
+        Node existing = data.putIfAbsent(shortUrl, node);
+        if (existing != null) {
+            recordAccess(existing);
+            return existing;
+        }
+        List<Node> evicted = new ArrayList<>();
+        policyLock.lock();
+        try {
+            sketch.increment(node.hash);
+            window.addLast(node);
+            node.order = window;
+            evictIfNeeded(evicted);
+        } finally {
+            policyLock.unlock();
+        }
+        for (Node victim : evicted) {
+            flush(victim);
+            data.remove(victim.key, victim);
+        }
+        return node;
+    }
+
+    // Учет обращения необязателен для корректности: если политика занята
+    // другим потоком, обращение пропускается, чтобы не ждать блокировку на горячем пути
+    private void recordAccess(Node node) {
+        if (!policyLock.tryLock()) {
+            return;
+        }
+        try {
+            sketch.increment(node.hash);
+            AccessOrder order = node.order;
+            if (order == null) {
+                return;
+            }
+            if (order == probation) {
+                probation.remove(node);
+                protectedOrder.addLast(node);
+                node.order = protectedOrder;
+                while (protectedOrder.weight > maxProtectedWeight) {
+                    Node demoted = protectedOrder.removeFirst();
+                    probation.addLast(demoted);
+                    demoted.order = probation;
+                }
+            } else {
+                order.moveToLast(node);
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Вызывается под policyLock
+    private void evictIfNeeded(List<Node> evicted) {
+        // Кандидаты - записи, перешедшие из окна в этот раз (хвост probation, начиная
+        // с первой перешедшей), а за ними записи окна; с жертвами из головы они соревнуются по одной
+        Node candidate = null;
+        while (window.weight > maxWindowWeight) {
+            Node moved = window.removeFirst();
+            probation.addLast(moved);
+            moved.order = probation;
+            if (candidate == null) {
+                candidate = moved;
+            }
+        }
+        while (window.weight + probation.weight + protectedOrder.weight > maxWeight) {
+            Node victim = probation.isEmpty() ? protectedOrder.first() : probation.first();
+            if (victim == null) {
+                victim = window.first();
+            }
+            if (candidate == victim) {
+                // Старые записи probation кончились: жертвой стал сам кандидат
+                candidate = candidate.next;
+            }
+            if (candidate == null && victim.order != window) {
+                // Перешедшие кандидаты кончились: дальше с жертвой соревнуются записи окна
+                candidate = window.first();
+            }
+            Node loser = victim;
+            // Кандидат из окна вытесняет жертву, только если он популярнее
+            if (candidate != null && sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+                loser = candidate;
+                candidate = candidate.next;
+            }
+            evict(loser, evicted);
+        }
+    }
+
+    // Запись остается в data, пока ее переходы не сброшены в хранилище,
+    // иначе повторная загрузка прочитала бы устаревший счетчик
+    private void evict(Node node, List<Node> evicted) {
+        node.order.remove(node);
+        node.order = null;
+        node.close();
+        evictions.increment();
+        evicted.add(node);
+    }
+
+    /**
+     * Закрывает запись для новых переходов и сбрасывает ее счетчик в хранилище.
+     * Запись остается в кэше до {@link #discard(Node)}, чтобы параллельный промах
+     * не загрузил ее заново до завершения операции над хранилищем.
+     */
+    private Node retire(String shortUrl) {
+        Node node = data.get(shortUrl);
+        if (node == null) {
+            return null;
+        }
+        policyLock.lock();
+        try {
+            if (node.order != null) {
+                node.order.remove(node);
+                node.order = null;
+            }
+        } finally {
+            policyLock.unlock();
+        }
+        node.close();
+        flush(node);
+        return node;
+    }
+
+    private List<Node> retireAll(String userUuid) {
+        List<Node> retired = new ArrayList<>();
+        for (Link link : delegate.listByUser(userUuid, 0, Integer.MAX_VALUE)) {
+            Node node = retire(link.getShortUrl());
+            if (node != null) {
+                retired.add(node);
+            }
+        }
+        return retired;
+    }
+
+    private void discard(Node node) {
+        if (node != null) {
+            data.remove(node.key, node);
+        }
+    }
+
+    // Возвращает число переходов, записанных в хранилище
+    private int flush(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        int delta = node.takeUnflushed();
+        if (delta > 0) {
+            flushedVisits.add(delta);
+        }
+        return delta;
+    }
+
+    private void flushDirty() {
+        try {
+            Node node;
+            while ((node = dirty.poll()) != null) {
+                node.clearDirty();
+                flush(node);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при сбросе переходов из кэша: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushDirty();
+        for (Node node : data.values()) {
+            flush(node);
+        }
+        delegate.close();
+    }
+
+    private final class Node {
+        final String key;
+        final long hash;
+        final String originalUrl;
+        final long expiresAtMillis;
+        final long weight;
+        // Сколько переходов кэш может выдать, не спрашивая хранилище
+        final VisitQuota quota;
+        // Сколько выданных переходов уже записано в хранилище; защищено flushLock
+        int flushed;
+        // Не монитор: сброс ждет хранилище, а виртуальный поток под монитором занял бы поток-носитель
+        final ReentrantLock flushLock = new ReentrantLock();
+        final AtomicInteger dirtyFlag = new AtomicInteger();
+
+        AccessOrder order;
+        Node prev;
+        Node next;
+
+        Node(String key, String originalUrl, long expiresAtMillis, int remaining) {
+            this.key = key;
+            this.hash = key.hashCode();
+            this.originalUrl = originalUrl;
+            this.expiresAtMillis = expiresAtMillis;
+            this.weight = ENTRY_OVERHEAD_BYTES + 2L * (key.length() + originalUrl.length());
+            this.quota = new VisitQuota(remaining);
+        }
+
+        boolean tryAcquireVisit() {
+            return quota.tryAcquire();
+        }
+
+        void close() {
+            quota.close();
+        }
+
+        // Под блокировкой записи: поток, которому отказано в переходе, ждет завершения
+        // уже начатого сброса и только потом обращается к хранилищу
+        int takeUnflushed() {
+            flushLock.lock();
+            try {
+                int used = quota.used();
+                int delta = used - flushed;
+                if (delta > 0) {
+                    delegate.registerVisits(key, delta);
+                    flushed = used;
+                }
+                return delta;
+            } finally {
+                flushLock.unlock();
+            }
+        }
+
+        boolean markDirty() {
+            return dirtyFlag.get() == 0 && dirtyFlag.compareAndSet(0, 1);
+        }
+
+        void clearDirty() {
+            dirtyFlag.set(0);
+        }
+    }
+
+    /** Двусвязный список записей в порядке обращения, от самой старой к самой свежей. */
+    private static final class AccessOrder {
+        private Node head;
+        private Node tail;
+        long weight;
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        Node first() {
+            return head;
+        }
+
+        Node last() {
+            return tail;
+        }
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        Node removeFirst() {
+            Node node = head;
+            remove(node);
+            return node;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
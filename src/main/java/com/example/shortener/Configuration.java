@@ -4,13 +4,18 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class Configuration {
 
     private static final Properties properties = new Properties();
     private static final String CONFIG_FILE = "config.properties";
+    private static final String[] OVERRIDABLE_PREFIXES = {"link.", "storage.", "http.", "cache.", "cluster.",
+            "metrics.", "log.", "ratelimit.", "threads.", "analytics."};
 
     static {
         try (InputStream input = new FileInputStream(CONFIG_FILE)) {
@@ -18,9 +23,17 @@ public class Configuration {
         } catch (IOException ex) {
             System.err.println("Ошибка: не удалось загрузить файл конфигурации '" + CONFIG_FILE + "'. Будут использованы значения по умолчанию.");
             // Устанавливаем значения по умолчанию, если файл не найден
-            properties.setProperty("link.expiration-seconds", "86400 ");
+            properties.setProperty("link.expiration-seconds", "86400");
             properties.setProperty("link.default-limit", "100");
         }
+        // Любой параметр можно переопределить при запуске: -Dthreads.model=virtual
+        for (String name : System.getProperties().stringPropertyNames()) {
+            for (String prefix : OVERRIDABLE_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    properties.setProperty(name, System.getProperty(name));
+                }
+            }
+        }
     }
 
     public static long getExpirationSeconds() {
@@ -30,4 +43,159 @@ public class Configuration {
     public static int getDefaultLimit() {
         return Integer.parseInt(properties.getProperty("link.default-limit"));
     }
+
+    public static long getPurgeIntervalSeconds() {
+        return Long.parseLong(properties.getProperty("link.purge-interval-seconds", "1").trim());
+    }
+
+    public static String getStorageBackend() {
+        return properties.getProperty("storage.backend", "memory").trim();
+    }
+
+    public static String getWalDirectory() {
+        return properties.getProperty("storage.wal.directory", "data").trim();
+    }
+
+    public static Durability getWalDurability() {
+        return Durability.valueOf(properties.getProperty("storage.wal.durability", "sync").trim().toUpperCase());
+    }
+
+    public static long getSnapshotIntervalSeconds() {
+        return Long.parseLong(properties.getProperty("storage.wal.snapshot-interval-seconds", "300").trim());
+    }
+
+    public static String getOffHeapDirectory() {
+        return properties.getProperty("storage.offheap.directory", "data/offheap").trim();
+    }
+
+    public static long getOffHeapMaxLinks() {
+        return Long.parseLong(properties.getProperty("storage.offheap.max-links", "1000000").trim());
+    }
+
+    public static long getOffHeapArenaBytes() {
+        return Long.parseLong(properties.getProperty("storage.offheap.arena-mb", "512").trim()) * 1024 * 1024;
+    }
+
+    public static int getHttpPort() {
+        return Integer.parseInt(properties.getProperty("http.port", "8080").trim());
+    }
+
+    public static int getHttpIoThreads() {
+        String value = properties.getProperty("http.io-threads", "").trim();
+        return value.isEmpty() ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+    }
+
+    public static long getHttpIdleTimeoutSeconds() {
+        return Long.parseLong(properties.getProperty("http.idle-timeout-seconds", "60").trim());
+    }
+
+    public static boolean isCacheEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("cache.enabled", "false").trim());
+    }
+
+    public static long getCacheMaxBytes() {
+        return Long.parseLong(properties.getProperty("cache.max-mb", "64").trim()) * 1024 * 1024;
+    }
+
+    public static long getCacheFlushIntervalMillis() {
+        return Long.parseLong(properties.getProperty("cache.flush-interval-ms", "100").trim());
+    }
+
+    /** Адреса узлов кластера из {@code cluster.shards} в виде {@code host:port,host:port}. */
+    public static List<InetSocketAddress> getClusterShards() {
+        List<InetSocketAddress> shards = new ArrayList<>();
+        for (String shard : properties.getProperty("cluster.shards", "").split(",")) {
+            String address = shard.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            int colon = address.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Адрес узла кластера должен иметь вид host:port: " + address);
+            }
+            shards.add(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+        }
+        return shards;
+    }
+
+    public static int getClusterVirtualNodes() {
+        return Integer.parseInt(properties.getProperty("cluster.virtual-nodes", "128").trim());
+    }
+
+    public static String getClusterShardBackend() {
+        return properties.getProperty("cluster.shard-backend", "memory").trim();
+    }
+
+    public static boolean isMetricsEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("metrics.enabled", "true").trim());
+    }
+
+    public static int getLogQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("log.queue-capacity", "8192").trim());
+    }
+
+    public static boolean isRateLimitEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("ratelimit.enabled", "false").trim());
+    }
+
+    public static double getRateLimitCreatesPerSecond() {
+        return Double.parseDouble(properties.getProperty("ratelimit.create-per-second", "10").trim());
+    }
+
+    public static int getRateLimitCreateBurst() {
+        return Integer.parseInt(properties.getProperty("ratelimit.create-burst", "100").trim());
+    }
+
+    public static double getRateLimitRedirectsPerSecond() {
+        return Double.parseDouble(properties.getProperty("ratelimit.redirect-per-second", "1000").trim());
+    }
+
+    public static int getRateLimitRedirectBurst() {
+        return Integer.parseInt(properties.getProperty("ratelimit.redirect-burst", "2000").trim());
+    }
+
+    public static int getRateLimitMaxKeys() {
+        return Integer.parseInt(properties.getProperty("ratelimit.max-keys", "1048576").trim());
+    }
+
+    public static boolean isLinkDeduplicationEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("link.deduplicate", "false").trim());
+    }
+
+    public static boolean isUrlInterningEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("link.intern-urls", "false").trim());
+    }
+
+    public static String getThreadsModel() {
+        return properties.getProperty("threads.model", "platform").trim();
+    }
+
+    public static boolean isHttpOffloadRequests() {
+        return Boolean.parseBoolean(properties.getProperty("http.offload-requests", "false").trim());
+    }
+
+    public static int getHttpRequestThreads() {
+        String value = properties.getProperty("http.request-threads", "").trim();
+        return value.isEmpty() ? 64 : Integer.parseInt(value);
+    }
+
+    public static boolean isAnalyticsEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("analytics.enabled", "false").trim());
+    }
+
+    public static int getAnalyticsBufferCapacity() {
+        return Integer.parseInt(properties.getProperty("analytics.buffer-capacity", "65536").trim());
+    }
+
+    public static int getAnalyticsMaxLinks() {
+        return Integer.parseInt(properties.getProperty("analytics.max-links", "49152").trim());
+    }
+
+    public static int getAnalyticsSketchSize() {
+        return Integer.parseInt(properties.getProperty("analytics.sketch-size", "1024").trim());
+    }
+
+    public static long getAnalyticsDrainIntervalMillis() {
+        return Long.parseLong(properties.getProperty("analytics.drain-interval-millis", "100").trim());
+    }
 }
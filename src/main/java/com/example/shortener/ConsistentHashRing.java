@@ -0,0 +1,128 @@
+package com.example.shortener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Кольцо согласованного хеширования коротких кодов по узлам.
+ * <p>
+ * Каждый узел занимает на кольце {@code virtualNodes} точек; код принадлежит узлу,
+ * чья точка первой встречается по часовой стрелке от хеша кода. При добавлении или
+ * удалении узла меняют владельца только коды из дуг, примыкающих к его точкам.
+ * Кольцо неизменяемо: изменения топологии создают новое кольцо.
+ */
+final class ConsistentHashRing {
+
+    private final Set<String> nodes;
+    private final int virtualNodes;
+    private final long[] points;
+    private final String[] owners;
+
+    ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Число виртуальных узлов должно быть положительным");
+        }
+        this.nodes = new LinkedHashSet<>(nodes);
+        this.virtualNodes = virtualNodes;
+        int count = this.nodes.size() * virtualNodes;
+        List<String> ids = new ArrayList<>(this.nodes);
+        long[] unsortedPoints = new long[count];
+        int i = 0;
+        for (int n = 0; n < ids.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                unsortedPoints[i] = pointOf(ids.get(n), v);
+                i++;
+            }
+        }
+        // Сортируем точки вместе с владельцами через индексы
+        Integer[] order = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(unsortedPoints[a], unsortedPoints[b]));
+        this.points = new long[count];
+        this.owners = new String[count];
+        for (int k = 0; k < count; k++) {
+            points[k] = unsortedPoints[order[k]];
+            owners[k] = ids.get(order[k] / virtualNodes);
+        }
+    }
+
+    Set<String> nodes() {
+        return nodes;
+    }
+
+    ConsistentHashRing with(String node) {
+        Set<String> changed = new LinkedHashSet<>(nodes);
+        changed.add(node);
+        return new ConsistentHashRing(changed, virtualNodes);
+    }
+
+    ConsistentHashRing without(String node) {
+        Set<String> changed = new LinkedHashSet<>(nodes);
+        changed.remove(node);
+        return new ConsistentHashRing(changed, virtualNodes);
+    }
+
+    String ownerOf(long code) {
+        if (points.length == 0) {
+            throw new IllegalStateException("В кольце нет узлов");
+        }
+        return owners[pointIndex(hash(code))];
+    }
+
+    /**
+     * Дуги кольца, принадлежащие узлу, парами {@code (начало, конец]}.
+     * Дуга, проходящая через конец диапазона {@code long}, имеет начало больше конца.
+     */
+    long[] rangesOf(String node) {
+        long[] ranges = new long[virtualNodes * 2];
+        int count = 0;
+        for (int k = 0; k < points.length; k++) {
+            if (owners[k].equals(node)) {
+                ranges[count++] = points[(k - 1 + points.length) % points.length];
+                ranges[count++] = points[k];
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    static boolean inRanges(long code, long[] ranges) {
+        long hash = hash(code);
+        for (int i = 0; i < ranges.length; i += 2) {
+            long start = ranges[i];
+            long end = ranges[i + 1];
+            if (start < end ? hash > start && hash <= end : hash > start || hash <= end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long hash(long code) {
+        return ShortCode.hash(code);
+    }
+
+    private int pointIndex(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index == points.length ? 0 : index;
+    }
+
+    // FNV-1a по "узел#номер" с финальным перемешиванием
+    private static long pointOf(String node, int virtualNode) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : (node + "#" + virtualNode).getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        return ShortCode.hash(h);
+    }
+}
@@ -1,28 +1,59 @@
 package com.example.shortener;
 
-import java.awt.Desktop;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.management.JMException;
 
 public class ConsoleApp {
 
     private final LinkService linkService;
     private final String userUuid;
     private static final int DEFAULT_LIMIT = Configuration.getDefaultLimit();
+    private static final int LIST_PAGE_SIZE = 20;
+    // Сколько результатов пакетного режима может ждать вывода, пока не готов самый ранний из них
+    private static final int MAX_PENDING_PER_THREAD = 1024;
+    private volatile boolean interactive = true;
+    // Без графики ссылка только печатается, и классы AWT не загружаются
+    private final boolean headless;
 
     public ConsoleApp(LinkService linkService) {
+        this(linkService, UUID.randomUUID().toString());
+    }
+
+    public ConsoleApp(LinkService linkService, String userUuid) {
+        this(linkService, userUuid, Boolean.getBoolean("java.awt.headless"));
+    }
+
+    public ConsoleApp(LinkService linkService, String userUuid, boolean headless) {
         this.linkService = linkService;
-        this.userUuid = UUID.randomUUID().toString();
+        this.userUuid = userUuid;
+        this.headless = headless;
     }
 
     public void run() {
         System.out.println("Добро пожаловать в сервис сокращения ссылок!");
         System.out.println("Ваш уникальный идентификатор (UUID): " + userUuid);
-        printHelp();
+        StringBuilder help = new StringBuilder();
+        printHelp(help);
+        System.out.print(help);
 
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) {
@@ -38,63 +69,223 @@ public class ConsoleApp {
         }
     }
 
+    /** Итог пакетного режима. */
+    public static final class BatchSummary {
+        private final long commands;
+        private final long errors;
+        private final long elapsedNanos;
+
+        BatchSummary(long commands, long errors, long elapsedNanos) {
+            this.commands = commands;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return "Выполнено команд: " + commands + ", с ошибкой: " + errors + ", за "
+                    + String.format("%.3f", seconds) + " с (" + String.format("%.0f", commands / Math.max(seconds, 1e-9))
+                    + " команд/с).";
+        }
+    }
+
+    /**
+     * Неинтерактивный режим: читает команды построчно до конца ввода или {@code exit}
+     * и выполняет их на {@code threads} потоках.
+     * <p>
+     * Команды с одним коротким кодом попадают в один поток и выполняются в порядке ввода;
+     * {@code create} распределяется по кругу; {@code list}, {@code update-all} и {@code delete-all}
+     * затрагивают все ссылки пользователя и выполняются после завершения всех предыдущих команд.
+     * Результаты пишутся в {@code output} в порядке ввода, браузер не открывается.
+     */
+    public BatchSummary runBatch(BufferedReader input, Writer output, int threads) throws IOException {
+        interactive = false;
+        long start = System.nanoTime();
+        ExecutorService[] lanes = new ExecutorService[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor();
+        }
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        int maxPending = lanes.length * MAX_PENDING_PER_THREAD;
+        long commands = 0;
+        long[] errors = new long[1];
+        int nextLane = 0;
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                String command = line.trim();
+                if (command.isEmpty()) {
+                    continue;
+                }
+                if (command.equalsIgnoreCase("exit")) {
+                    break;
+                }
+                commands++;
+                FutureTask<String> task = new FutureTask<>(() -> execute(command));
+                String[] parts = command.split("\\s+", 3);
+                switch (parts[0].toLowerCase()) {
+                    case "list":
+                    case "update-all":
+                    case "delete-all":
+                    case "help":
+                        // Команда над всеми ссылками пользователя видит результат всех предыдущих
+                        writeCompleted(pending, 0, output, errors);
+                        task.run();
+                        pending.add(task);
+                        break;
+                    case "create":
+                        lanes[nextLane].execute(task);
+                        nextLane = (nextLane + 1) % lanes.length;
+                        pending.add(task);
+                        break;
+                    default:
+                        String shortUrl = parts.length > 1 && !isRedirect(parts[0]) ? parts[1] : parts[0];
+                        lanes[Math.floorMod(shortUrl.hashCode(), lanes.length)].execute(task);
+                        pending.add(task);
+                        break;
+                }
+                writeCompleted(pending, maxPending, output, errors);
+            }
+            writeCompleted(pending, 0, output, errors);
+            output.flush();
+        } finally {
+            for (ExecutorService lane : lanes) {
+                lane.shutdownNow();
+            }
+            interactive = true;
+        }
+        return new BatchSummary(commands, errors[0], System.nanoTime() - start);
+    }
+
+    // Команды info, update и delete адресуют код вторым словом, переход - первым
+    private static boolean isRedirect(String command) {
+        switch (command.toLowerCase()) {
+            case "info":
+            case "update":
+            case "delete":
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // Пишет готовые результаты по порядку; ждет самый ранний, пока в очереди больше maxPending
+    private static void writeCompleted(ArrayDeque<Future<String>> pending, int maxPending, Writer output,
+                                       long[] errors) throws IOException {
+        while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().isDone())) {
+            String result;
+            try {
+                result = pending.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Пакетный режим прерван", e);
+            } catch (ExecutionException e) {
+                result = "Ошибка: " + e.getCause().getMessage() + System.lineSeparator();
+            }
+            if (result.startsWith("Ошибка")) {
+                errors[0]++;
+            }
+            output.write(result);
+        }
+    }
+
     public void processCommand(String input) {
+        System.out.print(execute(input));
+    }
+
+    // Выполняет одну команду и возвращает ее вывод
+    String execute(String input) {
+        StringBuilder out = new StringBuilder();
         if (input == null || input.isBlank()) {
-            return;
+            return "";
         }
 
         String[] parts = input.split("\\s+", 3);
         String command = parts[0].toLowerCase();
 
+        try {
+            dispatch(command, parts, input, out);
+        } catch (RateLimitExceededException e) {
+            println(out, "Ошибка: " + e.getMessage() + ".");
+        }
+        return out.toString();
+    }
+
+    private void dispatch(String command, String[] parts, String input, StringBuilder out) {
         switch (command) {
             case "create":
-                handleCreateCommand(parts);
+                handleCreateCommand(parts, out);
                 break;
             case "info":
-                handleInfoCommand(parts);
+                handleInfoCommand(parts, out);
                 break;
             case "delete":
-                handleDeleteCommand(parts);
+                handleDeleteCommand(parts, out);
                 break;
             case "update":
-                handleUpdateCommand(parts);
+                handleUpdateCommand(parts, out);
+                break;
+            case "list":
+                handleListCommand(parts, out);
+                break;
+            case "delete-all":
+                handleDeleteAllCommand(out);
+                break;
+            case "update-all":
+                handleUpdateAllCommand(parts, out);
                 break;
             case "help":
-                printHelp();
+                printHelp(out);
                 break;
             default:
-                handleRedirect(input);
+                handleRedirect(input, out);
                 break;
         }
     }
 
-    private void printHelp() {
-        System.out.println("\nКОМАНДЫ:");
-        System.out.println("  create <url> [limit] - создать короткую ссылку (лимит необязателен)");
-        System.out.println("  info <short_url>    - посмотреть информацию о ссылке");
-        System.out.println("  update <short_url> <new_limit> - обновить лимит переходов");
-        System.out.println("  delete <short_url>  - удалить ссылку");
-        System.out.println("  <short_url>         - перейти по короткой ссылке");
-        System.out.println("  help                - показать этот список команд");
-        System.out.println("  exit                - выход из программы\n");
+    private void printHelp(StringBuilder out) {
+        println(out, "\nКОМАНДЫ:");
+        println(out, "  create <url> [limit] - создать короткую ссылку (лимит необязателен)");
+        println(out, "  info <short_url>    - посмотреть информацию о ссылке");
+        println(out, "  update <short_url> <new_limit> - обновить лимит переходов");
+        println(out, "  delete <short_url>  - удалить ссылку");
+        println(out, "  list [page]         - список ваших ссылок по " + LIST_PAGE_SIZE + " на странице");
+        println(out, "  update-all <new_limit> - обновить лимит всех ваших ссылок");
+        println(out, "  delete-all          - удалить все ваши ссылки");
+        println(out, "  <short_url>         - перейти по короткой ссылке");
+        println(out, "  help                - показать этот список команд");
+        println(out, "  exit                - выход из программы\n");
     }
 
-    private void handleDeleteCommand(String[] parts) {
+    private void handleDeleteCommand(String[] parts, StringBuilder out) {
         if (parts.length != 2) {
-            System.out.println("Ошибка: неверный формат. Используйте: delete <short_url>");
+            println(out, "Ошибка: неверный формат. Используйте: delete <short_url>");
             return;
         }
         String shortUrl = parts[1];
         if (linkService.delete(shortUrl, userUuid)) {
-            System.out.println("Ссылка " + shortUrl + " успешно удалена.");
+            println(out, "Ссылка " + shortUrl + " успешно удалена.");
         } else {
-            System.out.println("Ошибка: ссылка не найдена или у вас нет прав на ее удаление.");
+            println(out, "Ошибка: ссылка не найдена или у вас нет прав на ее удаление.");
         }
     }
 
-    private void handleUpdateCommand(String[] parts) {
+    private void handleUpdateCommand(String[] parts, StringBuilder out) {
         if (parts.length != 3) {
-            System.out.println("Ошибка: неверный формат. Используйте: update <short_url> <new_limit>");
+            println(out, "Ошибка: неверный формат. Используйте: update <short_url> <new_limit>");
             return;
         }
 
@@ -104,26 +295,74 @@ public class ConsoleApp {
         try {
             newLimit = Integer.parseInt(parts[2]);
         } catch (NumberFormatException e) {
-            System.out.println("Ошибка: лимит должен быть числом.");
+            println(out, "Ошибка: лимит должен быть числом.");
             return;
         }
 
         if (linkService.updateLimit(shortUrl, userUuid, newLimit)) {
-            System.out.println("Лимит для ссылки " + shortUrl + " обновлен на " + newLimit + ".");
+            println(out, "Лимит для ссылки " + shortUrl + " обновлен на " + newLimit + ".");
         } else {
-            System.out.println("Ошибка: ссылка не найдена или у вас нет прав на ее редактирование.");
+            println(out, "Ошибка: ссылка не найдена или у вас нет прав на ее редактирование.");
+        }
+    }
+
+    private void handleListCommand(String[] parts, StringBuilder out) {
+        int page = 1;
+        if (parts.length >= 2) {
+            try {
+                page = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                println(out, "Ошибка: номер страницы должен быть числом.");
+                return;
+            }
+        }
+        if (page < 1) {
+            println(out, "Ошибка: номер страницы должен быть положительным.");
+            return;
         }
+
+        List<Link> links = linkService.listByUser(userUuid, (page - 1) * LIST_PAGE_SIZE, LIST_PAGE_SIZE);
+        if (links.isEmpty()) {
+            println(out, page == 1 ? "У вас пока нет ссылок." : "Страница " + page + " пуста.");
+            return;
+        }
+        println(out, "Ваши ссылки (страница " + page + "):");
+        for (Link link : links) {
+            println(out, "  " + link.getShortUrl() + " -> " + link.getOriginalUrl()
+                    + " (" + link.getVisitCount() + "/" + link.getLimit() + ")");
+        }
+    }
+
+    private void handleDeleteAllCommand(StringBuilder out) {
+        int deleted = linkService.deleteAllByUser(userUuid);
+        println(out, "Удалено ваших ссылок: " + deleted + ".");
     }
 
-    private void handleCreateCommand(String[] parts) {
+    private void handleUpdateAllCommand(String[] parts, StringBuilder out) {
+        if (parts.length != 2) {
+            println(out, "Ошибка: неверный формат. Используйте: update-all <new_limit>");
+            return;
+        }
+        int newLimit;
+        try {
+            newLimit = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            println(out, "Ошибка: лимит должен быть числом.");
+            return;
+        }
+        int updated = linkService.updateLimitForUser(userUuid, newLimit);
+        println(out, "Лимит обновлен на " + newLimit + " для ссылок: " + updated + ".");
+    }
+
+    private void handleCreateCommand(String[] parts, StringBuilder out) {
         if (parts.length < 2) {
-            System.out.println("Ошибка: неверный формат. Используйте: create <url> [limit]");
+            println(out, "Ошибка: неверный формат. Используйте: create <url> [limit]");
             return;
         }
 
         String url = parts[1];
-        if (!isValidUrl(url)) {
-            System.out.println("Ошибка: введен невалидный URL. Убедитесь, что он начинается с http:// или https://");
+        if (!UrlValidator.isValid(url)) {
+            println(out, "Ошибка: введен невалидный URL. Убедитесь, что он начинается с http:// или https://");
             return;
         }
 
@@ -133,68 +372,121 @@ public class ConsoleApp {
             try {
                 limit = Integer.parseInt(parts[2]);
             } catch (NumberFormatException e) {
-                System.out.println("Ошибка: лимит должен быть числом.");
+                println(out, "Ошибка: лимит должен быть числом.");
                 return;
             }
         }
 
         Link createdLink = linkService.create(url, userUuid, limit);
-        System.out.println("Создана короткая ссылка: " + createdLink.getShortUrl() + " с лимитом " + limit + " переходов.");
+        println(out, "Создана короткая ссылка: " + createdLink.getShortUrl() + " с лимитом " + limit + " переходов.");
     }
 
-    private void handleInfoCommand(String[] parts) {
+    private void handleInfoCommand(String[] parts, StringBuilder out) {
         if (parts.length != 2) {
-            System.out.println("Ошибка: неверный формат. Используйте: info <short_url>");
+            println(out, "Ошибка: неверный формат. Используйте: info <short_url>");
             return;
         }
         String shortUrl = parts[1];
         linkService.getByShortUrl(shortUrl).ifPresentOrElse(
             link -> {
-                System.out.println("Информация о ссылке " + link.getShortUrl() + ":");
-                System.out.println("  Оригинал: " + link.getOriginalUrl());
-                System.out.println("  Создана: " + link.getCreatedAt());
-                System.out.println("  Лимит переходов: " + link.getLimit());
-                System.out.println("  Использовано: " + link.getVisitCount());
-                System.out.println("  Осталось: " + (link.getLimit() - link.getVisitCount()));
+                println(out, "Информация о ссылке " + link.getShortUrl() + ":");
+                println(out, "  Оригинал: " + link.getOriginalUrl());
+                println(out, "  Создана: " + link.getCreatedAt());
+                println(out, "  Лимит переходов: " + link.getLimit());
+                println(out, "  Использовано: " + link.getVisitCount());
+                println(out, "  Осталось: " + (link.getLimit() - link.getVisitCount()));
             },
-            () -> System.out.println("Ошибка: ссылка не найдена или ее срок жизни истек.")
+            () -> println(out, "Ошибка: ссылка не найдена или ее срок жизни истек.")
         );
     }
 
-    private void handleRedirect(String shortUrl) {
+    private void handleRedirect(String shortUrl, StringBuilder out) {
         linkService.getOriginalUrlAndRegisterVisit(shortUrl).ifPresentOrElse(
             originalUrl -> {
-                System.out.println("Переход на: " + originalUrl);
-                if (Desktop.isDesktopSupported() && Desktop.getDesktop().isSupported(Desktop.Action.BROWSE)) {
-                    try {
-                        Desktop.getDesktop().browse(new URI(originalUrl));
-                        System.out.println("Команда на открытие браузера отправлена.");
-                    } catch (IOException | URISyntaxException e) {
-                        System.out.println("Произошла ошибка при попытке открыть ссылку: " + e.getMessage());
-                    }
-                } else {
-                    System.out.println("Автоматическое открытие браузера не поддерживается. Пожалуйста, откройте ссылку вручную.");
+                println(out, "Переход на: " + originalUrl);
+                if (!interactive) {
+                    return;
+                }
+                if (headless) {
+                    println(out, "Режим без графики: откройте ссылку вручную.");
+                    return;
+                }
+                try {
+                    println(out, BrowserLauncher.browse(originalUrl));
+                } catch (LinkageError e) {
+                    // Среда выполнения собрана без модуля java.desktop
+                    println(out, "Автоматическое открытие браузера не поддерживается. Пожалуйста, откройте ссылку вручную.");
                 }
             },
-            () -> System.out.println("Ошибка: ссылка не найдена, истек срок ее жизни или превышен лимит.")
+            () -> println(out, "Ошибка: ссылка не найдена, истек срок ее жизни или превышен лимит.")
         );
     }
 
-    private boolean isValidUrl(String url) {
-        try {
-            new URL(url).toURI();
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    private static void println(StringBuilder out, String line) {
+        out.append(line).append(System.lineSeparator());
     }
 
+    /**
+     * Без аргументов - интерактивный режим. {@code --batch [file] [--threads N] [--user UUID]} -
+     * пакетный режим: команды из файла или стандартного ввода, итог в стандартный поток ошибок.
+     * {@code --headless} (или {@code -Djava.awt.headless=true}) - не открывать браузер.
+     */
     public static void main(String[] args) {
-        try (LinkServiceImpl linkService = new LinkServiceImpl()) {
-            ConsoleApp app = new ConsoleApp(linkService);
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean headless = arguments.remove("--headless") || Boolean.getBoolean("java.awt.headless");
+        LinkMetrics metrics = new LinkMetrics();
+        try (LinkService linkService = LinkServiceFactory.fromConfiguration(metrics)) {
+            if (!arguments.isEmpty() && arguments.get(0).equals("--batch")) {
+                runBatch(linkService, arguments.toArray(new String[0]));
+                return;
+            }
+            registerMBeanInBackground(metrics);
+            ConsoleApp app = new ConsoleApp(linkService, UUID.randomUUID().toString(), headless);
             app.run();
         } catch (Exception e) {
             System.err.println("Произошла критическая ошибка: " + e.getMessage());
         }
     }
+
+    // Платформенный MBeanServer поднимается десятки миллисекунд, поэтому не задерживает приглашение;
+    // пакетному режиму JMX не нужен
+    private static void registerMBeanInBackground(LinkMetrics metrics) {
+        Thread registration = new Thread(() -> {
+            try {
+                metrics.registerMBean("console");
+            } catch (JMException e) {
+                System.err.println("Ошибка: не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+            }
+        }, "jmx-registration");
+        registration.setDaemon(true);
+        registration.start();
+    }
+
+    private static void runBatch(LinkService linkService, String[] args) throws IOException {
+        String file = null;
+        String userUuid = UUID.randomUUID().toString();
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--user":
+                    userUuid = args[++i];
+                    break;
+                default:
+                    file = args[i];
+                    break;
+            }
+        }
+        BufferedReader input = file != null
+                ? Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (input) {
+            BatchSummary summary = new ConsoleApp(linkService, userUuid).runBatch(input, output, threads);
+            System.err.println("UUID: " + userUuid);
+            System.err.println(summary);
+        }
+    }
 }
@@ -0,0 +1,9 @@
+package com.example.shortener;
+
+/** Режим долговечности журнала предзаписи. */
+public enum Durability {
+    /** fsync после каждой пачки записей, вызывающий поток ждет подтверждения. */
+    SYNC,
+    /** Запись в кэш ОС без ожидания, fsync не чаще раза в секунду. */
+    ASYNC
+}
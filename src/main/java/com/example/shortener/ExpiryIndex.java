@@ -0,0 +1,84 @@
+package com.example.shortener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongPredicate;
+
+/**
+ * Индекс сроков жизни ссылок, разбитый на корзины фиксированной ширины.
+ * <p>
+ * Ссылка (ее код из {@link ShortCode}) попадает в корзину по моменту своего истечения, поэтому очистка
+ * просматривает только уже истекшие корзины и не трогает остальное хранилище:
+ * стоимость одного прохода пропорциональна числу истекающих ссылок.
+ */
+class ExpiryIndex {
+
+    private final ConcurrentSkipListMap<Long, Bucket> buckets = new ConcurrentSkipListMap<>();
+    private final long bucketMillis;
+
+    ExpiryIndex(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    void add(long code, long expiresAtMillis) {
+        // Корзина b содержит ссылки, истекающие строго раньше b * bucketMillis
+        long key = Math.floorDiv(expiresAtMillis, bucketMillis) + 1;
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket());
+            if (bucket.add(code)) {
+                return;
+            }
+            // Корзину уже забрал поток очистки - создаем новую для того же ключа
+            buckets.remove(key, bucket);
+        }
+    }
+
+    /**
+     * Извлекает все корзины, срок которых наступил к моменту {@code nowMillis},
+     * и передает их ссылки в {@code remover}.
+     *
+     * @return число ссылок, для которых {@code remover} вернул true
+     */
+    int drainExpired(long nowMillis, LongPredicate remover) {
+        int removed = 0;
+        Map.Entry<Long, Bucket> entry;
+        while ((entry = buckets.firstEntry()) != null && entry.getKey() * bucketMillis <= nowMillis) {
+            Bucket bucket = entry.getValue();
+            long[] codes = bucket.close();
+            buckets.remove(entry.getKey(), bucket);
+            for (long code : codes) {
+                if (remover.test(code)) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private static final class Bucket {
+        private long[] items = new long[4];
+        private int size;
+        private boolean closed;
+
+        synchronized boolean add(long code) {
+            if (closed) {
+                return false;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = code;
+            return true;
+        }
+
+        synchronized long[] close() {
+            closed = true;
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
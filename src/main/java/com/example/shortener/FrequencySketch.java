@@ -0,0 +1,73 @@
+package com.example.shortener;
+
+/**
+ * Count-Min Sketch с 4-битными счетчиками для оценки частоты обращений (TinyLFU).
+ * <p>
+ * Каждое {@code long} хранит 16 счетчиков. Когда число увеличений достигает размера
+ * выборки, все счетчики делятся пополам, чтобы старая популярность постепенно забывалась.
+ * Класс не потокобезопасен: вызывающий код обращается к нему под своей блокировкой.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int length = Integer.highestOneBit(Math.max(64, expectedEntries - 1)) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    int frequency(long key) {
+        int frequency = 15;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long hash = mix(key, depth);
+            int shift = counterShift(hash);
+            frequency = Math.min(frequency, (int) ((table[index(hash)] >>> shift) & 15));
+        }
+        return frequency;
+    }
+
+    void increment(long key) {
+        boolean added = false;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long hash = mix(key, depth);
+            int index = index(hash);
+            int shift = counterShift(hash);
+            if (((table[index] >>> shift) & 15) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int index(long hash) {
+        return (int) hash & tableMask;
+    }
+
+    private static int counterShift(long hash) {
+        return (int) (hash >>> 60) << 2;
+    }
+
+    private static long mix(long key, int depth) {
+        long h = (key + SEEDS[depth]) * SEEDS[(depth + 1) & 3];
+        return h ^ (h >>> 29);
+    }
+}
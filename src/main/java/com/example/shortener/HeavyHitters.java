@@ -0,0 +1,185 @@
+package com.example.shortener;
+
+import java.util.Arrays;
+
+/**
+ * Самые частые коды ссылок в потоке по алгоритму Space-Saving (Metwally, Agrawal, El Abbadi):
+ * не больше {@code capacity} счетчиков, новый ключ вытесняет счетчик с минимальным значением
+ * и наследует его как погрешность. Каждый ключ с частотой больше {@code n / capacity}
+ * гарантированно присутствует, а его оценка завышена не больше чем на погрешность.
+ * <p>
+ * Счетчики лежат в массивах, минимальный находится в корне двоичной кучи, код ищется по индексу
+ * с открытой адресацией - учет одного события без выделения памяти. Не потокобезопасен.
+ */
+final class HeavyHitters {
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    // Куча номеров счетчиков по возрастанию counts и обратное отображение номер -> позиция в куче
+    private final int[] heap;
+    private final int[] heapPos;
+    // Индекс код -> номер счетчика, 0 - пустая ячейка
+    private final long[] indexKeys;
+    private final int[] indexIds;
+    private final int indexMask;
+    private int size;
+
+    HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Число счетчиков должно быть положительным");
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPos = new int[capacity];
+        int indexSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.indexKeys = new long[indexSize];
+        this.indexIds = new int[indexSize];
+        this.indexMask = indexSize - 1;
+    }
+
+    /** Учитывает одно появление ненулевого ключа. */
+    void offer(long key) {
+        int id = find(key);
+        if (id >= 0) {
+            counts[id]++;
+            siftDown(heapPos[id]);
+            return;
+        }
+        if (size < capacity) {
+            id = size++;
+            keys[id] = key;
+            counts[id] = 1;
+            errors[id] = 0;
+            heap[id] = id;
+            heapPos[id] = id;
+            insert(key, id);
+            siftUp(id);
+            return;
+        }
+        id = heap[0];
+        remove(keys[id]);
+        keys[id] = key;
+        errors[id] = counts[id];
+        counts[id]++;
+        insert(key, id);
+        siftDown(0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long keyAt(int id) {
+        return keys[id];
+    }
+
+    /** Оценка частоты сверху. */
+    long countAt(int id) {
+        return counts[id];
+    }
+
+    /** Насколько оценка может превышать настоящую частоту. */
+    long errorAt(int id) {
+        return errors[id];
+    }
+
+    /** Больше скольких переходов не может быть у ключа, которого нет среди счетчиков. */
+    long absentBound() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    void clear() {
+        Arrays.fill(indexKeys, 0);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int i = (int) ShortCode.hash(key) & indexMask;
+        while (true) {
+            long k = indexKeys[i];
+            if (k == key) {
+                return indexIds[i];
+            }
+            if (k == 0) {
+                return -1;
+            }
+            i = (i + 1) & indexMask;
+        }
+    }
+
+    private void insert(long key, int id) {
+        int i = (int) ShortCode.hash(key) & indexMask;
+        while (indexKeys[i] != 0) {
+            i = (i + 1) & indexMask;
+        }
+        indexKeys[i] = key;
+        indexIds[i] = id;
+    }
+
+    // Удаление со сдвигом назад: последующие ключи цепочки переезжают в освободившуюся ячейку
+    private void remove(long key) {
+        int i = (int) ShortCode.hash(key) & indexMask;
+        while (indexKeys[i] != key) {
+            i = (i + 1) & indexMask;
+        }
+        int j = i;
+        while (true) {
+            j = (j + 1) & indexMask;
+            long k = indexKeys[j];
+            if (k == 0) {
+                indexKeys[i] = 0;
+                return;
+            }
+            int home = (int) ShortCode.hash(k) & indexMask;
+            boolean stays = i <= j ? i < home && home <= j : i < home || home <= j;
+            if (!stays) {
+                indexKeys[i] = k;
+                indexIds[i] = indexIds[j];
+                i = j;
+            }
+        }
+    }
+
+    private void siftUp(int pos) {
+        int id = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int parentId = heap[parent];
+            if (counts[parentId] <= counts[id]) {
+                break;
+            }
+            heap[pos] = parentId;
+            heapPos[parentId] = pos;
+            pos = parent;
+        }
+        heap[pos] = id;
+        heapPos[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            int childId = heap[child];
+            if (counts[id] <= counts[childId]) {
+                break;
+            }
+            heap[pos] = childId;
+            heapPos[childId] = pos;
+            pos = child;
+        }
+        heap[pos] = id;
+        heapPos[id] = pos;
+    }
+}
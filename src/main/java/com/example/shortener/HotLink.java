@@ -0,0 +1,33 @@
+package com.example.shortener;
+
+/** Ссылка из списка самых посещаемых с оценкой числа переходов за окно. */
+public class HotLink {
+
+    private final String shortUrl;
+    private final long visits;
+    private final long error;
+
+    public HotLink(String shortUrl, long visits, long error) {
+        this.shortUrl = shortUrl;
+        this.visits = visits;
+        this.error = error;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    /** Оценка сверху: настоящее число переходов не меньше {@code visits - error}. */
+    public long getVisits() {
+        return visits;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return shortUrl + "=" + visits + "±" + error;
+    }
+}
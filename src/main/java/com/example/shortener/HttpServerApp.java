@@ -0,0 +1,35 @@
+package com.example.shortener;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+
+public class HttpServerApp {
+
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Configuration.getHttpPort();
+        try {
+            LinkMetrics metrics = new LinkMetrics();
+            VisitAnalytics analytics = LinkServiceFactory.analyticsFromConfiguration();
+            LinkService linkService = LinkServiceFactory.fromConfiguration(metrics, analytics);
+            metrics.registerMBean("http-" + port);
+            ExecutorService requests = Configuration.isHttpOffloadRequests()
+                    ? ThreadingModel.configured().newTaskExecutor("http-request", Configuration.getHttpRequestThreads())
+                    : null;
+            RedirectHttpServer server = new RedirectHttpServer(linkService, new InetSocketAddress(port),
+                    Configuration.getHttpIoThreads(), Configuration.getHttpIdleTimeoutSeconds(),
+                    Configuration.getDefaultLimit(), Configuration.isMetricsEnabled() ? metrics : null, requests, analytics);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                if (requests != null) {
+                    requests.shutdown();
+                }
+                linkService.close();
+            }));
+            server.start();
+            System.out.println("HTTP-сервер сокращения ссылок запущен на порту " + server.getPort()
+                    + (requests != null ? " (запросы на потоках " + ThreadingModel.configured() + ")" : ""));
+        } catch (Exception e) {
+            System.err.println("Произошла критическая ошибка: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.shortener;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Декоратор, измеряющий задержку каждой операции {@link LinkService} и считающий
+ * созданные ссылки, попадания и промахи. События, видимые только внутри хранилища
+ * (истечение срока, исчерпание лимита, очистка), учитывает само хранилище в тех же {@link LinkMetrics}.
+ * <p>
+ * На горячем пути добавляет два вызова {@link System#nanoTime()} и не выделяет память.
+ */
+public class InstrumentedLinkService implements LinkService {
+
+    private final LinkService delegate;
+    private final LinkMetrics metrics;
+
+    public InstrumentedLinkService(LinkService delegate, LinkMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public LinkMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        long start = System.nanoTime();
+        try {
+            Link link = delegate.create(originalUrl, userUuid, limit);
+            metrics.recordCreate();
+            return link;
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.CREATE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return Optional.ofNullable(lookup(shortUrl));
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        long start = System.nanoTime();
+        try {
+            return hitOrMiss(delegate.lookup(shortUrl));
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        long start = System.nanoTime();
+        try {
+            return hitOrMiss(delegate.resolveAndRegisterVisit(shortUrl));
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.RESOLVE, System.nanoTime() - start);
+        }
+    }
+
+    private <T> T hitOrMiss(T result) {
+        if (result != null) {
+            metrics.recordHit();
+        } else {
+            metrics.recordMiss();
+        }
+        return result;
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        return delegate.registerVisits(shortUrl, count);
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        long start = System.nanoTime();
+        try {
+            return delegate.delete(shortUrl, userUuid);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateLimit(shortUrl, userUuid, newLimit);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.UPDATE_LIMIT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.listByUser(userUuid, offset, limit);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.LIST_BY_USER, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        long start = System.nanoTime();
+        try {
+            return delegate.deleteAllByUser(userUuid);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.DELETE_ALL_BY_USER, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        long start = System.nanoTime();
+        try {
+            return delegate.updateLimitForUser(userUuid, newLimit);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.UPDATE_LIMIT_FOR_USER, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        long start = System.nanoTime();
+        try {
+            return delegate.importLink(link);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.IMPORT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        long start = System.nanoTime();
+        try {
+            return delegate.importLinks(links);
+        } finally {
+            metrics.recordLatency(LinkMetrics.Operation.IMPORT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        delegate.forEachLink(action);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
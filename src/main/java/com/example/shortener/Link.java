@@ -1,22 +1,39 @@
 package com.example.shortener;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 
 public class Link {
-    private final String originalUrl;
-    private final String shortUrl;
+    private static final AtomicIntegerFieldUpdater<Link> VISIT_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(Link.class, "visitCount");
+
+    // Не final только ради замены равной строкой из UrlInterner до публикации ссылки
+    private String originalUrl;
+    // Короткий код хранится в виде числа (см. ShortCode) и превращается в строку только при выводе
+    private final long code;
     private final String userUuid;
-    private int limit;
-    private final LocalDateTime createdAt;
-    private int visitCount;
+    private volatile int limit;
+    // Время хранится в миллисекундах эпохи, чтобы проверка срока жизни не создавала объектов
+    private final long createdAtMillis;
+    private final long expiresAtMillis;
+    private volatile int visitCount;
+    // Часовой пояс часов хранилища для getCreatedAt; null - системный. Задается до публикации ссылки
+    private ZoneId zone;
+
+    public Link(String originalUrl, String shortUrl, String userUuid, int limit, long createdAtMillis, long expiresAtMillis) {
+        this(originalUrl, encode(shortUrl), userUuid, limit, createdAtMillis, expiresAtMillis);
+    }
 
-    public Link(String originalUrl, String shortUrl, String userUuid, int limit, LocalDateTime createdAt) {
+    Link(String originalUrl, long code, String userUuid, int limit, long createdAtMillis, long expiresAtMillis) {
         this.originalUrl = originalUrl;
-        this.shortUrl = shortUrl;
+        this.code = code;
         this.userUuid = userUuid;
         this.limit = limit;
-        this.createdAt = createdAt;
+        this.createdAtMillis = createdAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
         this.visitCount = 0;
     }
 
@@ -25,7 +42,11 @@ public class Link {
     }
 
     public String getShortUrl() {
-        return shortUrl;
+        return ShortCode.decode(code);
+    }
+
+    long getCode() {
+        return code;
     }
 
     public String getUserUuid() {
@@ -37,7 +58,19 @@ public class Link {
     }
 
     public LocalDateTime getCreatedAt() {
-        return createdAt;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAtMillis), zone != null ? zone : ZoneId.systemDefault());
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public boolean isExpiredAt(long nowMillis) {
+        return expiresAtMillis < nowMillis;
     }
 
     public int getVisitCount() {
@@ -45,10 +78,87 @@ public class Link {
     }
 
     public void incrementVisitCount() {
-        this.visitCount++;
+        VISIT_COUNT.incrementAndGet(this);
+    }
+
+    /**
+     * Атомарно регистрирует переход, если лимит еще не исчерпан.
+     * Проверка и увеличение счетчика выполняются одним CAS без блокировок.
+     *
+     * @return true, если переход учтен; false, если лимит исчерпан
+     */
+    public boolean tryRegisterVisit() {
+        while (true) {
+            int current = visitCount;
+            if (current >= limit) {
+                return false;
+            }
+            if (VISIT_COUNT.compareAndSet(this, current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Атомарно регистрирует до {@code count} переходов в пределах лимита.
+     *
+     * @return сколько переходов зарегистрировано
+     */
+    public int tryRegisterVisits(int count) {
+        while (true) {
+            int current = visitCount;
+            int granted = Math.min(count, limit - current);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (VISIT_COUNT.compareAndSet(this, current, current + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /** Независимая копия ссылки с тем же кодом, сроком жизни и счетчиком переходов. */
+    Link copy() {
+        Link copy = new Link(originalUrl, code, userUuid, limit, createdAtMillis, expiresAtMillis);
+        copy.visitCount = visitCount;
+        return copy;
+    }
+
+    /**
+     * Заменяет оригинальный URL равным ему общим экземпляром. Вызывается хранилищем до того,
+     * как ссылка станет видна другим потокам.
+     */
+    void shareOriginalUrl(UrlInterner interner) {
+        originalUrl = interner.intern(originalUrl);
+    }
+
+    /**
+     * Задает часовой пояс, в котором {@link #getCreatedAt()} показывает время создания, -
+     * пояс часов хранилища. Вызывается хранилищем до того, как ссылка станет видна другим потокам.
+     */
+    void useZone(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /** Поднимает счетчик переходов до {@code count}, если он меньше. Используется при восстановлении. */
+    void advanceVisitCount(int count) {
+        int current;
+        while ((current = visitCount) < count) {
+            if (VISIT_COUNT.compareAndSet(this, current, count)) {
+                return;
+            }
+        }
     }
 
     public void setLimit(int limit) {
         this.limit = limit;
     }
+
+    private static long encode(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            throw new IllegalArgumentException("Некорректный короткий код: " + shortUrl);
+        }
+        return code;
+    }
 }
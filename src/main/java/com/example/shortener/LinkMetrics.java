@@ -0,0 +1,248 @@
+package com.example.shortener;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Метрики хранилища ссылок: счетчики событий, гистограммы задержек по операциям
+ * {@link LinkService} и измерители (gauges) размера хранилища и памяти.
+ * <p>
+ * Счетчики построены на {@link LongAdder}, гистограммы - на {@link LatencyHistogram},
+ * поэтому запись не блокирует и не выделяет память. Снимок доступен через JMX
+ * ({@link #registerMBean(String)}) и в текстовом формате Prometheus ({@link #writeText(StringBuilder)}).
+ */
+public final class LinkMetrics implements LinkMetricsMXBean {
+
+    /** Операции {@link LinkService}, для которых ведутся гистограммы задержек. */
+    public enum Operation {
+        CREATE("create"),
+        LOOKUP("lookup"),
+        RESOLVE("resolve"),
+        DELETE("delete"),
+        UPDATE_LIMIT("update_limit"),
+        LIST_BY_USER("list_by_user"),
+        DELETE_ALL_BY_USER("delete_all_by_user"),
+        UPDATE_LIMIT_FOR_USER("update_limit_for_user"),
+        IMPORT("import");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    // Метки quantile для PERCENTILES: деление на 100 в double дает 0.9990000000000001
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final LongAdder creates = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder limitExhaustions = new LongAdder();
+    private final LongAdder purgeRuns = new LongAdder();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private volatile boolean jvmGaugesRegistered;
+
+    public LinkMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        gauge("event_log_dropped", () -> AsyncEventLog.shared().getDroppedCount());
+    }
+
+    // Платформенные MXBean-ы заметно удлиняют запуск, поэтому подключаются при первом снимке
+    private void registerJvmGauges() {
+        if (jvmGaugesRegistered) {
+            return;
+        }
+        synchronized (this) {
+            if (jvmGaugesRegistered) {
+                return;
+            }
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            gauge("jvm_heap_used_bytes", () -> memory.getHeapMemoryUsage().getUsed());
+            gauge("jvm_heap_committed_bytes", () -> memory.getHeapMemoryUsage().getCommitted());
+            gauge("jvm_non_heap_used_bytes", () -> memory.getNonHeapMemoryUsage().getUsed());
+            // Файлы off-heap хранилища и буферы журнала видны только в пулах буферов
+            for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+                String name = pool.getName().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+                gauge("jvm_buffer_" + name + "_used_bytes", pool::getMemoryUsed);
+            }
+            jvmGaugesRegistered = true;
+        }
+    }
+
+    /** Регистрирует измеритель; повторная регистрация с тем же именем заменяет прежний. */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public void recordLatency(Operation operation, long nanos) {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    public LatencyHistogram latency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    void recordCreate() {
+        creates.increment();
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordExpirations(int count) {
+        expirations.add(count);
+    }
+
+    void recordLimitExhaustion() {
+        limitExhaustions.increment();
+    }
+
+    void recordPurgeRun() {
+        purgeRuns.increment();
+    }
+
+    @Override
+    public long getCreates() {
+        return creates.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public long getLimitExhaustions() {
+        return limitExhaustions.sum();
+    }
+
+    @Override
+    public long getPurgeRuns() {
+        return purgeRuns.sum();
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMicros() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latency(operation);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            for (double percentile : PERCENTILES) {
+                result.put(operation.label() + ".p" + formatPercentile(percentile),
+                        histogram.valueAtPercentile(percentile) / 1000.0);
+            }
+            result.put(operation.label() + ".max", histogram.getMax() / 1000.0);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        registerJvmGauges();
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            result.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return result;
+    }
+
+    /**
+     * Регистрирует метрики в платформенном {@link MBeanServer}.
+     *
+     * @param name значение ключа {@code name} в имени объекта, чтобы различать несколько хранилищ
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.example.shortener:type=LinkMetrics,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /** Снимок метрик в текстовом формате Prometheus (exposition format 0.0.4). */
+    public void writeText(StringBuilder out) {
+        counter(out, "shortener_creates_total", getCreates());
+        counter(out, "shortener_hits_total", getHits());
+        counter(out, "shortener_misses_total", getMisses());
+        counter(out, "shortener_expirations_total", getExpirations());
+        counter(out, "shortener_limit_exhaustions_total", getLimitExhaustions());
+        counter(out, "shortener_purge_runs_total", getPurgeRuns());
+
+        out.append("# TYPE shortener_operation_latency_seconds summary\n");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latency(operation);
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                out.append("shortener_operation_latency_seconds{op=\"").append(operation.label())
+                        .append("\",quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                        .append(seconds(histogram.valueAtPercentile(PERCENTILES[i]))).append('\n');
+            }
+            out.append("shortener_operation_latency_seconds_sum{op=\"").append(operation.label()).append("\"} ")
+                    .append(seconds(histogram.getSum())).append('\n');
+            out.append("shortener_operation_latency_seconds_count{op=\"").append(operation.label()).append("\"} ")
+                    .append(count).append('\n');
+        }
+
+        registerJvmGauges();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            String name = "shortener_" + gauge.getKey();
+            out.append("# TYPE ").append(name).append(" gauge\n")
+                    .append(name).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+    }
+
+    private static void counter(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.shortener;
+
+import java.util.Map;
+
+/** JMX-представление {@link LinkMetrics}: {@code com.example.shortener:type=LinkMetrics}. */
+public interface LinkMetricsMXBean {
+
+    long getCreates();
+
+    long getHits();
+
+    long getMisses();
+
+    long getExpirations();
+
+    long getLimitExhaustions();
+
+    long getPurgeRuns();
+
+    /** Перцентили задержек в микросекундах, ключи вида {@code resolve.p99}. */
+    Map<String, Double> getLatencyMicros();
+
+    /** Текущие значения измерителей: размер хранилища, память и т.п. */
+    Map<String, Long> getGauges();
+}
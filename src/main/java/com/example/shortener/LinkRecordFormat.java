@@ -0,0 +1,361 @@
+package com.example.shortener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Построчные форматы выгрузки ссылок: CSV с заголовком и NDJSON (один JSON-объект в строке).
+ * <p>
+ * Поля: короткий код, оригинальный URL, UUID владельца, лимит, время создания и истечения
+ * в миллисекундах эпохи и число переходов. Обязательны первые три; для остальных при
+ * загрузке подставляются значения по умолчанию.
+ */
+public enum LinkRecordFormat {
+
+    CSV {
+        @Override
+        String header() {
+            return "short_url,original_url,user_uuid,limit,created_at_millis,expires_at_millis,visit_count";
+        }
+
+        @Override
+        boolean isHeader(String line) {
+            return line.startsWith("short_url,");
+        }
+
+        @Override
+        Record parse(String line) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() < 3) {
+                throw new IllegalArgumentException("Ожидается не меньше трех полей");
+            }
+            Record record = new Record();
+            record.shortUrl = fields.get(0);
+            record.originalUrl = fields.get(1);
+            record.userUuid = fields.get(2);
+            record.limit = optionalInt(fields, 3);
+            record.createdAtMillis = optionalLong(fields, 4);
+            record.expiresAtMillis = optionalLong(fields, 5);
+            record.visitCount = optionalInt(fields, 6);
+            return record;
+        }
+
+        @Override
+        void write(Link link, StringBuilder out) {
+            out.append(link.getShortUrl()).append(',');
+            appendCsv(out, link.getOriginalUrl());
+            out.append(',');
+            appendCsv(out, link.getUserUuid());
+            out.append(',').append(link.getLimit())
+                    .append(',').append(link.getCreatedAtMillis())
+                    .append(',').append(link.getExpiresAtMillis())
+                    .append(',').append(link.getVisitCount());
+        }
+    },
+
+    NDJSON {
+        @Override
+        String header() {
+            return null;
+        }
+
+        @Override
+        boolean isHeader(String line) {
+            return false;
+        }
+
+        @Override
+        Record parse(String line) {
+            return new JsonReader(line).readRecord();
+        }
+
+        @Override
+        void write(Link link, StringBuilder out) {
+            out.append("{\"shortUrl\":\"").append(link.getShortUrl())
+                    .append("\",\"originalUrl\":\"").append(RedirectHttpServer.escapeJson(link.getOriginalUrl()))
+                    .append("\",\"userUuid\":\"").append(RedirectHttpServer.escapeJson(link.getUserUuid()))
+                    .append("\",\"limit\":").append(link.getLimit())
+                    .append(",\"createdAtMillis\":").append(link.getCreatedAtMillis())
+                    .append(",\"expiresAtMillis\":").append(link.getExpiresAtMillis())
+                    .append(",\"visitCount\":").append(link.getVisitCount())
+                    .append('}');
+        }
+    };
+
+    /** Строка заголовка или null, если у формата его нет. */
+    abstract String header();
+
+    abstract boolean isHeader(String line);
+
+    /** Разбирает строку; некорректная строка приводит к {@link IllegalArgumentException}. */
+    abstract Record parse(String line);
+
+    abstract void write(Link link, StringBuilder out);
+
+    /** Формат по расширению файла: {@code .csv}, {@code .ndjson} или {@code .jsonl}. */
+    public static LinkRecordFormat forFileName(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Неизвестный формат файла: " + fileName);
+    }
+
+    /** Поля одной строки; отсутствующие числовые поля равны -1. */
+    static final class Record {
+        String shortUrl;
+        String originalUrl;
+        String userUuid;
+        int limit = -1;
+        long createdAtMillis = -1;
+        long expiresAtMillis = -1;
+        int visitCount = -1;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(8);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            field.setLength(0);
+            if (i < length && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Незакрытая кавычка");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < length && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Лишние символы после кавычки");
+                }
+            } else {
+                int comma = line.indexOf(',', i);
+                int end = comma < 0 ? length : comma;
+                field.append(line, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= length) {
+                return fields;
+            }
+            i++;
+        }
+    }
+
+    private static void appendCsv(StringBuilder out, String value) {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0;
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static int optionalInt(List<String> fields, int index) {
+        return index < fields.size() && !fields.get(index).isEmpty() ? Integer.parseInt(fields.get(index)) : -1;
+    }
+
+    private static long optionalLong(List<String> fields, int index) {
+        return index < fields.size() && !fields.get(index).isEmpty() ? Long.parseLong(fields.get(index)) : -1;
+    }
+
+    /** Разбор плоского JSON-объекта со строковыми и числовыми значениями. */
+    private static final class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Record readRecord() {
+            Record record = new Record();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return record;
+            }
+            while (true) {
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                switch (key) {
+                    case "shortUrl":
+                        record.shortUrl = readString();
+                        break;
+                    case "originalUrl":
+                        record.originalUrl = readString();
+                        break;
+                    case "userUuid":
+                        record.userUuid = readString();
+                        break;
+                    case "limit":
+                        record.limit = (int) readLong();
+                        break;
+                    case "createdAtMillis":
+                        record.createdAtMillis = readLong();
+                        break;
+                    case "expiresAtMillis":
+                        record.expiresAtMillis = readLong();
+                        break;
+                    case "visitCount":
+                        record.visitCount = (int) readLong();
+                        break;
+                    default:
+                        skipValue();
+                        break;
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Ожидалась ',' или '}' в позиции " + (pos - 1));
+                }
+            }
+            skipWhitespace();
+            if (pos != text.length()) {
+                throw new IllegalArgumentException("Лишние символы после объекта");
+            }
+            if (record.shortUrl == null || record.originalUrl == null || record.userUuid == null) {
+                throw new IllegalArgumentException("Нет обязательных полей shortUrl, originalUrl или userUuid");
+            }
+            return record;
+        }
+
+        private String readString() {
+            skipWhitespace();
+            if (next() != '"') {
+                throw new IllegalArgumentException("Ожидалась строка в позиции " + (pos - 1));
+            }
+            int start = pos;
+            // Быстрый путь: строка без экранирования
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '"') {
+                    return text.substring(start, pos++);
+                }
+                if (c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            StringBuilder sb = new StringBuilder(text.substring(start, pos));
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw new IllegalArgumentException("Обрезанная escape-последовательность");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                        break;
+                }
+            }
+        }
+
+        private long readLong() {
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("Ожидалось число в позиции " + start);
+            }
+            return Long.parseLong(text.substring(start, pos));
+        }
+
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+                return;
+            }
+            while (pos < text.length() && text.charAt(pos) != ',' && text.charAt(pos) != '}') {
+                if (text.charAt(pos) == '{' || text.charAt(pos) == '[') {
+                    throw new IllegalArgumentException("Вложенные значения не поддерживаются");
+                }
+                pos++;
+            }
+        }
+
+        private void expect(char expected) {
+            skipWhitespace();
+            if (next() != expected) {
+                throw new IllegalArgumentException("Ожидался символ '" + expected + "' в позиции " + (pos - 1));
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : '\0';
+        }
+
+        private char next() {
+            if (pos >= text.length()) {
+                throw new IllegalArgumentException("Неожиданный конец строки");
+            }
+            return text.charAt(pos++);
+        }
+    }
+}
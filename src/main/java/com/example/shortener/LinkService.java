@@ -1,6 +1,9 @@
 package com.example.shortener;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface LinkService extends AutoCloseable {
     Link create(String originalUrl, String userUuid, int limit);
@@ -9,6 +12,86 @@ public interface LinkService extends AutoCloseable {
     boolean delete(String shortUrl, String userUuid);
     boolean updateLimit(String shortUrl, String userUuid, int newLimit);
 
+    /**
+     * Страница ссылок пользователя в порядке создания.
+     *
+     * @param offset сколько ссылок пропустить
+     * @param limit  максимальный размер страницы
+     */
+    List<Link> listByUser(String userUuid, int offset, int limit);
+
+    /**
+     * Удаляет все ссылки пользователя.
+     *
+     * @return число удаленных ссылок
+     */
+    int deleteAllByUser(String userUuid);
+
+    /**
+     * Устанавливает новый лимит переходов для всех ссылок пользователя.
+     *
+     * @return число измененных ссылок
+     */
+    int updateLimitForUser(String userUuid, int newLimit);
+
+    /**
+     * Добавляет готовую ссылку с ее коротким кодом, сроком жизни и счетчиком переходов.
+     * Используется при переносе ссылок между узлами и при импорте.
+     *
+     * @return false, если код уже занят
+     */
+    boolean importLink(Link link);
+
+    /**
+     * Пакетный вариант {@link #importLink(Link)}. Реализации могут оплатить всю пачку
+     * одной записью на диск или одним обращением к узлу.
+     *
+     * @return ссылки, которые не добавлены, потому что их коды уже заняты
+     */
+    default List<Link> importLinks(List<Link> links) {
+        List<Link> rejected = new ArrayList<>();
+        for (Link link : links) {
+            if (!importLink(link)) {
+                rejected.add(link);
+            }
+        }
+        return rejected;
+    }
+
+    /** Обходит все ссылки хранилища, включая истекшие, но еще не удаленные. */
+    void forEachLink(Consumer<Link> action);
+
+    /**
+     * Вариант {@link #getByShortUrl(String)} без обертки {@link Optional}.
+     *
+     * @return ссылка или null, если она не найдена или истекла
+     */
+    default Link lookup(String shortUrl) {
+        return getByShortUrl(shortUrl).orElse(null);
+    }
+
+    /**
+     * Вариант {@link #getOriginalUrlAndRegisterVisit(String)} без обертки {@link Optional}.
+     *
+     * @return оригинальный URL или null, если переход невозможен
+     */
+    default String resolveAndRegisterVisit(String shortUrl) {
+        return getOriginalUrlAndRegisterVisit(shortUrl).orElse(null);
+    }
+
+    /**
+     * Регистрирует пачку переходов, накопленных вне хранилища, не превышая лимит ссылки.
+     *
+     * @return сколько переходов удалось зарегистрировать
+     */
+    default int registerVisits(String shortUrl, int count) {
+        int registered = 0;
+        while (registered < count && resolveAndRegisterVisit(shortUrl) != null) {
+            registered++;
+        }
+        return registered;
+    }
+
     @Override
     default void close() {}
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Создает реализацию {@link LinkService}, выбранную в {@code config.properties}. */
+public final class LinkServiceFactory {
+
+    private LinkServiceFactory() {
+    }
+
+    public static LinkService fromConfiguration() throws IOException {
+        return fromConfiguration(new LinkMetrics());
+    }
+
+    /**
+     * Хранилище из конфигурации; при {@code metrics.enabled=true} обернуто в
+     * {@link InstrumentedLinkService}, пишущий в {@code metrics}.
+     */
+    public static LinkService fromConfiguration(LinkMetrics metrics) throws IOException {
+        return fromConfiguration(metrics, null);
+    }
+
+    /**
+     * То же, что {@link #fromConfiguration(LinkMetrics)}; успешные переходы дополнительно
+     * записываются в {@code analytics}, если он не null.
+     */
+    public static LinkService fromConfiguration(LinkMetrics metrics, VisitAnalytics analytics) throws IOException {
+        LinkService storage = withCache(storage(Configuration.getStorageBackend(), null, metrics), metrics);
+        return instrumented(withAnalytics(rateLimited(storage, metrics), analytics, metrics), metrics);
+    }
+
+    /** Аналитика переходов из конфигурации или null, если она выключена. */
+    public static VisitAnalytics analyticsFromConfiguration() {
+        if (!Configuration.isAnalyticsEnabled()) {
+            return null;
+        }
+        return new VisitAnalytics(Configuration.getAnalyticsBufferCapacity(), Configuration.getAnalyticsMaxLinks(),
+                Configuration.getAnalyticsSketchSize(), Configuration.getAnalyticsDrainIntervalMillis());
+    }
+
+    /**
+     * Хранилище узла кластера. Файлы каждого узла лежат в своем подкаталоге
+     * {@code instance}, чтобы несколько узлов могли работать на одной машине.
+     */
+    public static LinkService forShard(String backend, String instance) throws IOException {
+        if (backend.equals("sharded")) {
+            throw new IllegalArgumentException("Узел кластера не может сам быть маршрутизатором");
+        }
+        LinkMetrics metrics = new LinkMetrics();
+        return withCache(storage(backend, instance, metrics), metrics);
+    }
+
+    private static LinkService rateLimited(LinkService service, LinkMetrics metrics) {
+        if (!Configuration.isRateLimitEnabled()) {
+            return service;
+        }
+        RateLimitedLinkService limited = new RateLimitedLinkService(service,
+                Configuration.getRateLimitCreatesPerSecond(), Configuration.getRateLimitCreateBurst(),
+                Configuration.getRateLimitRedirectsPerSecond(), Configuration.getRateLimitRedirectBurst(),
+                Configuration.getRateLimitMaxKeys());
+        metrics.gauge("rate_limited", limited::getRejectedCount);
+        return limited;
+    }
+
+    private static LinkService withAnalytics(LinkService service, VisitAnalytics analytics, LinkMetrics metrics) {
+        if (analytics == null) {
+            return service;
+        }
+        metrics.gauge("analytics_dropped", analytics::getDroppedCount);
+        metrics.gauge("analytics_tracked_links", analytics::getTrackedLinks);
+        return new AnalyticsLinkService(service, analytics);
+    }
+
+    private static LinkService instrumented(LinkService service, LinkMetrics metrics) {
+        return Configuration.isMetricsEnabled() ? new InstrumentedLinkService(service, metrics) : service;
+    }
+
+    private static LinkService withCache(LinkService storage, LinkMetrics metrics) {
+        if (Configuration.isCacheEnabled()) {
+            CachingLinkService cache = new CachingLinkService(storage, Configuration.getCacheMaxBytes(),
+                    Configuration.getCacheFlushIntervalMillis());
+            metrics.gauge("cache_hits", cache::getHitCount);
+            metrics.gauge("cache_misses", cache::getMissCount);
+            metrics.gauge("cache_evictions", cache::getEvictionCount);
+            metrics.gauge("cache_weighted_bytes", cache::getWeightedSize);
+            return cache;
+        }
+        return storage;
+    }
+
+    private static LinkService storage(String backend, String instance, LinkMetrics metrics) throws IOException {
+        switch (backend) {
+            case "memory":
+                return new LinkServiceImpl(Clock.systemDefaultZone(), metrics);
+            case "wal":
+                return new PersistentLinkService(directory(Configuration.getWalDirectory(), instance),
+                        Configuration.getWalDurability(), Configuration.getSnapshotIntervalSeconds(),
+                        Clock.systemDefaultZone(), metrics);
+            case "offheap":
+                OffHeapLinkService offHeap = new OffHeapLinkService(directory(Configuration.getOffHeapDirectory(), instance),
+                        Configuration.getOffHeapMaxLinks(), Configuration.getOffHeapArenaBytes());
+                metrics.gauge("links_stored", offHeap::size);
+                return offHeap;
+            case "sharded":
+                Map<String, LinkService> shards = new LinkedHashMap<>();
+                for (InetSocketAddress address : Configuration.getClusterShards()) {
+                    shards.put(address.getHostString() + ":" + address.getPort(), new RemoteLinkService(address));
+                }
+                return new ShardedLinkService(shards, Configuration.getClusterVirtualNodes());
+            default:
+                throw new IllegalArgumentException("Неизвестное хранилище: " + backend);
+        }
+    }
+
+    private static Path directory(String base, String instance) {
+        return instance == null ? Paths.get(base) : Paths.get(base, instance);
+    }
+}
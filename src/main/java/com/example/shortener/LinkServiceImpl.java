@@ -1,22 +1,36 @@
 package com.example.shortener;
 
-import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
-
 import java.time.Clock;
-import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class LinkServiceImpl implements LinkService, AutoCloseable {
 
-    final Map<String, Link> linkStorage = new ConcurrentHashMap<>();
+    // Ключ - короткий код в виде числа (ShortCode); строка декодируется только на границе сервиса
+    final LongLinkMap linkStorage = new LongLinkMap();
     private static final long EXPIRATION_SECONDS = Configuration.getExpirationSeconds();
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private static final long PURGE_INTERVAL_SECONDS = Configuration.getPurgeIntervalSeconds();
+    private static final AsyncEventLog EVENTS = AsyncEventLog.shared();
+    // Поток очистки запускается первой добавленной ссылкой; null до этого и после close
+    private volatile ScheduledExecutorService scheduler;
+    private boolean closed;
+    private final ExpiryIndex expiryIndex = new ExpiryIndex(1000);
+    private final UserLinkIndex userIndex = new UserLinkIndex();
+    // Общие экземпляры оригинальных URL; null, если выключено
+    private final UrlInterner urls;
+    // Последняя ссылка каждой пары (владелец, URL) для повторного использования кода; null, если выключено
+    private final LongLinkMap sameUrlIndex;
+    private final AtomicLong totalPurged = new AtomicLong();
+    private final AtomicLong codeCollisions = new AtomicLong();
+    private volatile int lastPurgeRemoved;
     private final Clock clock;
+    private final LinkMetrics metrics;
 
     // Основной конструктор, используемый приложением
     public LinkServiceImpl() {
@@ -25,95 +39,339 @@ public class LinkServiceImpl implements LinkService, AutoCloseable {
 
     // Конструктор для использования в тестах
     public LinkServiceImpl(Clock clock) {
+        this(clock, new LinkMetrics());
+    }
+
+    public LinkServiceImpl(Clock clock, LinkMetrics metrics) {
+        this(clock, metrics, Configuration.isLinkDeduplicationEnabled());
+    }
+
+    public LinkServiceImpl(Clock clock, LinkMetrics metrics, boolean deduplicate) {
+        this(clock, metrics, deduplicate, Configuration.isUrlInterningEnabled());
+    }
+
+    /**
+     * @param deduplicate возвращать существующую ссылку, если тот же пользователь сокращает
+     *                    тот же URL с тем же лимитом, а ссылка еще действует
+     * @param internUrls  хранить одну общую строку для ссылок на один и тот же URL
+     */
+    public LinkServiceImpl(Clock clock, LinkMetrics metrics, boolean deduplicate, boolean internUrls) {
         this.clock = clock;
-        scheduler.scheduleAtFixedRate(this::purgeExpiredLinks, 1, 1, TimeUnit.HOURS);
+        this.metrics = metrics;
+        this.sameUrlIndex = deduplicate ? new LongLinkMap() : null;
+        this.urls = internUrls ? new UrlInterner() : null;
+        metrics.gauge("links_stored", linkStorage::size);
+        if (urls != null) {
+            metrics.gauge("urls_distinct", urls::size);
+            metrics.gauge("urls_shared", urls::getHitCount);
+        }
+    }
+
+    private synchronized void startPurge() {
+        if (scheduler != null || closed) {
+            return;
+        }
+        ScheduledExecutorService purge = ThreadingModel.configured().newScheduler("link-purge");
+        purge.scheduleAtFixedRate(this::purgeExpiredLinks, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler = purge;
+    }
+
+    // Удаляет только ссылки из истекших корзин индекса, не просматривая все хранилище
+    int purgeExpiredLinks() {
+        int removed = expiryIndex.drainExpired(clock.millis(), this::removeIfExpired);
+        lastPurgeRemoved = removed;
+        totalPurged.addAndGet(removed);
+        metrics.recordPurgeRun();
+        if (removed > 0) {
+            metrics.recordExpirations(removed);
+            EVENTS.log(AsyncEventLog.Event.PURGE, Integer.toString(removed));
+        }
+        return removed;
+    }
+
+    private boolean removeIfExpired(long code) {
+        Link link = linkStorage.get(code);
+        return link != null && link.isExpiredAt(clock.millis()) && remove(link);
+    }
+
+    /** Число ссылок, удаленных последним проходом очистки. */
+    public int getLastPurgeRemovedCount() {
+        return lastPurgeRemoved;
+    }
+
+    /** Общее число ссылок, удаленных плановой очисткой с момента запуска. */
+    public long getTotalPurgedCount() {
+        return totalPurged.get();
+    }
+
+    /** Сколько раз сгенерированный код совпал с уже занятым и был сгенерирован заново. */
+    public long getCodeCollisionCount() {
+        return codeCollisions.get();
+    }
+
+    /** Счетчики событий хранилища; задержки операций измеряет {@link InstrumentedLinkService}. */
+    public LinkMetrics getMetrics() {
+        return metrics;
     }
 
-    private void purgeExpiredLinks() {
-        linkStorage.values().removeIf(this::isExpired);
-        System.out.println("Произведена плановая очистка истекших ссылок.");
+    public int size() {
+        return linkStorage.size();
     }
 
     @Override
     public Link create(String originalUrl, String userUuid, int limit) {
+        if (originalUrl == null) {
+            throw new IllegalArgumentException("Не указан оригинальный URL");
+        }
+        Link duplicate = findDuplicate(originalUrl, userUuid, limit);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        while (true) {
+            Link newLink = newLink(originalUrl, userUuid, limit);
+            if (insert(newLink)) {
+                return newLink;
+            }
+            codeCollisions.incrementAndGet();
+        }
+    }
 
-        String shortUrl = NanoIdUtils.randomNanoId(NanoIdUtils.DEFAULT_NUMBER_GENERATOR, NanoIdUtils.DEFAULT_ALPHABET, 8);
+    // Создает ссылку с новым коротким кодом, не добавляя ее в хранилище
+    Link newLink(String originalUrl, String userUuid, int limit) {
+        long nowMillis = clock.millis();
+        return new Link(originalUrl, ShortCode.random(), userUuid, limit, nowMillis, nowMillis + EXPIRATION_SECONDS * 1000);
+    }
 
-        Link newLink = new Link(originalUrl, shortUrl, userUuid, limit, LocalDateTime.now(clock));
+    /**
+     * Добавляет готовую ссылку (новую или восстановленную) в хранилище и индекс сроков жизни.
+     *
+     * @return false, если код уже занят другой ссылкой
+     */
+    boolean insert(Link link) {
+        link.useZone(clock.getZone());
+        if (urls != null) {
+            link.shareOriginalUrl(urls);
+        }
+        // Код попадает в индексы до публикации ссылки, чтобы параллельное
+        // удаление не могло обогнать добавление и оставить в индексе лишний код
+        userIndex.add(link.getUserUuid(), link.getCode());
+        if (sameUrlIndex != null) {
+            rememberUrl(link);
+        }
+        Link existing = linkStorage.putIfAbsent(link.getCode(), link);
+        if (existing != null) {
+            if (!existing.getUserUuid().equals(link.getUserUuid())) {
+                userIndex.remove(link.getUserUuid(), link.getCode());
+            }
+            if (sameUrlIndex != null) {
+                sameUrlIndex.remove(sameUrlKey(link.getUserUuid(), link.getOriginalUrl()), link);
+            }
+            return false;
+        }
+        expiryIndex.add(link.getCode(), link.getExpiresAtMillis());
+        if (scheduler == null) {
+            startPurge();
+        }
+        return true;
+    }
 
-        linkStorage.put(shortUrl, newLink);
+    // Ссылка по коду без проверки срока жизни
+    Link get(long code) {
+        return linkStorage.get(code);
+    }
 
-        return newLink;
+    Link get(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        return code == ShortCode.INVALID ? null : linkStorage.get(code);
     }
 
-    @Override
-    public Optional<Link> getByShortUrl(String shortUrl) {
-        Optional<Link> linkOptional = Optional.ofNullable(linkStorage.get(shortUrl));
-
-        if (linkOptional.isPresent()) {
-            Link link = linkOptional.get();
-            if (isExpired(link)) {
-                linkStorage.remove(shortUrl);
-                System.out.println("Уведомление: Ссылка " + shortUrl + " удалена по истечении срока жизни.");
-                return Optional.empty();
+    boolean remove(Link link) {
+        if (!linkStorage.remove(link.getCode(), link)) {
+            return false;
+        }
+        userIndex.remove(link.getUserUuid(), link.getCode());
+        if (sameUrlIndex != null) {
+            sameUrlIndex.remove(sameUrlKey(link.getUserUuid(), link.getOriginalUrl()), link);
+        }
+        return true;
+    }
+
+    /**
+     * Действующая ссылка того же пользователя на тот же URL с тем же лимитом и запасом переходов.
+     *
+     * @return null, если такой нет или повторное использование выключено
+     */
+    Link findDuplicate(String originalUrl, String userUuid, int limit) {
+        if (sameUrlIndex == null) {
+            return null;
+        }
+        Link link = sameUrlIndex.get(sameUrlKey(userUuid, originalUrl));
+        if (link == null || link.getLimit() != limit || link.getVisitCount() >= limit
+                || link.isExpiredAt(clock.millis()) || linkStorage.get(link.getCode()) != link
+                || !link.getUserUuid().equals(userUuid) || !link.getOriginalUrl().equals(originalUrl)) {
+            return null;
+        }
+        return link;
+    }
+
+    // Новая ссылка вытесняет прежнюю ссылку той же пары, например с другим лимитом
+    private void rememberUrl(Link link) {
+        long key = sameUrlKey(link.getUserUuid(), link.getOriginalUrl());
+        Link previous;
+        while ((previous = sameUrlIndex.putIfAbsent(key, link)) != null) {
+            sameUrlIndex.remove(key, previous);
+        }
+    }
+
+    // 64-битный FNV-1a пары; ключи LongLinkMap должны быть положительными.
+    // Совпадение ключей у разных пар возможно, но безопасно: findDuplicate сверяет владельца
+    // и URL найденной ссылки, а remove удаляет только ту же ссылку. Коллизия лишь вытесняет
+    // из индекса ссылку другой пары, и ее повторное сокращение создаст новый код
+    private static long sameUrlKey(String userUuid, String originalUrl) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < userUuid.length(); i++) {
+            hash = (hash ^ userUuid.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ '\n') * 0x100000001b3L;
+        for (int i = 0; i < originalUrl.length(); i++) {
+            hash = (hash ^ originalUrl.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash & Long.MAX_VALUE) | 1;
+    }
+
+    // Действующие ссылки пользователя по индексу владельца, в порядке создания
+    List<Link> linksOf(String userUuid) {
+        long[] codes = userIndex.codes(userUuid);
+        List<Link> links = new ArrayList<>(codes.length);
+        long now = clock.millis();
+        for (long code : codes) {
+            Link link = linkStorage.get(code);
+            if (link != null && link.getUserUuid().equals(userUuid) && !link.isExpiredAt(now)) {
+                links.add(link);
             }
         }
+        links.sort(Comparator.comparingLong(Link::getCreatedAtMillis).thenComparingLong(Link::getCode));
+        return links;
+    }
 
-        return linkOptional;
+    @Override
+    public boolean importLink(Link link) {
+        return insert(link.copy());
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        linkStorage.forEach(action);
+    }
+
+    Clock clock() {
+        return clock;
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return Optional.ofNullable(lookup(shortUrl));
     }
 
     @Override
     public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
-        Optional<Link> linkOptional = getByShortUrl(shortUrl);
-        if (linkOptional.isEmpty()) {
-            return Optional.empty();
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    // Горячий путь: при попадании не создает ни одного объекта
+    @Override
+    public Link lookup(String shortUrl) {
+        Link link = get(shortUrl);
+        if (link != null && link.isExpiredAt(clock.millis())) {
+            if (remove(link)) {
+                metrics.recordExpirations(1);
+                EVENTS.log(AsyncEventLog.Event.LINK_EXPIRED, shortUrl);
+            }
+            return null;
         }
+        return link;
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        Link link = registerVisit(shortUrl);
+        return link != null ? link.getOriginalUrl() : null;
+    }
 
-        Link link = linkOptional.get();
-        if (link.getVisitCount() < link.getLimit()) {
-            link.incrementVisitCount();
-            return Optional.of(link.getOriginalUrl());
+    // Регистрирует переход и возвращает ссылку, по которой он учтен, или null
+    Link registerVisit(String shortUrl) {
+        Link link = lookup(shortUrl);
+        if (link == null) {
+            return null;
+        }
+
+        if (link.tryRegisterVisit()) {
+            return link;
         } else {
-            linkStorage.remove(shortUrl);
-            System.out.println("Уведомление: Лимит для ссылки " + shortUrl + " исчерпан, ссылка удалена.");
-            return Optional.empty();
+            // Удаляем именно эту ссылку, а не ту, что могла занять ключ после нее
+            if (remove(link)) {
+                metrics.recordLimitExhaustion();
+                EVENTS.log(AsyncEventLog.Event.LIMIT_EXHAUSTED, shortUrl);
+            }
+            return null;
         }
     }
 
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        Link link = lookup(shortUrl);
+        return link != null ? link.tryRegisterVisits(count) : 0;
+    }
+
     @Override
     public boolean delete(String shortUrl, String userUuid) {
-        Optional<Link> linkOptional = Optional.ofNullable(linkStorage.get(shortUrl));
+        Link link = get(shortUrl);
+        return link != null && link.getUserUuid().equals(userUuid) && remove(link);
+    }
 
-        if (linkOptional.isPresent()) {
-            Link link = linkOptional.get();
-            if (link.getUserUuid().equals(userUuid)) {
-                linkStorage.remove(shortUrl);
-                return true;
-            }
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        Link link = get(shortUrl);
+        if (link != null && link.getUserUuid().equals(userUuid)) {
+            link.setLimit(newLimit);
+            return true;
         }
         return false;
     }
 
     @Override
-    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
-        Optional<Link> linkOptional = Optional.ofNullable(linkStorage.get(shortUrl));
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        List<Link> links = linksOf(userUuid);
+        int from = Math.min(Math.max(offset, 0), links.size());
+        int to = (int) Math.min(links.size(), (long) from + Math.max(limit, 0));
+        return new ArrayList<>(links.subList(from, to));
+    }
 
-        if (linkOptional.isPresent()) {
-            Link link = linkOptional.get();
-            if (link.getUserUuid().equals(userUuid)) {
-                link.setLimit(newLimit);
-                return true;
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        int deleted = 0;
+        for (Link link : linksOf(userUuid)) {
+            if (remove(link)) {
+                deleted++;
             }
         }
-        return false;
+        return deleted;
     }
 
-    private boolean isExpired(Link link) {
-        return link.getCreatedAt().plusSeconds(EXPIRATION_SECONDS).isBefore(LocalDateTime.now(clock));
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        List<Link> links = linksOf(userUuid);
+        for (Link link : links) {
+            link.setLimit(newLimit);
+        }
+        return links.size();
     }
 
     @Override
-    public void close() {
-        scheduler.shutdown();
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
     }
 }
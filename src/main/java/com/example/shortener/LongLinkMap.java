@@ -0,0 +1,243 @@
+package com.example.shortener;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Конкурентная хеш-таблица ссылок с примитивными ключами {@code long} без упаковки.
+ * <p>
+ * Таблица разбита на сегменты, каждый из которых - открытая адресация с линейным
+ * пробированием в паре массивов {@code long[]}/{@code Link[]}. Запись в сегмент идет
+ * под его {@link StampedLock}, а чтение - оптимистично, без блокировки: при
+ * пересечении с записью оно повторяется под блокировкой чтения.
+ * <p>
+ * Ключ 0 означает пустую ячейку, поэтому ключи должны быть ненулевыми и неотрицательными
+ * (см. {@link ShortCode}).
+ */
+final class LongLinkMap {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.6;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    LongLinkMap() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    Link get(long key) {
+        long hash = ShortCode.hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /** @return существующая ссылка с тем же ключом или null, если ссылка добавлена */
+    Link putIfAbsent(long key, Link link) {
+        long hash = ShortCode.hash(key);
+        return segmentFor(hash).putIfAbsent(key, hash, link);
+    }
+
+    /** Удаляет ключ, только если он все еще связан с {@code expected}. */
+    boolean remove(long key, Link expected) {
+        long hash = ShortCode.hash(key);
+        return segmentFor(hash).remove(key, hash, expected);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Обходит ссылки посегментно. Каждый сегмент копируется под блокировкой чтения,
+     * а {@code action} вызывается уже без блокировки.
+     */
+    void forEach(Consumer<Link> action) {
+        for (Segment segment : segments) {
+            for (Link link : segment.values()) {
+                action.accept(link);
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final Link[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Link[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private Table table = new Table(INITIAL_CAPACITY);
+        private volatile int size;
+        private int tombstones;
+
+        Link get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            Link value = probe(table, key, hash);
+            if (lock.validate(stamp)) {
+                return value;
+            }
+            stamp = lock.readLock();
+            try {
+                return probe(table, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // При оптимистичном чтении данные могут быть несогласованными,
+        // поэтому число шагов ограничено размером таблицы
+        private static Link probe(Table t, long key, long hash) {
+            int mask = t.mask;
+            int index = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = t.keys[index];
+                if (current == key) {
+                    return t.values[index];
+                }
+                if (current == EMPTY) {
+                    return null;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        Link putIfAbsent(long key, long hash, Link link) {
+            long stamp = lock.writeLock();
+            try {
+                if (size + tombstones + 1 > table.keys.length * MAX_LOAD) {
+                    rehash();
+                }
+                Table t = table;
+                int index = (int) hash & t.mask;
+                int firstTombstone = -1;
+                while (true) {
+                    long current = t.keys[index];
+                    if (current == key) {
+                        return t.values[index];
+                    }
+                    if (current == TOMBSTONE && firstTombstone < 0) {
+                        firstTombstone = index;
+                    }
+                    if (current == EMPTY) {
+                        break;
+                    }
+                    index = (index + 1) & t.mask;
+                }
+                if (firstTombstone >= 0) {
+                    index = firstTombstone;
+                    tombstones--;
+                }
+                t.values[index] = link;
+                t.keys[index] = key;
+                size++;
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long key, long hash, Link expected) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int index = (int) hash & t.mask;
+                while (true) {
+                    long current = t.keys[index];
+                    if (current == EMPTY) {
+                        return false;
+                    }
+                    if (current == key) {
+                        if (t.values[index] != expected) {
+                            return false;
+                        }
+                        clear(t, index);
+                        size--;
+                        return true;
+                    }
+                    index = (index + 1) & t.mask;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Если следующая ячейка пуста, на этой ячейке не держится ни одна цепочка
+        // пробирования: ее и предшествующие надгробия можно сделать пустыми
+        private void clear(Table t, int index) {
+            t.values[index] = null;
+            if (t.keys[(index + 1) & t.mask] != EMPTY) {
+                t.keys[index] = TOMBSTONE;
+                tombstones++;
+                return;
+            }
+            t.keys[index] = EMPTY;
+            int previous = (index - 1) & t.mask;
+            while (t.keys[previous] == TOMBSTONE) {
+                t.keys[previous] = EMPTY;
+                tombstones--;
+                previous = (previous - 1) & t.mask;
+            }
+        }
+
+        // Новая таблица создается целиком и публикуется под блокировкой записи
+        private void rehash() {
+            int capacity = table.keys.length;
+            while (size + 1 > capacity * MAX_LOAD / 2) {
+                capacity <<= 1;
+            }
+            Table old = table;
+            Table fresh = new Table(capacity);
+            for (int i = 0; i < old.keys.length; i++) {
+                long key = old.keys[i];
+                if (key != EMPTY && key != TOMBSTONE) {
+                    int index = (int) ShortCode.hash(key) & fresh.mask;
+                    while (fresh.keys[index] != EMPTY) {
+                        index = (index + 1) & fresh.mask;
+                    }
+                    fresh.keys[index] = key;
+                    fresh.values[index] = old.values[i];
+                }
+            }
+            table = fresh;
+            tombstones = 0;
+        }
+
+        Link[] values() {
+            long stamp = lock.readLock();
+            try {
+                Link[] result = new Link[size];
+                int n = 0;
+                for (Link value : table.values) {
+                    if (value != null) {
+                        result[n++] = value;
+                    }
+                }
+                return n == result.length ? result : Arrays.copyOf(result, n);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Файл, отображенный в память кусками по 1 ГБ: один {@link MappedByteBuffer}
+ * адресует не больше 2 ГБ. Вызывающий код размещает данные так, чтобы значение
+ * не пересекало границу куска. Атомарные операции требуют выравнивания по размеру значения.
+ */
+final class MappedRegion implements AutoCloseable {
+
+    static final int CHUNK_SHIFT = 30;
+    static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    private final boolean created;
+
+    /** Отображает файл, создавая его нужного размера, если он пуст или отсутствует. */
+    MappedRegion(Path path, long size) throws IOException {
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.created = file.length() == 0;
+        if (created) {
+            file.setLength(size);
+        }
+        this.size = file.length();
+        int count = (int) ((this.size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        this.chunks = new MappedByteBuffer[count];
+        FileChannel channel = file.getChannel();
+        for (int i = 0; i < count; i++) {
+            long position = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(CHUNK_SIZE, this.size - position));
+            chunks[i].order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /** true, если файл был создан при открытии, а не отображен уже существующий. */
+    boolean isCreated() {
+        return created;
+    }
+
+    long size() {
+        return size;
+    }
+
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset >>> CHUNK_SHIFT)];
+    }
+
+    private static int index(long offset) {
+        return (int) (offset & CHUNK_MASK);
+    }
+
+    long getLong(long offset) {
+        return (long) LONG.get(chunk(offset), index(offset));
+    }
+
+    long getLongVolatile(long offset) {
+        return (long) LONG.getVolatile(chunk(offset), index(offset));
+    }
+
+    void putLong(long offset, long value) {
+        LONG.set(chunk(offset), index(offset), value);
+    }
+
+    void putLongRelease(long offset, long value) {
+        LONG.setRelease(chunk(offset), index(offset), value);
+    }
+
+    boolean compareAndSetLong(long offset, long expected, long value) {
+        return LONG.compareAndSet(chunk(offset), index(offset), expected, value);
+    }
+
+    int getInt(long offset) {
+        return (int) INT.get(chunk(offset), index(offset));
+    }
+
+    int getIntAcquire(long offset) {
+        return (int) INT.getAcquire(chunk(offset), index(offset));
+    }
+
+    int getIntVolatile(long offset) {
+        return (int) INT.getVolatile(chunk(offset), index(offset));
+    }
+
+    void putInt(long offset, int value) {
+        INT.set(chunk(offset), index(offset), value);
+    }
+
+    void putIntVolatile(long offset, int value) {
+        INT.setVolatile(chunk(offset), index(offset), value);
+    }
+
+    void putIntRelease(long offset, int value) {
+        INT.setRelease(chunk(offset), index(offset), value);
+    }
+
+    void getBytes(long offset, byte[] target) {
+        ByteBuffer view = chunk(offset).duplicate();
+        view.position(index(offset));
+        view.get(target);
+    }
+
+    void putBytes(long offset, byte[] source) {
+        ByteBuffer view = chunk(offset).duplicate();
+        view.position(index(offset));
+        view.put(source);
+    }
+
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        file.close();
+    }
+}
@@ -0,0 +1,719 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Реализация {@link LinkService}, хранящая ссылки вне кучи в файлах, отображенных в память.
+ * <p>
+ * {@code links.idx} - заголовок и таблица с открытой адресацией (линейное пробирование),
+ * ключом служит короткий код, закодированный {@link ShortCode}. Каждая ячейка - запись
+ * фиксированной длины 64 байта. {@code links.arena} - append-only область с байтами
+ * оригинальных URL и UUID владельцев.
+ * <p>
+ * Чтение не берет блокировок: поля ячейки читаются под seqlock, а счетчик переходов
+ * хранится в одном 64-битном слове вместе с поколением ячейки и увеличивается CAS,
+ * так что переход не может быть засчитан ссылке, занявшей ячейку после удаления.
+ * Изменения структуры таблицы выполняются под одной блокировкой записи.
+ * <p>
+ * При запуске существующие файлы просто отображаются в память заново. Данные
+ * сбрасываются на диск операционной системой и принудительно при закрытии.
+ * Если прошлый процесс не закрыл хранилище, при запуске нечетные счетчики seqlock
+ * ячеек, оборванных посреди записи, делаются четными - иначе чтение ждало бы их вечно.
+ * Удаленные строки из арены не освобождаются.
+ * <p>
+ * Индекс владелец → коды ({@link UserLinkIndex}) живет в куче и заполняется одним проходом
+ * по таблице при первой операции над ссылками пользователя, а не при запуске: запуск
+ * остается мгновенным, а хранилище, которое только обслуживает переходы, индекс не строит вовсе.
+ */
+public class OffHeapLinkService implements LinkService {
+
+    private static final String INDEX_FILE = "links.idx";
+    private static final String ARENA_FILE = "links.arena";
+    private static final int MAGIC = 0x534C534F;
+    private static final int VERSION = 1;
+    private static final double MAX_LOAD = 0.75;
+    private static final int SWEEP_BATCH = 1 << 16;
+
+    private static final long EXPIRATION_SECONDS = Configuration.getExpirationSeconds();
+    private static final long PURGE_INTERVAL_SECONDS = Configuration.getPurgeIntervalSeconds();
+
+    // Заголовок links.idx
+    private static final long HEADER_SIZE = 64;
+    private static final long H_MAGIC = 0;
+    private static final long H_VERSION = 4;
+    private static final long H_SLOT_COUNT = 8;
+    private static final long H_SIZE = 16;
+    private static final long H_TOMBSTONES = 24;
+    private static final long H_ARENA_TAIL = 32;
+    // 1 - хранилище закрыто штатно, 0 - открыто или процесс завершился аварийно
+    static final long H_CLEAN = 40;
+
+    // Поля ячейки
+    private static final long SLOT_SIZE = 64;
+    private static final long KEY = 0;
+    private static final long CREATED_AT = 8;
+    private static final long EXPIRES_AT = 16;
+    private static final long URL_OFFSET = 24;
+    private static final long USER_OFFSET = 32;
+    private static final long STATE = 40;       // [поколение:32][переходы:32]
+    private static final long LIMIT = 48;
+    private static final long URL_LENGTH = 52;
+    private static final long USER_LENGTH = 56;
+    static final long SEQ = 60;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+    private static final long NOT_FOUND = -1;
+
+    private final MappedRegion index;
+    private final MappedRegion arena;
+    private final long slotCount;
+    private final long mask;
+    private final Clock clock;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = ThreadingModel.configured().newScheduler("offheap-sweep");
+    private final UserLinkIndex userIndex = new UserLinkIndex();
+    // Пока индекс не построен, изменения его не поддерживают; меняется под блокировкой записи
+    private volatile boolean userIndexBuilt;
+    private long sweepCursor;
+
+    public OffHeapLinkService(Path directory, long maxLinks, long arenaBytes) throws IOException {
+        this(directory, maxLinks, arenaBytes, Clock.systemDefaultZone());
+    }
+
+    public OffHeapLinkService(Path directory, long maxLinks, long arenaBytes, Clock clock) throws IOException {
+        this.clock = clock;
+        Files.createDirectories(directory);
+        long requestedSlots = Long.highestOneBit(Math.max(16, maxLinks * 2 - 1)) << 1;
+        this.index = new MappedRegion(directory.resolve(INDEX_FILE), HEADER_SIZE + requestedSlots * SLOT_SIZE);
+        this.arena = new MappedRegion(directory.resolve(ARENA_FILE), arenaBytes);
+        if (index.isCreated()) {
+            index.putInt(H_VERSION, VERSION);
+            index.putLong(H_SLOT_COUNT, requestedSlots);
+            index.putInt(H_MAGIC, MAGIC);
+        } else if (index.getInt(H_MAGIC) != MAGIC || index.getInt(H_VERSION) != VERSION) {
+            throw new IOException("Файл " + directory.resolve(INDEX_FILE) + " не является индексом off-heap хранилища");
+        }
+        this.slotCount = index.getLong(H_SLOT_COUNT);
+        this.mask = slotCount - 1;
+        if (!index.isCreated() && index.getInt(H_CLEAN) != 1) {
+            repairSeqLocks();
+        }
+        index.putIntVolatile(H_CLEAN, 0);
+        scheduler.scheduleAtFixedRate(this::sweepExpired, PURGE_INTERVAL_SECONDS, PURGE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Число живых ссылок в хранилище, включая еще не удаленные истекшие. */
+    public long size() {
+        return index.getLongVolatile(H_SIZE);
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        long now = clock.millis();
+        long expiresAt = now + EXPIRATION_SECONDS * 1000;
+        byte[] url = originalUrl.getBytes(StandardCharsets.UTF_8);
+        byte[] user = userUuid.getBytes(StandardCharsets.UTF_8);
+        writeLock.lock();
+        try {
+            long key;
+            do {
+                key = ShortCode.random();
+            } while (!insert(key, url, user, limit, now, expiresAt));
+            if (userIndexBuilt) {
+                userIndex.add(userUuid, key);
+            }
+            Link link = new Link(originalUrl, key, userUuid, limit, now, expiresAt);
+            link.useZone(clock.getZone());
+            return link;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return Optional.ofNullable(lookup(shortUrl));
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    /**
+     * Возвращает снимок ссылки. Изменение лимита через {@link Link#setLimit(int)}
+     * на снимке не сохраняется - используйте {@link #updateLimit(String, String, int)}.
+     */
+    @Override
+    public Link lookup(String shortUrl) {
+        long key = ShortCode.encode(shortUrl);
+        if (key == ShortCode.INVALID) {
+            return null;
+        }
+        long found = find(key);
+        if (found == NOT_FOUND) {
+            return null;
+        }
+        long base = slotOffset(found >>> 32);
+        int generation = (int) found;
+        if (index.getLong(base + EXPIRES_AT) < clock.millis()) {
+            removeIfGeneration(base, generation);
+            return null;
+        }
+        return readLink(base, generation, shortUrl);
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        long key = ShortCode.encode(shortUrl);
+        if (key == ShortCode.INVALID) {
+            return null;
+        }
+        long found = find(key);
+        if (found == NOT_FOUND) {
+            return null;
+        }
+        long base = slotOffset(found >>> 32);
+        int generation = (int) found;
+        if (index.getLong(base + EXPIRES_AT) < clock.millis()) {
+            removeIfGeneration(base, generation);
+            return null;
+        }
+        // Поля URL неизменны в пределах поколения: если ячейку успели переиспользовать,
+        // CAS ниже это обнаружит и прочитанные значения не будут использованы
+        long urlOffset = index.getLong(base + URL_OFFSET);
+        int urlLength = index.getInt(base + URL_LENGTH);
+        while (true) {
+            long state = index.getLongVolatile(base + STATE);
+            if ((int) (state >>> 32) != generation) {
+                return null;
+            }
+            if ((int) state >= index.getIntVolatile(base + LIMIT)) {
+                removeIfGeneration(base, generation);
+                return null;
+            }
+            if (index.compareAndSetLong(base + STATE, state, state + 1)) {
+                return readString(urlOffset, urlLength);
+            }
+        }
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        long key = ShortCode.encode(shortUrl);
+        long found = key == ShortCode.INVALID ? NOT_FOUND : find(key);
+        if (found == NOT_FOUND) {
+            return 0;
+        }
+        long base = slotOffset(found >>> 32);
+        int generation = (int) found;
+        while (true) {
+            long state = index.getLongVolatile(base + STATE);
+            if ((int) (state >>> 32) != generation) {
+                return 0;
+            }
+            int granted = Math.min(count, index.getIntVolatile(base + LIMIT) - (int) state);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (index.compareAndSetLong(base + STATE, state, state + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        long key = ShortCode.encode(shortUrl);
+        if (key == ShortCode.INVALID) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            long found = find(key);
+            if (found == NOT_FOUND) {
+                return false;
+            }
+            long base = slotOffset(found >>> 32);
+            if (!isOwner(base, userUuid)) {
+                return false;
+            }
+            remove(found >>> 32);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        long key = ShortCode.encode(shortUrl);
+        if (key == ShortCode.INVALID) {
+            return false;
+        }
+        writeLock.lock();
+        try {
+            long found = find(key);
+            if (found == NOT_FOUND) {
+                return false;
+            }
+            long base = slotOffset(found >>> 32);
+            if (!isOwner(base, userUuid)) {
+                return false;
+            }
+            index.putIntVolatile(base + LIMIT, newLimit);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        List<Link> links = new ArrayList<>();
+        long now = clock.millis();
+        for (long key : userIndex().codes(userUuid)) {
+            long found = find(key);
+            if (found == NOT_FOUND) {
+                continue;
+            }
+            Link link = readLink(slotOffset(found >>> 32), (int) found, ShortCode.decode(key));
+            if (link != null && link.getUserUuid().equals(userUuid) && !link.isExpiredAt(now)) {
+                links.add(link);
+            }
+        }
+        links.sort(Comparator.comparingLong(Link::getCreatedAtMillis).thenComparingLong(Link::getCode));
+        int from = Math.min(Math.max(offset, 0), links.size());
+        int to = (int) Math.min(links.size(), (long) from + Math.max(limit, 0));
+        return new ArrayList<>(links.subList(from, to));
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        int deleted = 0;
+        long now = clock.millis();
+        writeLock.lock();
+        try {
+            for (long key : userIndex().codes(userUuid)) {
+                long found = find(key);
+                if (found == NOT_FOUND) {
+                    continue;
+                }
+                // Истекшие ссылки убирает очистка, как и в LinkServiceImpl: в счет удаленных они не входят
+                long base = slotOffset(found >>> 32);
+                if (index.getLong(base + EXPIRES_AT) >= now && isOwner(base, userUuid)) {
+                    remove(found >>> 32);
+                    deleted++;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return deleted;
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        int updated = 0;
+        long now = clock.millis();
+        writeLock.lock();
+        try {
+            for (long key : userIndex().codes(userUuid)) {
+                long found = find(key);
+                if (found == NOT_FOUND) {
+                    continue;
+                }
+                long base = slotOffset(found >>> 32);
+                if (index.getLong(base + EXPIRES_AT) >= now && isOwner(base, userUuid)) {
+                    index.putIntVolatile(base + LIMIT, newLimit);
+                    updated++;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        writeLock.lock();
+        try {
+            return importLocked(link);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        List<Link> rejected = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Link link : links) {
+                if (!importLocked(link)) {
+                    rejected.add(link);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return rejected;
+    }
+
+    // Вызывается под блокировкой записи
+    private boolean importLocked(Link link) {
+        long key = link.getCode();
+        byte[] url = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] user = link.getUserUuid().getBytes(StandardCharsets.UTF_8);
+        if (!insert(key, url, user, link.getLimit(), link.getCreatedAtMillis(), link.getExpiresAtMillis())) {
+            return false;
+        }
+        if (userIndexBuilt) {
+            userIndex.add(link.getUserUuid(), key);
+        }
+        int visits = link.getVisitCount();
+        if (visits > 0) {
+            long base = slotOffset(find(key) >>> 32);
+            // Ячейка только что опубликована, и переходы могли уже начаться
+            while (true) {
+                long state = index.getLongVolatile(base + STATE);
+                if (index.compareAndSetLong(base + STATE, state, state + visits)) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        for (long slot = 0; slot < slotCount; slot++) {
+            long base = slotOffset(slot);
+            long key = index.getLong(base + KEY);
+            if (key == EMPTY || key == TOMBSTONE) {
+                continue;
+            }
+            // Ключ и поколение перечитываются под seqlock, чтобы не склеить ключ с содержимым
+            // ссылки, занявшей ячейку после удаления
+            long found = find(key);
+            Link link = found == NOT_FOUND ? null : readLink(slotOffset(found >>> 32), (int) found, ShortCode.decode(key));
+            if (link != null) {
+                action.accept(link);
+            }
+        }
+    }
+
+    // Никто больше не пишет в ячейки, поэтому незавершенную запись достаточно считать завершенной:
+    // ключ публикуется последним, а переходы и поколение меняются атомарно
+    private void repairSeqLocks() {
+        for (long slot = 0; slot < slotCount; slot++) {
+            long base = slotOffset(slot);
+            int seq = index.getInt(base + SEQ);
+            if ((seq & 1) != 0) {
+                index.putInt(base + SEQ, seq + 1);
+            }
+        }
+    }
+
+    private UserLinkIndex userIndex() {
+        if (!userIndexBuilt) {
+            writeLock.lock();
+            try {
+                if (!userIndexBuilt) {
+                    buildUserIndex();
+                    userIndexBuilt = true;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        return userIndex;
+    }
+
+    // Вызывается под блокировкой записи, поэтому ни одна ячейка не меняется во время прохода
+    private void buildUserIndex() {
+        for (long slot = 0; slot < slotCount; slot++) {
+            long base = slotOffset(slot);
+            long key = index.getLong(base + KEY);
+            if (key != EMPTY && key != TOMBSTONE) {
+                userIndex.add(readString(index.getLong(base + USER_OFFSET), index.getInt(base + USER_LENGTH)), key);
+            }
+        }
+    }
+
+    /**
+     * Ищет ячейку с ключом без блокировок.
+     *
+     * @return {@code [номер ячейки:32][поколение:32]} или {@link #NOT_FOUND}
+     */
+    long find(long key) {
+        long slot = ShortCode.hash(key) & mask;
+        for (long probes = 0; probes < slotCount; probes++) {
+            long base = slotOffset(slot);
+            while (true) {
+                int seq = index.getIntAcquire(base + SEQ);
+                if ((seq & 1) != 0) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                long current = index.getLong(base + KEY);
+                long state = index.getLong(base + STATE);
+                VarHandle.loadLoadFence();
+                if (index.getInt(base + SEQ) != seq) {
+                    continue;
+                }
+                if (current == EMPTY) {
+                    return NOT_FOUND;
+                }
+                if (current == key) {
+                    return (slot << 32) | (state >>> 32);
+                }
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private Link readLink(long base, int generation, String shortUrl) {
+        while (true) {
+            int seq = index.getIntAcquire(base + SEQ);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long createdAt = index.getLong(base + CREATED_AT);
+            long expiresAt = index.getLong(base + EXPIRES_AT);
+            long urlOffset = index.getLong(base + URL_OFFSET);
+            long userOffset = index.getLong(base + USER_OFFSET);
+            int urlLength = index.getInt(base + URL_LENGTH);
+            int userLength = index.getInt(base + USER_LENGTH);
+            int limit = index.getInt(base + LIMIT);
+            long state = index.getLong(base + STATE);
+            VarHandle.loadLoadFence();
+            if (index.getInt(base + SEQ) != seq) {
+                continue;
+            }
+            if ((int) (state >>> 32) != generation) {
+                return null;
+            }
+            Link link = new Link(readString(urlOffset, urlLength), shortUrl, readString(userOffset, userLength),
+                    limit, createdAt, expiresAt);
+            link.useZone(clock.getZone());
+            link.advanceVisitCount((int) state);
+            return link;
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private boolean insert(long key, byte[] url, byte[] user, int limit, long createdAt, long expiresAt) {
+        long size = index.getLong(H_SIZE);
+        long tombstones = index.getLong(H_TOMBSTONES);
+        if (size + tombstones + 1 > slotCount * MAX_LOAD) {
+            throw new IllegalStateException("Off-heap хранилище заполнено: " + size + " ссылок");
+        }
+        long slot = ShortCode.hash(key) & mask;
+        long firstTombstone = -1;
+        while (true) {
+            long current = index.getLong(slotOffset(slot) + KEY);
+            if (current == key) {
+                return false;
+            }
+            if (current == TOMBSTONE && firstTombstone < 0) {
+                firstTombstone = slot;
+            }
+            if (current == EMPTY) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long target = firstTombstone >= 0 ? firstTombstone : slot;
+        long urlOffset = appendString(url);
+        long userOffset = appendString(user);
+
+        long base = slotOffset(target);
+        int seq = beginWrite(base);
+        index.putLong(base + CREATED_AT, createdAt);
+        index.putLong(base + EXPIRES_AT, expiresAt);
+        index.putLong(base + URL_OFFSET, urlOffset);
+        index.putLong(base + USER_OFFSET, userOffset);
+        index.putInt(base + URL_LENGTH, url.length);
+        index.putInt(base + USER_LENGTH, user.length);
+        index.putInt(base + LIMIT, limit);
+        long generation = (index.getLong(base + STATE) >>> 32) + 1;
+        index.putLongRelease(base + STATE, generation << 32);
+        index.putLong(base + KEY, key);
+        endWrite(base, seq);
+
+        index.putLong(H_SIZE, size + 1);
+        if (firstTombstone >= 0) {
+            index.putLong(H_TOMBSTONES, tombstones - 1);
+        }
+        return true;
+    }
+
+    // Вызывается под блокировкой записи
+    private void remove(long slot) {
+        long base = slotOffset(slot);
+        if (userIndexBuilt) {
+            userIndex.remove(readString(index.getLong(base + USER_OFFSET), index.getInt(base + USER_LENGTH)),
+                    index.getLong(base + KEY));
+        }
+        int seq = beginWrite(base);
+        // Если следующая ячейка пуста, цепочка пробирования здесь заканчивается
+        // и ячейку можно сразу сделать пустой, а не надгробием
+        boolean chainEnd = index.getLong(slotOffset((slot + 1) & mask) + KEY) == EMPTY;
+        index.putLong(base + KEY, chainEnd ? EMPTY : TOMBSTONE);
+        bumpGeneration(base);
+        endWrite(base, seq);
+        index.putLong(H_SIZE, index.getLong(H_SIZE) - 1);
+        if (!chainEnd) {
+            index.putLong(H_TOMBSTONES, index.getLong(H_TOMBSTONES) + 1);
+            return;
+        }
+        // Надгробия перед новой пустой ячейкой тоже больше не нужны
+        long freed = 0;
+        long previous = (slot - 1) & mask;
+        while (index.getLong(slotOffset(previous) + KEY) == TOMBSTONE) {
+            long previousBase = slotOffset(previous);
+            int previousSeq = beginWrite(previousBase);
+            index.putLong(previousBase + KEY, EMPTY);
+            endWrite(previousBase, previousSeq);
+            freed++;
+            previous = (previous - 1) & mask;
+        }
+        index.putLong(H_TOMBSTONES, index.getLong(H_TOMBSTONES) - freed);
+    }
+
+    // Срок жизни проверяется повторно под блокировкой: ячейка могла достаться новой ссылке
+    boolean removeIfExpired(long base, int generation, long now) {
+        writeLock.lock();
+        try {
+            long key = index.getLong(base + KEY);
+            if (key == EMPTY || key == TOMBSTONE || (int) (index.getLong(base + STATE) >>> 32) != generation
+                    || index.getLong(base + EXPIRES_AT) >= now) {
+                return false;
+            }
+            remove((base - HEADER_SIZE) / SLOT_SIZE);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean removeIfGeneration(long base, int generation) {
+        writeLock.lock();
+        try {
+            long key = index.getLong(base + KEY);
+            if (key == EMPTY || key == TOMBSTONE || (int) (index.getLong(base + STATE) >>> 32) != generation) {
+                return false;
+            }
+            remove((base - HEADER_SIZE) / SLOT_SIZE);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private int beginWrite(long base) {
+        int seq = index.getInt(base + SEQ) + 1;
+        index.putInt(base + SEQ, seq);
+        VarHandle.storeStoreFence();
+        return seq;
+    }
+
+    private void endWrite(long base, int seq) {
+        index.putIntRelease(base + SEQ, seq + 1);
+    }
+
+    // Поколение меняется CAS, потому что параллельные переходы меняют то же слово
+    private void bumpGeneration(long base) {
+        while (true) {
+            long state = index.getLongVolatile(base + STATE);
+            long next = (((state >>> 32) + 1) << 32) | (state & 0xFFFF_FFFFL);
+            if (index.compareAndSetLong(base + STATE, state, next)) {
+                return;
+            }
+        }
+    }
+
+    private boolean isOwner(long base, String userUuid) {
+        byte[] owner = new byte[index.getInt(base + USER_LENGTH)];
+        arena.getBytes(index.getLong(base + USER_OFFSET), owner);
+        return Arrays.equals(owner, userUuid.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Строка не пересекает границу куска отображения
+    private long appendString(byte[] bytes) {
+        long tail = index.getLong(H_ARENA_TAIL);
+        long inChunk = tail & (MappedRegion.CHUNK_SIZE - 1);
+        if (inChunk + bytes.length > MappedRegion.CHUNK_SIZE) {
+            tail += MappedRegion.CHUNK_SIZE - inChunk;
+        }
+        if (tail + bytes.length > arena.size()) {
+            throw new IllegalStateException("Арена off-heap хранилища заполнена");
+        }
+        arena.putBytes(tail, bytes);
+        index.putLong(H_ARENA_TAIL, tail + bytes.length);
+        return tail;
+    }
+
+    private String readString(long offset, int length) {
+        byte[] bytes = new byte[length];
+        arena.getBytes(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static long slotOffset(long slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Постепенный обход таблицы: за один запуск просматривается SWEEP_BATCH ячеек
+    void sweepExpired() {
+        long now = clock.millis();
+        long end = Math.min(sweepCursor + SWEEP_BATCH, slotCount);
+        for (long slot = sweepCursor; slot < end; slot++) {
+            long base = slotOffset(slot);
+            // Поколение читается раньше ключа и срока жизни: если ячейку освободят и займут
+            // заново между чтениями, поколение не совпадет и новая ссылка не пострадает
+            int generation = (int) (index.getLongVolatile(base + STATE) >>> 32);
+            long key = index.getLong(base + KEY);
+            if (key != EMPTY && key != TOMBSTONE && index.getLong(base + EXPIRES_AT) < now) {
+                removeIfExpired(base, generation, now);
+            }
+        }
+        sweepCursor = end == slotCount ? 0 : end;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            index.putIntVolatile(H_CLEAN, 1);
+            index.close();
+            arena.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
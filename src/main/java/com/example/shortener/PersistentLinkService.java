@@ -0,0 +1,508 @@
+package com.example.shortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Долговечная реализация {@link LinkService}: чтение идет из {@link LinkServiceImpl} в памяти,
+ * а каждое изменение записывается в {@link WriteAheadLog}.
+ * <p>
+ * Периодически журнал сворачивается в снимок: текущий сегмент закрывается, состояние
+ * записывается в {@code snapshot.dat}, после чего старые сегменты удаляются.
+ * При запуске загружается снимок и воспроизводится хвост журнала.
+ * <p>
+ * Переход записывается с абсолютным значением счетчика, а при воспроизведении
+ * счетчик только растет, поэтому записи переходов не требуют блокировок и порядок
+ * их попадания в журнал не важен.
+ */
+public class PersistentLinkService implements LinkService {
+
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String SNAPSHOT_TMP_FILE = "snapshot.tmp";
+    private static final int SNAPSHOT_MAGIC = 0x534C5331;
+
+    private static final byte CREATE = 1;
+    private static final byte UPDATE_LIMIT = 2;
+    private static final byte DELETE = 3;
+    private static final byte VISIT = 4;
+
+    private final LinkServiceImpl memory;
+    private final WriteAheadLog log;
+    private final Path directory;
+    // Изменения берут блокировку на чтение, смена сегмента при снимке - на запись:
+    // так к моменту смены все записи старых сегментов уже применены в памяти
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final Object importLock = new Object();
+    private final ScheduledExecutorService snapshotScheduler = ThreadingModel.configured().newScheduler("wal-snapshot");
+
+    public PersistentLinkService(Path directory, Durability durability, long snapshotIntervalSeconds) throws IOException {
+        this(directory, durability, snapshotIntervalSeconds, Clock.systemDefaultZone());
+    }
+
+    public PersistentLinkService(Path directory, Durability durability, long snapshotIntervalSeconds,
+                                 Clock clock) throws IOException {
+        this(directory, durability, snapshotIntervalSeconds, clock, new LinkMetrics());
+    }
+
+    public PersistentLinkService(Path directory, Durability durability, long snapshotIntervalSeconds,
+                                 Clock clock, LinkMetrics metrics) throws IOException {
+        this.directory = directory;
+        this.memory = new LinkServiceImpl(clock, metrics);
+        Files.createDirectories(directory);
+        long nextSegment = recover();
+        this.log = new WriteAheadLog(directory, durability, nextSegment);
+        if (snapshotIntervalSeconds > 0) {
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        Link duplicate = memory.findDuplicate(originalUrl, userUuid, limit);
+        if (duplicate != null) {
+            return duplicate;
+        }
+        snapshotLock.readLock().lock();
+        try {
+            while (true) {
+                Link link = memory.newLink(originalUrl, userUuid, limit);
+                if (memory.get(link.getCode()) != null) {
+                    continue;
+                }
+                // Ссылка становится видимой только после записи в журнал, поэтому
+                // удаление или обновление не могут попасть в журнал раньше создания
+                log.append(encodeCreate(link), true);
+                if (memory.insert(link)) {
+                    return link;
+                }
+                // Код занят параллельным созданием: при воспроизведении эта запись будет пропущена
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return memory.getByShortUrl(shortUrl);
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        return memory.lookup(shortUrl);
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        Link link = memory.registerVisit(shortUrl);
+        if (link == null) {
+            return null;
+        }
+        log.append(encodeVisit(link.getCode(), link.getVisitCount()), false);
+        return link.getOriginalUrl();
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        Link link = memory.lookup(shortUrl);
+        if (link == null) {
+            return 0;
+        }
+        int registered = link.tryRegisterVisits(count);
+        if (registered > 0) {
+            log.append(encodeVisit(link.getCode(), link.getVisitCount()), false);
+        }
+        return registered;
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        Link link = memory.lookup(shortUrl);
+        if (link == null || !link.getUserUuid().equals(userUuid)) {
+            return false;
+        }
+        boolean removed;
+        snapshotLock.readLock().lock();
+        try {
+            // Под монитором только постановка в очередь, fsync ждем после выхода:
+            // виртуальный поток, ждущий под монитором, занимает поток-носитель
+            synchronized (link) {
+                removed = memory.remove(link);
+                if (removed) {
+                    log.append(encodeDelete(link.getCode()), false);
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        if (removed) {
+            log.sync();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        Link link = memory.lookup(shortUrl);
+        if (link == null || !link.getUserUuid().equals(userUuid)) {
+            return false;
+        }
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (link) {
+                link.setLimit(newLimit);
+                log.append(encodeUpdateLimit(link.getCode(), newLimit), false);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        log.sync();
+        return true;
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        return memory.listByUser(userUuid, offset, limit);
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        int deleted = 0;
+        snapshotLock.readLock().lock();
+        try {
+            for (Link link : memory.linksOf(userUuid)) {
+                synchronized (link) {
+                    if (memory.remove(link)) {
+                        log.append(encodeDelete(link.getCode()), false);
+                        deleted++;
+                    }
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        // Один fsync на всю пачку удалений
+        log.sync();
+        return deleted;
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        int updated = 0;
+        snapshotLock.readLock().lock();
+        try {
+            for (Link link : memory.linksOf(userUuid)) {
+                synchronized (link) {
+                    link.setLimit(newLimit);
+                    log.append(encodeUpdateLimit(link.getCode(), newLimit), false);
+                    updated++;
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        log.sync();
+        return updated;
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        return importLinks(List.of(link)).isEmpty();
+    }
+
+    // Вся пачка пишется в журнал без ожидания и фиксируется одним fsync
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        List<Link> rejected = new ArrayList<>();
+        snapshotLock.readLock().lock();
+        try {
+            // Два импорта одного кода не должны оба попасть в журнал: при воспроизведении
+            // переходы второго достались бы первому
+            synchronized (importLock) {
+                for (Link link : links) {
+                    Link copy = link.copy();
+                    if (memory.get(copy.getCode()) != null) {
+                        rejected.add(link);
+                        continue;
+                    }
+                    byte[] create = encodeCreate(copy);
+                    if (create.length > WriteAheadLog.MAX_RECORD_BYTES) {
+                        rejected.add(link);
+                        continue;
+                    }
+                    log.append(create, false);
+                    if (copy.getVisitCount() > 0) {
+                        log.append(encodeVisit(copy.getCode(), copy.getVisitCount()), false);
+                    }
+                    if (!memory.insert(copy)) {
+                        rejected.add(link);
+                    }
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        log.sync();
+        return rejected;
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        memory.forEachLink(action);
+    }
+
+    /** Сворачивает журнал в снимок и удаляет покрытые им сегменты. */
+    void snapshot() throws IOException {
+        long firstSegment;
+        snapshotLock.writeLock().lock();
+        try {
+            firstSegment = log.rotate().join();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        Path tmp = directory.resolve(SNAPSHOT_TMP_FILE);
+        long now = memory.clock().millis();
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(firstSegment);
+            try {
+                memory.forEachLink(link -> {
+                    if (link.isExpiredAt(now)) {
+                        return;
+                    }
+                    try {
+                        out.writeBoolean(true);
+                        writeLink(out, link);
+                        out.writeInt(link.getVisitCount());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeBoolean(false);
+            out.flush();
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.deleteSegmentsBefore(firstSegment);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ошибка при создании снимка хранилища: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Загружает снимок и воспроизводит сегменты журнала после него.
+     *
+     * @return номер сегмента, с которого продолжится запись
+     */
+    private long recover() throws IOException {
+        long firstSegment = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            firstSegment = loadSnapshot(snapshot);
+        }
+        long nextSegment = firstSegment;
+        List<Long> segments = WriteAheadLog.listSegments(directory);
+        for (long segment : segments) {
+            if (segment < firstSegment) {
+                continue;
+            }
+            boolean complete = WriteAheadLog.readSegment(WriteAheadLog.segmentPath(directory, segment), this::apply);
+            if (!complete) {
+                System.err.println("Предупреждение: сегмент журнала " + segment + " оборван, хвост отброшен.");
+            }
+            nextSegment = segment + 1;
+        }
+        return nextSegment;
+    }
+
+    private long loadSnapshot(Path snapshot) throws IOException {
+        CRC32 crc = new CRC32();
+        try (BufferedInputStream file = new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16)) {
+            // DataInputStream читает ровно столько байт, сколько нужно, поэтому контрольная
+            // сумма в конце файла читается мимо CheckedInputStream и сама в нее не входит
+            DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc));
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Файл " + snapshot + " не является снимком хранилища");
+            }
+            long firstSegment = in.readLong();
+            while (in.readBoolean()) {
+                Link link = readLink(in);
+                link.advanceVisitCount(in.readInt());
+                memory.insert(link);
+            }
+            if (new DataInputStream(file).readLong() != crc.getValue()) {
+                throw new IOException("Снимок хранилища " + snapshot + " поврежден");
+            }
+            return firstSegment;
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        try {
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            byte type = in.readByte();
+            if (type == CREATE) {
+                Link link = readLink(in);
+                memory.insert(link);
+                return;
+            }
+            Link link = memory.get(in.readLong());
+            if (link == null) {
+                return;
+            }
+            switch (type) {
+                case UPDATE_LIMIT:
+                    link.setLimit(in.readInt());
+                    break;
+                case DELETE:
+                    memory.remove(link);
+                    break;
+                case VISIT:
+                    link.advanceVisitCount(in.readInt());
+                    break;
+                default:
+                    throw new IOException("Неизвестный тип записи журнала: " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] encodeCreate(Link link) {
+        return encode(out -> {
+            out.writeByte(CREATE);
+            writeLink(out, link);
+        });
+    }
+
+    private static byte[] encodeUpdateLimit(long code, int limit) {
+        return encode(out -> {
+            out.writeByte(UPDATE_LIMIT);
+            out.writeLong(code);
+            out.writeInt(limit);
+        });
+    }
+
+    private static byte[] encodeDelete(long code) {
+        return encode(out -> {
+            out.writeByte(DELETE);
+            out.writeLong(code);
+        });
+    }
+
+    private static byte[] encodeVisit(long code, int visitCount) {
+        return encode(out -> {
+            out.writeByte(VISIT);
+            out.writeLong(code);
+            out.writeInt(visitCount);
+        });
+    }
+
+    private static void writeLink(DataOutputStream out, Link link) throws IOException {
+        out.writeLong(link.getCode());
+        writeString(out, link.getOriginalUrl());
+        out.writeUTF(link.getUserUuid());
+        out.writeInt(link.getLimit());
+        out.writeLong(link.getCreatedAtMillis());
+        out.writeLong(link.getExpiresAtMillis());
+    }
+
+    private static Link readLink(DataInputStream in) throws IOException {
+        long code = in.readLong();
+        String originalUrl = readString(in);
+        String userUuid = in.readUTF();
+        int limit = in.readInt();
+        long createdAt = in.readLong();
+        long expiresAt = in.readLong();
+        return new Link(originalUrl, code, userUuid, limit, createdAt, expiresAt);
+    }
+
+    // URL может быть длиннее 64 КБ, которые допускает writeUTF
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        snapshotScheduler.shutdown();
+        try {
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Изменения, начатые до закрытия, успевают попасть в журнал; последующие получат отказ журнала
+        snapshotLock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        memory.close();
+    }
+}
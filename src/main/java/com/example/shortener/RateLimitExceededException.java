@@ -0,0 +1,19 @@
+package com.example.shortener;
+
+/** Запрос отклонен ограничителем частоты {@link RateLimitedLinkService}. */
+public class RateLimitExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public RateLimitExceededException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** Через сколько миллисекунд появится следующее разрешение. */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
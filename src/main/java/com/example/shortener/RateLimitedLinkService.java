@@ -0,0 +1,145 @@
+package com.example.shortener;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Декоратор, ограничивающий частоту создания ссылок одним пользователем и переходов по
+ * одной ссылке. Превышение приводит к {@link RateLimitExceededException}, HTTP-сервер
+ * отвечает на него кодом 429. Остальные операции передаются без проверок.
+ * <p>
+ * Проверка на горячем пути - {@link RateLimiter#tryAcquire(long)} по числовому коду ссылки
+ * без выделения памяти; UUID пользователя сводится к 64-битному хешу.
+ */
+public class RateLimitedLinkService implements LinkService {
+
+    private final LinkService delegate;
+    private final RateLimiter createLimiter;
+    private final RateLimiter redirectLimiter;
+
+    /**
+     * @param createsPerSecond   средняя частота создания ссылок одним пользователем
+     * @param createBurst        сколько ссылок пользователь может создать подряд
+     * @param redirectsPerSecond средняя частота переходов по одной ссылке
+     * @param redirectBurst      сколько переходов по ссылке допускается подряд
+     * @param maxKeys            сколько одновременно активных пользователей и ссылок различать
+     */
+    public RateLimitedLinkService(LinkService delegate, double createsPerSecond, int createBurst,
+                                  double redirectsPerSecond, int redirectBurst, int maxKeys) {
+        this(delegate, new RateLimiter(createsPerSecond, createBurst, maxKeys),
+                new RateLimiter(redirectsPerSecond, redirectBurst, maxKeys));
+    }
+
+    RateLimitedLinkService(LinkService delegate, RateLimiter createLimiter, RateLimiter redirectLimiter) {
+        this.delegate = delegate;
+        this.createLimiter = createLimiter;
+        this.redirectLimiter = redirectLimiter;
+    }
+
+    /** Сколько запросов отклонено с момента запуска. */
+    public long getRejectedCount() {
+        return createLimiter.getRejectedCount() + redirectLimiter.getRejectedCount();
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        long wait = createLimiter.tryAcquire(hash(userUuid));
+        if (wait > 0) {
+            throw new RateLimitExceededException("Превышена частота создания ссылок, повторите позже", toMillis(wait));
+        }
+        return delegate.create(originalUrl, userUuid, limit);
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return delegate.getByShortUrl(shortUrl);
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        return delegate.lookup(shortUrl);
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        // Некорректный код ничего не найдет в хранилище, считать его не нужно
+        if (code != ShortCode.INVALID) {
+            long wait = redirectLimiter.tryAcquire(code);
+            if (wait > 0) {
+                throw new RateLimitExceededException("Превышена частота переходов по ссылке " + shortUrl, toMillis(wait));
+            }
+        }
+        return delegate.resolveAndRegisterVisit(shortUrl);
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        return delegate.registerVisits(shortUrl, count);
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        return delegate.delete(shortUrl, userUuid);
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        return delegate.updateLimit(shortUrl, userUuid, newLimit);
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        return delegate.listByUser(userUuid, offset, limit);
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        return delegate.deleteAllByUser(userUuid);
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        return delegate.updateLimitForUser(userUuid, newLimit);
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        return delegate.importLink(link);
+    }
+
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        return delegate.importLinks(links);
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        delegate.forEachLink(action);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    // 64-битный FNV-1a: String.hashCode слишком короток, чтобы различать миллионы пользователей
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long toMillis(long micros) {
+        return (micros + 999) / 1000;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.shortener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничитель частоты по ключу: маркерная корзина в форме GCRA (generic cell rate algorithm).
+ * <p>
+ * Состояние ключа - одно число: теоретическое время следующего запроса (TAT). Запрос допускается,
+ * если TAT опережает текущее время не больше чем на {@code (burst - 1)} интервалов, и сдвигает TAT
+ * на один интервал. Ключ и TAT упакованы в один {@code long} ({@value #FINGERPRINT_BITS} бит отпечатка
+ * ключа и {@value #TIME_BITS} бит микросекунд), поэтому таблица - это {@link AtomicLongArray}
+ * с линейным пробированием, а проверка - несколько чтений соседних ячеек и один CAS.
+ * <p>
+ * Отдельной очистки нет: ячейка, чей TAT уже в прошлом, описывает полную корзину и ничем не
+ * отличается от отсутствующего ключа, поэтому ее может занять любой новый ключ. Совпадение
+ * отпечатков двух ключей в окне пробирования (~10<sup>-4</sup>) лишь объединяет их корзины.
+ * Если все ячейки окна заняты активными ключами, запрос допускается и учитывается в {@link #getOverflowCount()}.
+ */
+final class RateLimiter {
+
+    static final int FINGERPRINT_BITS = 16;
+    static final int TIME_BITS = 64 - FINGERPRINT_BITS;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final long intervalMicros;
+    private final long toleranceMicros;
+    private final LongSupplier nanoTime;
+    private final long startNanos;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    /**
+     * @param permitsPerSecond средняя допустимая частота
+     * @param burst            сколько запросов подряд допускается после простоя
+     * @param maxKeys          сколько одновременно активных ключей нужно различать
+     */
+    RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this(permitsPerSecond, burst, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, int burst, int maxKeys, LongSupplier nanoTime) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Частота и размер корзины должны быть положительными");
+        }
+        int capacity = Integer.highestOneBit(Math.max(MAX_PROBES, maxKeys - 1) * 2);
+        this.slots = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.intervalMicros = Math.max(1, Math.round(1_000_000 / permitsPerSecond));
+        this.toleranceMicros = (burst - 1) * intervalMicros;
+        this.nanoTime = nanoTime;
+        // Отсчет от единицы, чтобы TAT никогда не был нулем пустой ячейки
+        this.startNanos = nanoTime.getAsLong() - 1000;
+    }
+
+    /**
+     * Пытается взять разрешение для ключа.
+     *
+     * @return 0, если запрос допущен, иначе сколько микросекунд ждать следующего разрешения
+     */
+    long tryAcquire(long key) {
+        long hash = mix(key);
+        long fingerprint = hash >>> TIME_BITS;
+        if (fingerprint == 0) {
+            fingerprint = 1;
+        }
+        long tag = fingerprint << TIME_BITS;
+        int start = (int) hash & mask;
+        while (true) {
+            long now = (nanoTime.getAsLong() - startNanos) / 1000;
+            int free = -1;
+            long freeValue = 0;
+            int found = -1;
+            long value = 0;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int index = (start + probe) & mask;
+                long current = slots.get(index);
+                if (current != 0 && (current & ~TIME_MASK) == tag) {
+                    found = index;
+                    value = current;
+                    break;
+                }
+                if (free < 0 && (current == 0 || (current & TIME_MASK) <= now)) {
+                    free = index;
+                    freeValue = current;
+                }
+            }
+            if (found < 0) {
+                if (free < 0) {
+                    overflow.increment();
+                    return 0;
+                }
+                // Ключ не найден: занимаем пустую или простаивающую ячейку с полной корзиной
+                if (slots.compareAndSet(free, freeValue, tag | ((now + intervalMicros) & TIME_MASK))) {
+                    return 0;
+                }
+                continue;
+            }
+            long tat = Math.max(value & TIME_MASK, now);
+            long wait = tat - now - toleranceMicros;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (slots.compareAndSet(found, value, tag | ((tat + intervalMicros) & TIME_MASK))) {
+                return 0;
+            }
+        }
+    }
+
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    long getOverflowCount() {
+        return overflow.sum();
+    }
+
+    // Перемешивание битов (финализатор SplitMix64): соседние коды попадают в разные ячейки
+    private static long mix(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
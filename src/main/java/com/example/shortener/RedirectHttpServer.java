@@ -0,0 +1,845 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Неблокирующий HTTP/1.1 фронтенд для {@link LinkService}.
+ * <p>
+ * Один поток принимает соединения и раздает их по кругу нескольким циклам событий,
+ * каждый из которых обслуживает свои каналы через собственный {@link Selector}.
+ * Поддерживаются keep-alive и конвейерные (pipelined) запросы.
+ * <p>
+ * По умолчанию запрос обрабатывается прямо в цикле событий. Если передан исполнитель запросов,
+ * обработка выносится на него (например, на виртуальные потоки), чтобы блокирующее хранилище
+ * не останавливало цикл; у соединения при этом обрабатывается не больше одного запроса за раз,
+ * поэтому ответы конвейерных запросов идут в порядке запросов.
+ * <p>
+ * Пока ответы соединения не отправлены, новые байты из него не читаются: клиент, который шлет
+ * конвейерные запросы и не читает ответы, упирается в буферы сокета, а не в память сервера.
+ *
+ * <pre>
+ * GET    /{shortUrl}          - 302 на оригинальный URL с регистрацией перехода
+ * POST   /api/links           - создать ссылку (параметры url, [limit])
+ * GET    /api/links           - ссылки владельца (параметры [offset], [limit])
+ * PUT    /api/links           - обновить лимит всех ссылок владельца (параметр limit)
+ * DELETE /api/links           - удалить все ссылки владельца
+ * GET    /api/links/{shortUrl} - информация о ссылке
+ * PUT    /api/links/{shortUrl} - обновить лимит (параметр limit)
+ * DELETE /api/links/{shortUrl} - удалить ссылку
+ * GET    /metrics             - метрики в текстовом формате Prometheus, если переданы {@link LinkMetrics}
+ * GET    /api/analytics/top   - самые посещаемые ссылки (параметры [k], [window] в минутах), если передан {@link VisitAnalytics}
+ * GET    /api/analytics/{shortUrl} - переходы по ссылке по минутам за час и по часам за сутки
+ * </pre>
+ * Владелец ссылки передается заголовком {@code X-User-Uuid}.
+ */
+public class RedirectHttpServer implements AutoCloseable {
+
+    static final String USER_HEADER = "x-user-uuid";
+    private static final String API_PREFIX = "/api/links";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String ANALYTICS_PREFIX = "/api/analytics";
+    private static final int DEFAULT_TOP_SIZE = 10;
+    private static final int MAX_TOP_SIZE = 1000;
+    private static final int MAX_REQUEST_BYTES = 16 * 1024;
+    // Сколько байт ответов может ждать отправки, прежде чем соединение перестанет разбирать запросы
+    private static final int MAX_PENDING_RESPONSE_BYTES = 64 * 1024;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final LinkService linkService;
+    private final LinkMetrics metrics;
+    private final VisitAnalytics analytics;
+    private final Executor requestExecutor;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private final Thread acceptor;
+    private final long idleTimeoutMillis;
+    private final int defaultLimit;
+    private volatile boolean running;
+
+    public RedirectHttpServer(LinkService linkService, InetSocketAddress address, int ioThreads,
+                              long idleTimeoutSeconds, int defaultLimit) throws IOException {
+        this(linkService, address, ioThreads, idleTimeoutSeconds, defaultLimit, null);
+    }
+
+    /** @param metrics метрики для {@code GET /metrics} или null, если эндпоинт не нужен */
+    public RedirectHttpServer(LinkService linkService, InetSocketAddress address, int ioThreads,
+                              long idleTimeoutSeconds, int defaultLimit, LinkMetrics metrics) throws IOException {
+        this(linkService, address, ioThreads, idleTimeoutSeconds, defaultLimit, metrics, null);
+    }
+
+    /** @param requestExecutor где обрабатывать запросы или null, чтобы обрабатывать их в цикле событий */
+    public RedirectHttpServer(LinkService linkService, InetSocketAddress address, int ioThreads,
+                              long idleTimeoutSeconds, int defaultLimit, LinkMetrics metrics,
+                              Executor requestExecutor) throws IOException {
+        this(linkService, address, ioThreads, idleTimeoutSeconds, defaultLimit, metrics, requestExecutor, null);
+    }
+
+    /** @param analytics аналитика для {@code GET /api/analytics/...} или null, если эндпоинты не нужны */
+    public RedirectHttpServer(LinkService linkService, InetSocketAddress address, int ioThreads,
+                              long idleTimeoutSeconds, int defaultLimit, LinkMetrics metrics,
+                              Executor requestExecutor, VisitAnalytics analytics) throws IOException {
+        this.linkService = linkService;
+        this.metrics = metrics;
+        this.analytics = analytics;
+        this.requestExecutor = requestExecutor;
+        this.idleTimeoutMillis = idleTimeoutSeconds * 1000;
+        this.defaultLimit = defaultLimit;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(address, 1024);
+        this.eventLoops = new EventLoop[Math.max(1, ioThreads)];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop("http-io-" + i);
+        }
+        this.acceptor = new Thread(this::acceptLoop, "http-acceptor");
+    }
+
+    public void start() {
+        running = true;
+        for (EventLoop loop : eventLoops) {
+            loop.thread.start();
+        }
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при приеме соединения: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // сервер все равно останавливается
+        }
+        for (EventLoop loop : eventLoops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : eventLoops) {
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class EventLoop {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        // Ответы, подготовленные исполнителем запросов; отправляются из цикла событий
+        private final Queue<Runnable> completed = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(MAX_REQUEST_BYTES);
+
+        EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this::run, name);
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        private void run() {
+            long lastSweep = System.currentTimeMillis();
+            while (running) {
+                try {
+                    selector.select(1000);
+                    registerPending();
+                    Runnable completion;
+                    while ((completion = completed.poll()) != null) {
+                        completion.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= 1000) {
+                        closeIdle(now);
+                        lastSweep = now;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Ошибка цикла событий HTTP: " + e.getMessage());
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // поток завершается
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection());
+                } catch (ClosedChannelException ignored) {
+                    // клиент уже закрыл соединение
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    read(key, connection);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush(key, connection);
+                }
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(key);
+            }
+        }
+
+        private void read(SelectionKey key, Connection connection) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            readBuffer.clear();
+            // Читаем не больше, чем помещается за недочитанным запросом; остальное подождет в сокете
+            readBuffer.limit(connection.in.remaining());
+            int read = readBuffer.hasRemaining() ? channel.read(readBuffer) : 0;
+            if (read < 0) {
+                closeQuietly(key);
+                return;
+            }
+            connection.lastActivity = System.currentTimeMillis();
+            readBuffer.flip();
+            if (!connection.in.hasRemaining() || !connection.append(readBuffer)) {
+                connection.write(Response.text(413, "Слишком большой запрос"), false);
+                connection.closeAfterWrite = true;
+            } else {
+                processRequests(key, connection);
+            }
+            flush(key, connection);
+        }
+
+        private void processRequests(SelectionKey key, Connection connection) {
+            Request request;
+            while (!connection.busy && !connection.closeAfterWrite
+                    && connection.out.position() < MAX_PENDING_RESPONSE_BYTES
+                    && (request = connection.nextRequest()) != null) {
+                if (requestExecutor == null) {
+                    respond(connection, request, route(request));
+                    continue;
+                }
+                Request offloaded = request;
+                connection.busy = true;
+                try {
+                    requestExecutor.execute(() -> {
+                        Response response = route(offloaded);
+                        completed.add(() -> complete(key, connection, offloaded, response));
+                        selector.wakeup();
+                    });
+                } catch (RejectedExecutionException e) {
+                    connection.busy = false;
+                    connection.closeAfterWrite = true;
+                    connection.write(Response.text(503, "Сервер останавливается"), false);
+                }
+            }
+        }
+
+        private void respond(Connection connection, Request request, Response response) {
+            connection.write(response, request.keepAlive);
+            if (!request.keepAlive) {
+                connection.closeAfterWrite = true;
+            }
+        }
+
+        private void complete(SelectionKey key, Connection connection, Request request, Response response) {
+            if (!key.isValid()) {
+                return;
+            }
+            connection.busy = false;
+            connection.lastActivity = System.currentTimeMillis();
+            respond(connection, request, response);
+            try {
+                processRequests(key, connection);
+                flush(key, connection);
+            } catch (IOException | RuntimeException e) {
+                closeQuietly(key);
+            }
+        }
+
+        private void flush(SelectionKey key, Connection connection) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            while (true) {
+                ByteBuffer out = connection.out;
+                out.flip();
+                channel.write(out);
+                boolean drained = !out.hasRemaining();
+                out.compact();
+                if (!drained) {
+                    // Клиент не успевает читать ответы: чтение возобновится, когда буфер опустеет
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (connection.closeAfterWrite && !connection.busy) {
+                    closeQuietly(key);
+                    return;
+                }
+                // Запросы, уже полученные, но отложенные из-за неотправленных ответов
+                processRequests(key, connection);
+                if (connection.out.position() == 0) {
+                    // Пока запрос обрабатывается исполнителем, новые байты не читаются
+                    key.interestOps(connection.busy ? 0 : SelectionKey.OP_READ);
+                    return;
+                }
+            }
+        }
+
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && !connection.busy && now - connection.lastActivity > idleTimeoutMillis) {
+                    closeQuietly(key);
+                }
+            }
+        }
+
+        private void closeQuietly(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // соединение уже разорвано
+            }
+        }
+    }
+
+    Response route(Request request) {
+        String path = request.path;
+        try {
+            if (path.equals(API_PREFIX) || path.equals(API_PREFIX + "/")) {
+                switch (request.method) {
+                    case "POST":
+                        return handleCreate(request);
+                    case "GET":
+                        return handleList(request);
+                    case "PUT":
+                        return handleUpdateAll(request);
+                    case "DELETE":
+                        return handleDeleteAll(request);
+                    default:
+                        return Response.text(405, "Метод не поддерживается");
+                }
+            }
+            if (path.startsWith(API_PREFIX + "/")) {
+                String shortUrl = path.substring(API_PREFIX.length() + 1);
+                switch (request.method) {
+                    case "GET":
+                        return handleInfo(shortUrl);
+                    case "PUT":
+                        return handleUpdate(request, shortUrl);
+                    case "DELETE":
+                        return handleDelete(request, shortUrl);
+                    default:
+                        return Response.text(405, "Метод не поддерживается");
+                }
+            }
+            if (metrics != null && path.equals(METRICS_PATH) && request.method.equals("GET")) {
+                return handleMetrics();
+            }
+            if (analytics != null && path.startsWith(ANALYTICS_PREFIX + "/") && request.method.equals("GET")) {
+                String name = path.substring(ANALYTICS_PREFIX.length() + 1);
+                return name.equals("top") ? handleTopLinks(request) : handleVisitSeries(name);
+            }
+            if (request.method.equals("GET") && path.length() > 1 && path.indexOf('/', 1) < 0) {
+                return handleRedirect(path.substring(1));
+            }
+            return Response.text(404, "Не найдено");
+        } catch (RateLimitExceededException e) {
+            return Response.tooManyRequests(e.getMessage(), e.getRetryAfterMillis());
+        } catch (IllegalArgumentException e) {
+            // Сюда попадают в том числе ошибки URL-декодирования параметров
+            return Response.text(400, "Некорректный запрос");
+        } catch (RuntimeException e) {
+            // Подробности остаются в журнале сервера, клиенту они ни к чему
+            System.err.println("Ошибка обработки " + request.method + " " + request.path + ": " + e);
+            return Response.text(500, "Внутренняя ошибка сервера");
+        }
+    }
+
+    private Response handleMetrics() {
+        StringBuilder out = new StringBuilder(4096);
+        metrics.writeText(out);
+        return Response.text(200, out.toString());
+    }
+
+    private Response handleTopLinks(Request request) {
+        Map<String, String> params = request.params();
+        int k;
+        int window;
+        try {
+            k = Integer.parseInt(params.getOrDefault("k", String.valueOf(DEFAULT_TOP_SIZE)));
+            window = Integer.parseInt(params.getOrDefault("window", "60"));
+        } catch (NumberFormatException e) {
+            return Response.text(400, "Параметры k и window должны быть числами");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (HotLink link : analytics.topLinks(Math.min(k, MAX_TOP_SIZE), window)) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"shortUrl\":\"").append(link.getShortUrl())
+                    .append("\",\"visits\":").append(link.getVisits())
+                    .append(",\"error\":").append(link.getError()).append('}');
+        }
+        return Response.json(200, json.append(']').toString());
+    }
+
+    private Response handleVisitSeries(String shortUrl) {
+        if (ShortCode.encode(shortUrl) == ShortCode.INVALID) {
+            return Response.text(404, "Ссылка не найдена");
+        }
+        StringBuilder json = new StringBuilder("{\"shortUrl\":\"").append(shortUrl).append("\",\"minutes\":");
+        appendSeries(json, analytics.minuteSeries(shortUrl));
+        json.append(",\"hours\":");
+        appendSeries(json, analytics.hourSeries(shortUrl));
+        return Response.json(200, json.append('}').toString());
+    }
+
+    private static void appendSeries(StringBuilder json, VisitSeries series) {
+        json.append("{\"startMillis\":").append(series.getStartMillis())
+                .append(",\"stepMillis\":").append(series.getStepMillis())
+                .append(",\"counts\":[");
+        int[] counts = series.getCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(counts[i]);
+        }
+        json.append("]}");
+    }
+
+    private Response handleRedirect(String shortUrl) {
+        String originalUrl = linkService.resolveAndRegisterVisit(shortUrl);
+        if (originalUrl == null) {
+            return Response.text(404, "Ссылка не найдена, истек срок ее жизни или превышен лимит");
+        }
+        return Response.redirect(originalUrl);
+    }
+
+    private Response handleCreate(Request request) {
+        Map<String, String> params = request.params();
+        String url = params.get("url");
+        if (url == null || !UrlValidator.isValid(url)) {
+            return Response.text(400, "Невалидный URL");
+        }
+        int limit = defaultLimit;
+        if (params.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(params.get("limit"));
+            } catch (NumberFormatException e) {
+                return Response.text(400, "Лимит должен быть числом");
+            }
+        }
+        String userUuid = request.userUuid != null ? request.userUuid : UUID.randomUUID().toString();
+        Link link = linkService.create(url, userUuid, limit);
+        return Response.json(201, toJson(link));
+    }
+
+    private Response handleList(Request request) {
+        if (request.userUuid == null) {
+            return Response.text(401, "Не передан заголовок X-User-Uuid");
+        }
+        Map<String, String> params = request.params();
+        int offset;
+        int limit;
+        try {
+            offset = Integer.parseInt(params.getOrDefault("offset", "0"));
+            limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        } catch (NumberFormatException e) {
+            return Response.text(400, "Параметры offset и limit должны быть числами");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Link link : linkService.listByUser(request.userUuid, offset, Math.min(limit, MAX_PAGE_SIZE))) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(toJson(link));
+        }
+        return Response.json(200, json.append(']').toString());
+    }
+
+    private Response handleUpdateAll(Request request) {
+        if (request.userUuid == null) {
+            return Response.text(401, "Не передан заголовок X-User-Uuid");
+        }
+        int newLimit;
+        try {
+            newLimit = Integer.parseInt(request.params().get("limit"));
+        } catch (NumberFormatException e) {
+            return Response.text(400, "Лимит должен быть числом");
+        }
+        int updated = linkService.updateLimitForUser(request.userUuid, newLimit);
+        return Response.json(200, "{\"updated\":" + updated + "}");
+    }
+
+    private Response handleDeleteAll(Request request) {
+        if (request.userUuid == null) {
+            return Response.text(401, "Не передан заголовок X-User-Uuid");
+        }
+        int deleted = linkService.deleteAllByUser(request.userUuid);
+        return Response.json(200, "{\"deleted\":" + deleted + "}");
+    }
+
+    private Response handleInfo(String shortUrl) {
+        return linkService.getByShortUrl(shortUrl)
+                .map(link -> Response.json(200, toJson(link)))
+                .orElseGet(() -> Response.text(404, "Ссылка не найдена или ее срок жизни истек"));
+    }
+
+    private Response handleUpdate(Request request, String shortUrl) {
+        if (request.userUuid == null) {
+            return Response.text(401, "Не передан заголовок X-User-Uuid");
+        }
+        int newLimit;
+        try {
+            newLimit = Integer.parseInt(request.params().get("limit"));
+        } catch (NumberFormatException e) {
+            return Response.text(400, "Лимит должен быть числом");
+        }
+        if (linkService.updateLimit(shortUrl, request.userUuid, newLimit)) {
+            return Response.empty(204);
+        }
+        return Response.text(404, "Ссылка не найдена или у вас нет прав на ее редактирование");
+    }
+
+    private Response handleDelete(Request request, String shortUrl) {
+        if (request.userUuid == null) {
+            return Response.text(401, "Не передан заголовок X-User-Uuid");
+        }
+        if (linkService.delete(shortUrl, request.userUuid)) {
+            return Response.empty(204);
+        }
+        return Response.text(404, "Ссылка не найдена или у вас нет прав на ее удаление");
+    }
+
+    private static String toJson(Link link) {
+        return "{\"shortUrl\":\"" + escapeJson(link.getShortUrl())
+                + "\",\"originalUrl\":\"" + escapeJson(link.getOriginalUrl())
+                + "\",\"userUuid\":\"" + escapeJson(link.getUserUuid())
+                + "\",\"createdAt\":\"" + link.getCreatedAt()
+                + "\",\"limit\":" + link.getLimit()
+                + ",\"visitCount\":" + link.getVisitCount() + "}";
+    }
+
+    static String escapeJson(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Состояние одного соединения: накопленные входные байты и неотправленный ответ. */
+    private static final class Connection {
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        private ByteBuffer out = ByteBuffer.allocate(4096);
+        private boolean closeAfterWrite;
+        // Запрос соединения обрабатывается исполнителем запросов
+        private boolean busy;
+        private long lastActivity = System.currentTimeMillis();
+
+        boolean append(ByteBuffer data) {
+            if (data.remaining() > in.remaining()) {
+                return false;
+            }
+            in.put(data);
+            return true;
+        }
+
+        /** Извлекает очередной полностью полученный запрос или возвращает null. */
+        Request nextRequest() {
+            byte[] buf = in.array();
+            int limit = in.position();
+            int headerEnd = indexOfHeaderEnd(buf, limit);
+            if (headerEnd < 0) {
+                return null;
+            }
+            Request request = Request.parseHead(new String(buf, 0, headerEnd, StandardCharsets.ISO_8859_1));
+            int bodyStart = headerEnd + 4;
+            if (request.contentLength < 0) {
+                closeAfterWrite = true;
+                write(Response.text(400, "Некорректный Content-Length"), false);
+                return null;
+            }
+            if (limit - bodyStart < request.contentLength) {
+                if (request.contentLength > buf.length - bodyStart) {
+                    closeAfterWrite = true;
+                    write(Response.text(413, "Слишком большой запрос"), false);
+                }
+                return null;
+            }
+            request.body = new String(buf, bodyStart, request.contentLength, StandardCharsets.UTF_8);
+            int consumed = bodyStart + request.contentLength;
+            in.flip();
+            in.position(consumed);
+            in.compact();
+            return request;
+        }
+
+        void write(Response response, boolean keepAlive) {
+            byte[] bytes = response.encode(keepAlive);
+            if (out.remaining() < bytes.length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            out.put(bytes);
+        }
+
+        private static int indexOfHeaderEnd(byte[] buf, int limit) {
+            for (int i = 0; i + 3 < limit; i++) {
+                if (buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r' && buf[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static final class Request {
+        String method;
+        String path;
+        String query;
+        String userUuid;
+        // -1, если заголовок Content-Length не число
+        int contentLength;
+        boolean keepAlive;
+        String body = "";
+
+        static Request parseHead(String head) {
+            Request request = new Request();
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            request.method = requestLine[0];
+            String target = requestLine.length > 1 ? requestLine[1] : "/";
+            String version = requestLine.length > 2 ? requestLine[2] : "HTTP/1.0";
+            int q = target.indexOf('?');
+            request.path = q >= 0 ? target.substring(0, q) : target;
+            request.query = q >= 0 ? target.substring(q + 1) : "";
+            request.keepAlive = version.equals("HTTP/1.1");
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim().toLowerCase();
+                String value = lines[i].substring(colon + 1).trim();
+                switch (name) {
+                    case "content-length":
+                        request.contentLength = parseContentLength(value);
+                        break;
+                    case "connection":
+                        request.keepAlive = value.equalsIgnoreCase("keep-alive");
+                        break;
+                    case USER_HEADER:
+                        request.userUuid = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return request;
+        }
+
+        // Только десятичные цифры: знак или пробелы внутри значения - ошибка клиента.
+        // Слишком большое число остается огромным и отклоняется как слишком большой запрос
+        private static int parseContentLength(String value) {
+            if (value.isEmpty()) {
+                return -1;
+            }
+            long length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                length = Math.min(Integer.MAX_VALUE, length * 10 + (c - '0'));
+            }
+            return (int) length;
+        }
+
+        /** Параметры из строки запроса и тела в формате application/x-www-form-urlencoded. */
+        Map<String, String> params() {
+            Map<String, String> params = new HashMap<>();
+            parseForm(query, params);
+            parseForm(body, params);
+            return params;
+        }
+
+        private static void parseForm(String form, Map<String, String> params) {
+            if (form == null || form.isEmpty()) {
+                return;
+            }
+            for (String pair : form.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    static final class Response {
+        final int status;
+        final String contentType;
+        final String location;
+        final byte[] body;
+        long retryAfterSeconds = -1;
+
+        private Response(int status, String contentType, String location, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.location = location;
+            this.body = body;
+        }
+
+        static Response redirect(String location) {
+            return new Response(302, null, location, new byte[0]);
+        }
+
+        static Response text(int status, String message) {
+            return new Response(status, "text/plain; charset=utf-8", null, message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response json(int status, String json) {
+            return new Response(status, "application/json; charset=utf-8", null, json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response tooManyRequests(String message, long retryAfterMillis) {
+            Response response = text(429, message);
+            response.retryAfterSeconds = Math.max(1, (retryAfterMillis + 999) / 1000);
+            return response;
+        }
+
+        static Response empty(int status) {
+            return new Response(status, null, null, new byte[0]);
+        }
+
+        byte[] encode(boolean keepAlive) {
+            StringBuilder head = new StringBuilder(128);
+            head.append("HTTP/1.1 ").append(status).append(' ').append(reason(status)).append("\r\n");
+            if (location != null) {
+                head.append("Location: ").append(location).append("\r\n");
+            }
+            if (retryAfterSeconds >= 0) {
+                head.append("Retry-After: ").append(retryAfterSeconds).append("\r\n");
+            }
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+            head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] result = new byte[headBytes.length + body.length];
+            System.arraycopy(headBytes, 0, result, 0, headBytes.length);
+            System.arraycopy(body, 0, result, headBytes.length, body.length);
+            return result;
+        }
+
+        private static String reason(int status) {
+            switch (status) {
+                case 200:
+                    return "OK";
+                case 201:
+                    return "Created";
+                case 204:
+                    return "No Content";
+                case 302:
+                    return "Found";
+                case 400:
+                    return "Bad Request";
+                case 401:
+                    return "Unauthorized";
+                case 404:
+                    return "Not Found";
+                case 405:
+                    return "Method Not Allowed";
+                case 413:
+                    return "Payload Too Large";
+                case 429:
+                    return "Too Many Requests";
+                case 503:
+                    return "Service Unavailable";
+                default:
+                    return "Internal Server Error";
+            }
+        }
+    }
+}
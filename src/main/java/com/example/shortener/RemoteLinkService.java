@@ -0,0 +1,275 @@
+package com.example.shortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Клиент {@link ShardServer}: {@link LinkService}, все вызовы которого выполняются на удаленном узле.
+ * <p>
+ * Держит пул постоянных соединений: поток берет свободное соединение на время одного
+ * запроса, поэтому параллельные вызовы не ждут друг друга. Соединение, на котором
+ * произошла ошибка ввода-вывода, закрывается и в пул не возвращается.
+ * Возвращаемые ссылки - снимки состояния узла.
+ */
+public class RemoteLinkService implements LinkService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InetSocketAddress address;
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    public RemoteLinkService(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        return call(ShardProtocol.CREATE, out -> {
+            ShardProtocol.writeString(out, originalUrl);
+            ShardProtocol.writeString(out, userUuid);
+            out.writeInt(limit);
+        }, ShardProtocol::readLink);
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return Optional.ofNullable(lookup(shortUrl));
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            return null;
+        }
+        return call(ShardProtocol.LOOKUP, out -> out.writeLong(code), ShardProtocol::readNullableLink);
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            return null;
+        }
+        return call(ShardProtocol.RESOLVE, out -> out.writeLong(code),
+                in -> in.readBoolean() ? ShardProtocol.readString(in) : null);
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            return 0;
+        }
+        return call(ShardProtocol.REGISTER_VISITS, out -> {
+            out.writeLong(code);
+            out.writeInt(count);
+        }, DataInputStream::readInt);
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            return false;
+        }
+        return call(ShardProtocol.DELETE, out -> {
+            out.writeLong(code);
+            ShardProtocol.writeString(out, userUuid);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        long code = ShortCode.encode(shortUrl);
+        if (code == ShortCode.INVALID) {
+            return false;
+        }
+        return call(ShardProtocol.UPDATE_LIMIT, out -> {
+            out.writeLong(code);
+            ShardProtocol.writeString(out, userUuid);
+            out.writeInt(newLimit);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        return call(ShardProtocol.LIST_BY_USER, out -> {
+            ShardProtocol.writeString(out, userUuid);
+            out.writeInt(offset);
+            out.writeInt(limit);
+        }, in -> {
+            int count = in.readInt();
+            List<Link> links = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                links.add(ShardProtocol.readLink(in));
+            }
+            return links;
+        });
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        return call(ShardProtocol.DELETE_ALL_BY_USER, out -> ShardProtocol.writeString(out, userUuid),
+                DataInputStream::readInt);
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        return call(ShardProtocol.UPDATE_LIMIT_FOR_USER, out -> {
+            ShardProtocol.writeString(out, userUuid);
+            out.writeInt(newLimit);
+        }, DataInputStream::readInt);
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        return call(ShardProtocol.IMPORT, out -> ShardProtocol.writeLink(out, link), DataInputStream::readBoolean);
+    }
+
+    // Пачка уходит одним запросом; узел возвращает коды отклоненных ссылок
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        return call(ShardProtocol.IMPORT_BATCH, out -> {
+            out.writeInt(links.size());
+            for (Link link : links) {
+                ShardProtocol.writeLink(out, link);
+            }
+        }, in -> {
+            int count = in.readInt();
+            Map<Long, Link> byCode = new HashMap<>();
+            if (count > 0) {
+                for (Link link : links) {
+                    byCode.put(link.getCode(), link);
+                }
+            }
+            List<Link> rejected = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                rejected.add(byCode.get(in.readLong()));
+            }
+            return rejected;
+        });
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        forEachLinkInRanges(new long[0], action);
+    }
+
+    /**
+     * Обходит ссылки узла, чьи хеши попадают в дуги кольца {@code ranges}
+     * (см. {@link ConsistentHashRing#rangesOf(String)}). Отбор выполняется на узле,
+     * поэтому по сети передаются только подходящие ссылки.
+     */
+    void forEachLinkInRanges(long[] ranges, Consumer<Link> action) {
+        call(ShardProtocol.SCAN, out -> ShardProtocol.writeRanges(out, ranges), in -> {
+            while (true) {
+                byte frame = in.readByte();
+                if (frame == ShardProtocol.SCAN_END) {
+                    return null;
+                }
+                if (frame == ShardProtocol.ERROR) {
+                    throw new IllegalStateException("Ошибка на шарде " + address + ": " + ShardProtocol.readString(in));
+                }
+                if (frame != ShardProtocol.SCAN_ITEM) {
+                    throw new IOException("Некорректный кадр ответа шарда: " + frame);
+                }
+                action.accept(ShardProtocol.readLink(in));
+            }
+        });
+    }
+
+    private <T> T call(byte op, RequestWriter request, ResponseReader<T> response) {
+        if (closed) {
+            throw new IllegalStateException("Клиент шарда " + address + " закрыт");
+        }
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                connection = new Connection(address);
+            }
+            connection.out.writeByte(op);
+            request.write(connection.out);
+            connection.out.flush();
+            if (connection.in.readByte() != ShardProtocol.OK) {
+                String message = ShardProtocol.readString(connection.in);
+                connection.close();
+                connection = null;
+                throw new IllegalStateException("Ошибка на шарде " + address + ": " + message);
+            }
+            T result = response.read(connection.in);
+            idle.add(connection);
+            connection = null;
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Шард " + address + " недоступен", e);
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private interface RequestWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface ResponseReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            this.socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // соединение уже разорвано
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.shortener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный протокол между маршрутизатором {@link ShardedLinkService} и {@link ShardServer}.
+ * <p>
+ * Запрос - байт операции и ее аргументы, ответ - байт статуса и результат. Короткие коды
+ * передаются числами ({@link ShortCode}), строки - длиной и байтами UTF-8.
+ * Одно соединение обслуживает запросы строго по очереди.
+ */
+final class ShardProtocol {
+
+    static final byte CREATE = 1;
+    static final byte LOOKUP = 2;
+    static final byte RESOLVE = 3;
+    static final byte REGISTER_VISITS = 4;
+    static final byte DELETE = 5;
+    static final byte UPDATE_LIMIT = 6;
+    static final byte LIST_BY_USER = 7;
+    static final byte DELETE_ALL_BY_USER = 8;
+    static final byte UPDATE_LIMIT_FOR_USER = 9;
+    static final byte IMPORT = 10;
+    static final byte SCAN = 11;
+    static final byte IMPORT_BATCH = 12;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    // Кадры потокового ответа SCAN после OK: ссылка, конец потока или ERROR с сообщением
+    static final byte SCAN_ITEM = 2;
+    static final byte SCAN_END = 3;
+
+    // Длиннее строк в протоколе не бывает: URL ограничены размером записи журнала
+    static final int MAX_STRING_BYTES = 1 << 20;
+
+    private ShardProtocol() {
+    }
+
+    static void writeLink(DataOutputStream out, Link link) throws IOException {
+        out.writeLong(link.getCode());
+        writeString(out, link.getOriginalUrl());
+        writeString(out, link.getUserUuid());
+        out.writeInt(link.getLimit());
+        out.writeLong(link.getCreatedAtMillis());
+        out.writeLong(link.getExpiresAtMillis());
+        out.writeInt(link.getVisitCount());
+    }
+
+    static Link readLink(DataInputStream in) throws IOException {
+        long code = in.readLong();
+        String originalUrl = readString(in);
+        String userUuid = readString(in);
+        int limit = in.readInt();
+        long createdAt = in.readLong();
+        long expiresAt = in.readLong();
+        Link link = new Link(originalUrl, code, userUuid, limit, createdAt, expiresAt);
+        link.advanceVisitCount(in.readInt());
+        return link;
+    }
+
+    /** Ссылка или ее отсутствие: признак наличия и, если есть, сама ссылка. */
+    static void writeNullableLink(DataOutputStream out, Link link) throws IOException {
+        out.writeBoolean(link != null);
+        if (link != null) {
+            writeLink(out, link);
+        }
+    }
+
+    static Link readNullableLink(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readLink(in) : null;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Некорректная длина строки в протоколе шарда: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeRanges(DataOutputStream out, long[] ranges) throws IOException {
+        out.writeInt(ranges.length);
+        for (long value : ranges) {
+            out.writeLong(value);
+        }
+    }
+
+    static long[] readRanges(DataInputStream in) throws IOException {
+        long[] ranges = new long[in.readInt()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = in.readLong();
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.shortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Узел кластера: обслуживает свой {@link LinkService} по протоколу {@link ShardProtocol}.
+ * <p>
+ * Соединений немного (маршрутизаторы держат пулы постоянных соединений), поэтому каждое
+ * обслуживается своим потоком с блокирующим вводом-выводом.
+ */
+public class ShardServer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final LinkService linkService;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    // Поток на соединение: с виртуальными потоками блокирующий ввод-вывод не занимает потоки платформы
+    private final ExecutorService connections = ThreadingModel.configured() == ThreadingModel.VIRTUAL
+            ? ThreadingModel.VIRTUAL.newTaskExecutor("shard-connection", 0)
+            : Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "shard-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    public ShardServer(LinkService linkService, InetSocketAddress address) throws IOException {
+        this.linkService = linkService;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(address, 128);
+        this.acceptor = new Thread(this::acceptLoop, "shard-acceptor");
+    }
+
+    public void start() {
+        running = true;
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                openSockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Ошибка при приеме соединения шарда: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            while (running) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    dispatch(op, in, out);
+                } catch (RuntimeException e) {
+                    // Ответ пишется только после выполнения операции (поток SCAN сообщает
+                    // о своих ошибках сам), поэтому здесь он еще не начат
+                    out.writeByte(ShardProtocol.ERROR);
+                    ShardProtocol.writeString(out, String.valueOf(e.getMessage()));
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // соединение закрыто клиентом или при остановке
+        } catch (IOException e) {
+            System.err.println("Ошибка соединения шарда: " + e.getMessage());
+        } finally {
+            openSockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Соединение уже закрыто
+            }
+        }
+    }
+
+    private void dispatch(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case ShardProtocol.CREATE: {
+                String url = ShardProtocol.readString(in);
+                String user = ShardProtocol.readString(in);
+                int limit = in.readInt();
+                Link link = linkService.create(url, user, limit);
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeLink(out, link);
+                break;
+            }
+            case ShardProtocol.LOOKUP: {
+                Link link = linkService.lookup(ShortCode.decode(in.readLong()));
+                out.writeByte(ShardProtocol.OK);
+                ShardProtocol.writeNullableLink(out, link);
+                break;
+            }
+            case ShardProtocol.RESOLVE: {
+                String url = linkService.resolveAndRegisterVisit(ShortCode.decode(in.readLong()));
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(url != null);
+                if (url != null) {
+                    ShardProtocol.writeString(out, url);
+                }
+                break;
+            }
+            case ShardProtocol.REGISTER_VISITS: {
+                String shortUrl = ShortCode.decode(in.readLong());
+                int registered = linkService.registerVisits(shortUrl, in.readInt());
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(registered);
+                break;
+            }
+            case ShardProtocol.DELETE: {
+                String shortUrl = ShortCode.decode(in.readLong());
+                boolean deleted = linkService.delete(shortUrl, ShardProtocol.readString(in));
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(deleted);
+                break;
+            }
+            case ShardProtocol.UPDATE_LIMIT: {
+                String shortUrl = ShortCode.decode(in.readLong());
+                String user = ShardProtocol.readString(in);
+                boolean updated = linkService.updateLimit(shortUrl, user, in.readInt());
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(updated);
+                break;
+            }
+            case ShardProtocol.LIST_BY_USER: {
+                String user = ShardProtocol.readString(in);
+                int offset = in.readInt();
+                List<Link> links = linkService.listByUser(user, offset, in.readInt());
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(links.size());
+                for (Link link : links) {
+                    ShardProtocol.writeLink(out, link);
+                }
+                break;
+            }
+            case ShardProtocol.DELETE_ALL_BY_USER: {
+                int deleted = linkService.deleteAllByUser(ShardProtocol.readString(in));
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(deleted);
+                break;
+            }
+            case ShardProtocol.UPDATE_LIMIT_FOR_USER: {
+                String user = ShardProtocol.readString(in);
+                int updated = linkService.updateLimitForUser(user, in.readInt());
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(updated);
+                break;
+            }
+            case ShardProtocol.IMPORT: {
+                boolean imported = linkService.importLink(ShardProtocol.readLink(in));
+                out.writeByte(ShardProtocol.OK);
+                out.writeBoolean(imported);
+                break;
+            }
+            case ShardProtocol.IMPORT_BATCH: {
+                int count = in.readInt();
+                List<Link> links = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    links.add(ShardProtocol.readLink(in));
+                }
+                List<Link> rejected = linkService.importLinks(links);
+                out.writeByte(ShardProtocol.OK);
+                out.writeInt(rejected.size());
+                for (Link link : rejected) {
+                    out.writeLong(link.getCode());
+                }
+                break;
+            }
+            case ShardProtocol.SCAN: {
+                long[] ranges = ShardProtocol.readRanges(in);
+                out.writeByte(ShardProtocol.OK);
+                try {
+                    linkService.forEachLink(link -> {
+                        if (ranges.length == 0 || ConsistentHashRing.inRanges(link.getCode(), ranges)) {
+                            try {
+                                out.writeByte(ShardProtocol.SCAN_ITEM);
+                                ShardProtocol.writeLink(out, link);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                } catch (RuntimeException e) {
+                    // Поток уже начат: ошибка идет отдельным кадром, который клиент не спутает со ссылкой
+                    out.writeByte(ShardProtocol.ERROR);
+                    ShardProtocol.writeString(out, String.valueOf(e.getMessage()));
+                    break;
+                }
+                out.writeByte(ShardProtocol.SCAN_END);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Неизвестная операция протокола шарда: " + op);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // сервер все равно останавливается
+        }
+        for (Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // соединение уже разорвано
+            }
+        }
+        connections.shutdown();
+        try {
+            acceptor.join(1000);
+            connections.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.shortener;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/** Запускает узел кластера: {@code java -cp shortener-shard.jar ... <port> [backend]}. */
+public class ShardServerApp {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Использование: ShardServerApp <port> [memory|wal|offheap]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        String backend = args.length > 1 ? args[1] : Configuration.getClusterShardBackend();
+        try {
+            LinkService linkService = LinkServiceFactory.forShard(backend, "shard-" + port);
+            ShardServer server = new ShardServer(linkService,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                linkService.close();
+            }));
+            server.start();
+            System.out.println("Узел кластера (" + backend + ") запущен на порту " + server.getPort());
+        } catch (Exception e) {
+            System.err.println("Произошла критическая ошибка: " + e.getMessage());
+        }
+    }
+}
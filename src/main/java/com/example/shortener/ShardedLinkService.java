@@ -0,0 +1,377 @@
+package com.example.shortener;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Маршрутизирующий {@link LinkService}: распределяет короткие коды по шардам
+ * согласованным хешированием ({@link ConsistentHashRing}) и передает каждый вызов
+ * шарду-владельцу кода.
+ * <p>
+ * Шардом может быть любая реализация: {@link RemoteLinkService} для узла в другом
+ * процессе или локальный {@link LinkServiceImpl} для кластера внутри одной JVM.
+ * Код новой ссылки выбирает маршрутизатор, а ссылка добавляется на шард через
+ * {@link LinkService#importLink(Link)}, поэтому шарды не знают о топологии.
+ * <p>
+ * При добавлении шарда на него переносятся ссылки только из дуг кольца, которые
+ * он забирает у соседей; при удалении - только ссылки удаляемого шарда. На время
+ * переноса вызовы приостанавливаются блокировкой топологии, поэтому ни одно
+ * изменение не теряется. Если перенос не удался, топология остается прежней.
+ */
+public class ShardedLinkService implements LinkService {
+
+    private static final long EXPIRATION_SECONDS = Configuration.getExpirationSeconds();
+
+    private final Map<String, LinkService> shards;
+    private final int virtualNodes;
+    private final Clock clock;
+    private final ReadWriteLock topologyLock = new ReentrantReadWriteLock();
+    private volatile ConsistentHashRing ring;
+
+    public ShardedLinkService(Map<String, LinkService> shards, int virtualNodes) {
+        this(shards, virtualNodes, Clock.systemDefaultZone());
+    }
+
+    public ShardedLinkService(Map<String, LinkService> shards, int virtualNodes, Clock clock) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один шард");
+        }
+        this.shards = new LinkedHashMap<>(shards);
+        this.virtualNodes = virtualNodes;
+        this.clock = clock;
+        this.ring = new ConsistentHashRing(this.shards.keySet(), virtualNodes);
+    }
+
+    @Override
+    public Link create(String originalUrl, String userUuid, int limit) {
+        topologyLock.readLock().lock();
+        try {
+            long now = clock.millis();
+            while (true) {
+                long code = ShortCode.random();
+                Link link = new Link(originalUrl, code, userUuid, limit, now, now + EXPIRATION_SECONDS * 1000);
+                if (shards.get(ring.ownerOf(code)).importLink(link)) {
+                    return link;
+                }
+            }
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Link> getByShortUrl(String shortUrl) {
+        return Optional.ofNullable(lookup(shortUrl));
+    }
+
+    @Override
+    public Link lookup(String shortUrl) {
+        topologyLock.readLock().lock();
+        try {
+            LinkService shard = ownerOf(shortUrl);
+            return shard != null ? shard.lookup(shortUrl) : null;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<String> getOriginalUrlAndRegisterVisit(String shortUrl) {
+        return Optional.ofNullable(resolveAndRegisterVisit(shortUrl));
+    }
+
+    @Override
+    public String resolveAndRegisterVisit(String shortUrl) {
+        topologyLock.readLock().lock();
+        try {
+            LinkService shard = ownerOf(shortUrl);
+            return shard != null ? shard.resolveAndRegisterVisit(shortUrl) : null;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int registerVisits(String shortUrl, int count) {
+        topologyLock.readLock().lock();
+        try {
+            LinkService shard = ownerOf(shortUrl);
+            return shard != null ? shard.registerVisits(shortUrl, count) : 0;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String shortUrl, String userUuid) {
+        topologyLock.readLock().lock();
+        try {
+            LinkService shard = ownerOf(shortUrl);
+            return shard != null && shard.delete(shortUrl, userUuid);
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateLimit(String shortUrl, String userUuid, int newLimit) {
+        topologyLock.readLock().lock();
+        try {
+            LinkService shard = ownerOf(shortUrl);
+            return shard != null && shard.updateLimit(shortUrl, userUuid, newLimit);
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    // Ссылки пользователя разбросаны по всем шардам: каждый отдает свои первые
+    // offset + limit ссылок, а страница собирается слиянием по времени создания
+    @Override
+    public List<Link> listByUser(String userUuid, int offset, int limit) {
+        int from = Math.max(offset, 0);
+        int window = (int) Math.min(Integer.MAX_VALUE, (long) from + Math.max(limit, 0));
+        List<Link> merged = new ArrayList<>();
+        topologyLock.readLock().lock();
+        try {
+            for (LinkService shard : shards.values()) {
+                merged.addAll(shard.listByUser(userUuid, 0, window));
+            }
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+        merged.sort(Comparator.comparingLong(Link::getCreatedAtMillis).thenComparingLong(Link::getCode));
+        int start = Math.min(from, merged.size());
+        return new ArrayList<>(merged.subList(start, Math.min(merged.size(), window)));
+    }
+
+    @Override
+    public int deleteAllByUser(String userUuid) {
+        topologyLock.readLock().lock();
+        try {
+            int deleted = 0;
+            for (LinkService shard : shards.values()) {
+                deleted += shard.deleteAllByUser(userUuid);
+            }
+            return deleted;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int updateLimitForUser(String userUuid, int newLimit) {
+        topologyLock.readLock().lock();
+        try {
+            int updated = 0;
+            for (LinkService shard : shards.values()) {
+                updated += shard.updateLimitForUser(userUuid, newLimit);
+            }
+            return updated;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean importLink(Link link) {
+        topologyLock.readLock().lock();
+        try {
+            return shards.get(ring.ownerOf(link.getCode())).importLink(link);
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    // Пачка раскладывается по владельцам, и каждый шард получает свою часть одним вызовом
+    @Override
+    public List<Link> importLinks(List<Link> links) {
+        topologyLock.readLock().lock();
+        try {
+            Map<String, List<Link>> byShard = new HashMap<>();
+            for (Link link : links) {
+                byShard.computeIfAbsent(ring.ownerOf(link.getCode()), id -> new ArrayList<>()).add(link);
+            }
+            List<Link> rejected = new ArrayList<>();
+            for (Map.Entry<String, List<Link>> entry : byShard.entrySet()) {
+                rejected.addAll(shards.get(entry.getKey()).importLinks(entry.getValue()));
+            }
+            return rejected;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachLink(Consumer<Link> action) {
+        topologyLock.readLock().lock();
+        try {
+            for (LinkService shard : shards.values()) {
+                shard.forEachLink(action);
+            }
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет шард и переносит на него ссылки из дуг кольца, которые он забирает у соседей.
+     *
+     * @return число перенесенных ссылок
+     * @throws IllegalStateException если ссылку не удалось перенести; шард не добавлен
+     */
+    public int addShard(String id, LinkService shard) {
+        topologyLock.writeLock().lock();
+        try {
+            if (shards.containsKey(id)) {
+                throw new IllegalArgumentException("Шард " + id + " уже есть в кластере");
+            }
+            ConsistentHashRing next = ring.with(id);
+            long[] ranges = next.rangesOf(id);
+            Map<LinkService, List<Link>> taken = new LinkedHashMap<>();
+            for (LinkService source : shards.values()) {
+                List<Link> links = new ArrayList<>();
+                forEachLinkInRanges(source, ranges, links::add);
+                taken.put(source, links);
+            }
+            int moved = move(taken, link -> shard);
+            shards.put(id, shard);
+            ring = next;
+            return moved;
+        } finally {
+            topologyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Выводит шард из кластера, перенося его ссылки на новых владельцев.
+     * Сам шард не закрывается: это делает вызывающий код.
+     *
+     * @return удаленный шард
+     * @throws IllegalStateException если ссылку не удалось перенести; шард остается в кластере
+     */
+    public LinkService removeShard(String id) {
+        topologyLock.writeLock().lock();
+        try {
+            LinkService removed = shards.get(id);
+            if (removed == null) {
+                throw new IllegalArgumentException("Шарда " + id + " нет в кластере");
+            }
+            if (shards.size() == 1) {
+                throw new IllegalStateException("Нельзя удалить последний шард");
+            }
+            ConsistentHashRing next = ring.without(id);
+            List<Link> links = new ArrayList<>();
+            removed.forEachLink(links::add);
+            move(Map.of(removed, links), link -> shards.get(next.ownerOf(link.getCode())));
+            shards.remove(id);
+            ring = next;
+            return removed;
+        } finally {
+            topologyLock.writeLock().unlock();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /** Идентификатор шарда, которому принадлежит код, или null для некорректного кода. */
+    public String shardOf(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        return code == ShortCode.INVALID ? null : ring.ownerOf(code);
+    }
+
+    /**
+     * Переносит ссылки в два этапа: сначала все копируются на целевые шарды, и только
+     * потом удаляются с исходных шардов. Если хотя бы одну ссылку скопировать не удалось,
+     * уже скопированные удаляются с целевых шардов, а изменение топологии отменяется
+     * исключением - ни одна ссылка не остается на шарде, куда кольцо ее не направит.
+     * Вызывается под блокировкой записи топологии.
+     */
+    private int move(Map<LinkService, List<Link>> linksBySource, Function<Link, LinkService> target) {
+        long now = clock.millis();
+        List<Link> copied = new ArrayList<>();
+        List<LinkService> copiedTo = new ArrayList<>();
+        for (List<Link> links : linksBySource.values()) {
+            for (Link link : links) {
+                // Истекшие ссылки не переносим, а просто удаляем
+                if (link.isExpiredAt(now)) {
+                    continue;
+                }
+                LinkService destination = target.apply(link);
+                boolean imported;
+                try {
+                    imported = destination.importLink(link);
+                } catch (RuntimeException e) {
+                    rollBack(copied, copiedTo, e);
+                    throw new IllegalStateException("Ошибка переноса ссылки " + link.getShortUrl() + ", топология не изменена", e);
+                }
+                if (!imported) {
+                    IllegalStateException failure = new IllegalStateException("Ошибка переноса: код "
+                            + link.getShortUrl() + " уже занят на целевом шарде, топология не изменена");
+                    rollBack(copied, copiedTo, failure);
+                    throw failure;
+                }
+                copied.add(link);
+                copiedTo.add(destination);
+            }
+        }
+        for (Map.Entry<LinkService, List<Link>> source : linksBySource.entrySet()) {
+            for (Link link : source.getValue()) {
+                source.getKey().delete(link.getShortUrl(), link.getUserUuid());
+            }
+        }
+        return copied.size();
+    }
+
+    private static void rollBack(List<Link> copied, List<LinkService> copiedTo, Exception cause) {
+        for (int i = copied.size() - 1; i >= 0; i--) {
+            Link link = copied.get(i);
+            try {
+                copiedTo.get(i).delete(link.getShortUrl(), link.getUserUuid());
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    private static void forEachLinkInRanges(LinkService shard, long[] ranges, Consumer<Link> action) {
+        if (shard instanceof RemoteLinkService) {
+            ((RemoteLinkService) shard).forEachLinkInRanges(ranges, action);
+            return;
+        }
+        shard.forEachLink(link -> {
+            if (ConsistentHashRing.inRanges(link.getCode(), ranges)) {
+                action.accept(link);
+            }
+        });
+    }
+
+    private LinkService ownerOf(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        return code == ShortCode.INVALID ? null : shards.get(ring.ownerOf(code));
+    }
+
+    /** Закрывает маршрутизатор вместе со всеми шардами. */
+    @Override
+    public void close() {
+        topologyLock.writeLock().lock();
+        try {
+            for (LinkService shard : shards.values()) {
+                shard.close();
+            }
+        } finally {
+            topologyLock.writeLock().unlock();
+        }
+    }
+}
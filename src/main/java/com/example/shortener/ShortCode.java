@@ -0,0 +1,71 @@
+package com.example.shortener;
+
+import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
+
+import java.util.Arrays;
+
+/**
+ * Кодирование 8-символьных коротких кодов NanoId в 64-битные числа.
+ * <p>
+ * Алфавит NanoId состоит из 64 символов, поэтому каждый символ занимает 6 бит,
+ * а весь код - 48 бит. Дополнительно выставляется 49-й бит, чтобы ни один код
+ * не кодировался нулем: ноль в индексах означает пустую ячейку.
+ */
+final class ShortCode {
+
+    static final int LENGTH = 8;
+    static final long INVALID = -1;
+
+    private static final char[] ALPHABET = NanoIdUtils.DEFAULT_ALPHABET;
+    private static final long MARKER = 1L << 48;
+    private static final long PAYLOAD_MASK = MARKER - 1;
+    private static final byte[] INDEX = new byte[128];
+
+    static {
+        Arrays.fill(INDEX, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            INDEX[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private ShortCode() {
+    }
+
+    /** @return код или {@link #INVALID}, если строка не может быть коротким кодом */
+    static long encode(String shortUrl) {
+        if (shortUrl == null || shortUrl.length() != LENGTH) {
+            return INVALID;
+        }
+        long code = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = shortUrl.charAt(i);
+            int index = c < 128 ? INDEX[c] : -1;
+            if (index < 0) {
+                return INVALID;
+            }
+            code = (code << 6) | index;
+        }
+        return code | MARKER;
+    }
+
+    static String decode(long code) {
+        char[] chars = new char[LENGTH];
+        long payload = code & PAYLOAD_MASK;
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (payload & 63)];
+            payload >>>= 6;
+        }
+        return new String(chars);
+    }
+
+    /** Случайный код с тем же распределением, что и у NanoId из 8 символов. */
+    static long random() {
+        return (NanoIdUtils.DEFAULT_NUMBER_GENERATOR.nextLong() & PAYLOAD_MASK) | MARKER;
+    }
+
+    /** Перемешивание битов кода для индексов с открытой адресацией. */
+    static long hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.shortener;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Модель потоков для обработки запросов и фоновых задач.
+ * <p>
+ * {@link #VIRTUAL} использует виртуальные потоки Java 21: блокирующий вызов журнала или узла
+ * кластера не занимает поток платформы. Проект собирается под Java 11, поэтому API виртуальных
+ * потоков вызывается через отражение; на более старой JVM {@link #configured()}
+ * возвращается к {@link #PLATFORM}.
+ */
+public enum ThreadingModel {
+
+    PLATFORM,
+    VIRTUAL;
+
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = method(builderClass(), "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = method(builderClass(), "factory");
+    private static final Method THREAD_PER_TASK = method(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    /** Модель из {@code threads.model}; определяется один раз за запуск. */
+    public static ThreadingModel configured() {
+        return Configured.MODEL;
+    }
+
+    private static final class Configured {
+        static final ThreadingModel MODEL = resolve();
+
+        private static ThreadingModel resolve() {
+            String value = Configuration.getThreadsModel();
+            ThreadingModel model;
+            try {
+                model = valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Ошибка в инициализаторе класса сломала бы все хранилища, поэтому только предупреждаем
+                System.err.println("Предупреждение: неизвестная модель потоков '" + value + "', используются потоки платформы.");
+                return PLATFORM;
+            }
+            if (model == VIRTUAL && !isVirtualSupported()) {
+                System.err.println("Предупреждение: виртуальные потоки требуют Java 21, используются потоки платформы.");
+                return PLATFORM;
+            }
+            return model;
+        }
+    }
+
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null && THREAD_PER_TASK != null;
+    }
+
+    /** Фабрика потоков с именами {@code prefix-0}, {@code prefix-1}, ... */
+    public ThreadFactory threadFactory(String prefix) {
+        if (this == VIRTUAL) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Не удалось создать виртуальный поток", e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return task -> new Thread(task, prefix + "-" + counter.getAndIncrement());
+    }
+
+    /**
+     * Исполнитель независимых задач: для виртуальных потоков - новый поток на задачу,
+     * для потоков платформы - пул из {@code platformThreads} потоков.
+     */
+    public ExecutorService newTaskExecutor(String prefix, int platformThreads) {
+        if (this == VIRTUAL) {
+            try {
+                return (ExecutorService) THREAD_PER_TASK.invoke(null, threadFactory(prefix));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Не удалось создать исполнитель виртуальных потоков", e);
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), threadFactory(prefix));
+    }
+
+    /** Планировщик фоновых задач хранилища (очистка, снимки, сброс счетчиков). */
+    public ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(threadFactory(name));
+    }
+
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method method(Class<?> owner, String name, Class<?>... parameterTypes) {
+        if (owner == null) {
+            return null;
+        }
+        try {
+            return owner.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.shortener;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Таблица канонических экземпляров оригинальных URL: тысячи ссылок на один популярный
+ * адрес хранят одну строку вместо тысячи копий.
+ * <p>
+ * Таблица слабая: строка остается в ней, пока на нее ссылается хотя бы одна ссылка, и
+ * уходит вместе с последней из них без подсчета ссылок. Доступ разнесен по
+ * {@value #STRIPES} независимым {@link WeakHashMap} под своими мониторами, поэтому создания
+ * ссылок на разные URL не конкурируют. На горячем пути переходов таблица не участвует.
+ */
+final class UrlInterner {
+
+    private static final int STRIPES = 64;
+
+    private final List<WeakHashMap<String, WeakReference<String>>> stripes = new ArrayList<>(STRIPES);
+    private final LongAdder hits = new LongAdder();
+
+    UrlInterner() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new WeakHashMap<>());
+        }
+    }
+
+    /** @return ранее сохраненная строка, равная {@code value}, или сама {@code value} */
+    String intern(String value) {
+        int hash = value.hashCode();
+        WeakHashMap<String, WeakReference<String>> stripe = stripes.get((hash ^ (hash >>> 16)) & (STRIPES - 1));
+        synchronized (stripe) {
+            WeakReference<String> reference = stripe.get(value);
+            String canonical = reference != null ? reference.get() : null;
+            if (canonical != null) {
+                hits.increment();
+                return canonical;
+            }
+            stripe.put(value, new WeakReference<>(value));
+            return value;
+        }
+    }
+
+    /** Сколько раз вместо новой строки была возвращена уже сохраненная. */
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Число различных URL, на которые еще ссылаются ссылки (с точностью до сборки мусора). */
+    int size() {
+        int size = 0;
+        for (WeakHashMap<String, WeakReference<String>> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.shortener;
+
+/**
+ * Проверка URL без создания {@link java.net.URL} и {@link java.net.URI}.
+ * <p>
+ * Принимает абсолютные адреса со схемой {@code http} или {@code https}, непустым хостом
+ * (имя, IPv4 или IPv6 в квадратных скобках), необязательным числовым портом и путем,
+ * запросом и фрагментом из символов, допустимых по RFC 3986, включая {@code %XX}.
+ * Символы вне ASCII допускаются, как и в {@link java.net.URI}, кроме управляющих и пробелов.
+ * Проверка идет одним проходом по строке с таблицей допустимых символов.
+ */
+final class UrlValidator {
+
+    private static final boolean[] HOST = new boolean[128];
+    private static final boolean[] USER_INFO = new boolean[128];
+    private static final boolean[] PATH = new boolean[128];
+
+    static {
+        String unreserved = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-._~";
+        String subDelims = "!$&'()*+,;=";
+        mark(HOST, unreserved + subDelims);
+        mark(USER_INFO, unreserved + subDelims + ":");
+        mark(PATH, unreserved + subDelims + ":@/?");
+    }
+
+    private UrlValidator() {
+    }
+
+    static boolean isValid(String url) {
+        if (url == null) {
+            return false;
+        }
+        int length = url.length();
+        int i;
+        if (url.regionMatches(true, 0, "http://", 0, 7)) {
+            i = 7;
+        } else if (url.regionMatches(true, 0, "https://", 0, 8)) {
+            i = 8;
+        } else {
+            return false;
+        }
+
+        int authorityEnd = i;
+        while (authorityEnd < length) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            authorityEnd++;
+        }
+        if (!isValidAuthority(url, i, authorityEnd)) {
+            return false;
+        }
+
+        boolean fragment = false;
+        for (i = authorityEnd; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '%') {
+                if (!isPercentEncoded(url, i, length)) {
+                    return false;
+                }
+                i += 2;
+            } else if (c == '#') {
+                if (fragment) {
+                    return false;
+                }
+                fragment = true;
+            } else if (!allowed(PATH, c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValidAuthority(String url, int start, int end) {
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            for (int i = start; i < at; i++) {
+                char c = url.charAt(i);
+                if (c == '%') {
+                    if (!isPercentEncoded(url, i, at)) {
+                        return false;
+                    }
+                    i += 2;
+                } else if (!allowed(USER_INFO, c)) {
+                    return false;
+                }
+            }
+            start = at + 1;
+        }
+
+        int hostEnd;
+        if (start < end && url.charAt(start) == '[') {
+            int close = url.indexOf(']', start);
+            if (close < 0 || close >= end || !isIpv6(url, start + 1, close)) {
+                return false;
+            }
+            hostEnd = close + 1;
+        } else {
+            hostEnd = start;
+            while (hostEnd < end && url.charAt(hostEnd) != ':') {
+                char c = url.charAt(hostEnd);
+                if (c == '%') {
+                    if (!isPercentEncoded(url, hostEnd, end)) {
+                        return false;
+                    }
+                    hostEnd += 2;
+                } else if (!allowed(HOST, c)) {
+                    return false;
+                }
+                hostEnd++;
+            }
+            if (hostEnd == start) {
+                return false;
+            }
+        }
+
+        if (hostEnd == end) {
+            return true;
+        }
+        if (url.charAt(hostEnd) != ':') {
+            return false;
+        }
+        // Порт: только цифры, пустой порт допустим, как и в java.net.URI
+        for (int i = hostEnd + 1; i < end; i++) {
+            char c = url.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return end - hostEnd - 1 <= 5;
+    }
+
+    private static boolean isIpv6(String url, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (!(c == ':' || c == '.' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPercentEncoded(String url, int i, int end) {
+        return i + 2 < end && isHex(url.charAt(i + 1)) && isHex(url.charAt(i + 2));
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean allowed(boolean[] table, char c) {
+        if (c < 128) {
+            return table[c];
+        }
+        return !Character.isISOControl(c) && !Character.isSpaceChar(c);
+    }
+
+    private static void mark(boolean[] table, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            table[chars.charAt(i)] = true;
+        }
+    }
+}
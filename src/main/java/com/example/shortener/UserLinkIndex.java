@@ -0,0 +1,133 @@
+package com.example.shortener;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Вторичный индекс владелец → короткие коды его ссылок.
+ * <p>
+ * Коды пользователя хранятся в компактном множестве на массиве {@code long}, поэтому
+ * запросы по владельцу работают за время, пропорциональное числу его ссылок.
+ * Изменения множества выполняются внутри {@link ConcurrentHashMap#compute}, так что
+ * пустые множества удаляются без гонок с параллельным добавлением. Индекс может
+ * ненадолго содержать код уже удаленной ссылки, поэтому вызывающий код проверяет
+ * владельца по основному хранилищу.
+ */
+final class UserLinkIndex {
+
+    private static final long[] NO_CODES = new long[0];
+
+    private final ConcurrentHashMap<String, CodeSet> users = new ConcurrentHashMap<>();
+
+    void add(String userUuid, long code) {
+        users.compute(userUuid, (user, codes) -> {
+            CodeSet set = codes != null ? codes : new CodeSet();
+            set.add(code);
+            return set;
+        });
+    }
+
+    void remove(String userUuid, long code) {
+        users.computeIfPresent(userUuid, (user, codes) -> {
+            codes.remove(code);
+            return codes.isEmpty() ? null : codes;
+        });
+    }
+
+    /** Копия кодов пользователя в произвольном порядке. */
+    long[] codes(String userUuid) {
+        CodeSet codes = users.get(userUuid);
+        return codes != null ? codes.toArray() : NO_CODES;
+    }
+
+    int userCount() {
+        return users.size();
+    }
+
+    /**
+     * Множество ненулевых кодов с открытой адресацией и линейным пробированием.
+     * Удаление сдвигает следующие элементы цепочки назад, поэтому надгробия не нужны.
+     */
+    private static final class CodeSet {
+        private long[] table = new long[4];
+        private int size;
+
+        synchronized void add(long code) {
+            if ((size + 1) * 4 > table.length * 3) {
+                resize(table.length * 2);
+            }
+            if (insert(table, code)) {
+                size++;
+            }
+        }
+
+        synchronized void remove(long code) {
+            int mask = table.length - 1;
+            int slot = slot(code, mask);
+            while (table[slot] != code) {
+                if (table[slot] == 0) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = 0;
+            size--;
+            // Сдвигаем назад элементы, чья цепочка проходила через освободившуюся ячейку
+            int next = (slot + 1) & mask;
+            while (table[next] != 0) {
+                long moved = table[next];
+                int home = slot(moved, mask);
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    table[slot] = moved;
+                    table[next] = 0;
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            if (table.length > 4 && size * 8 < table.length) {
+                resize(table.length / 2);
+            }
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+
+        synchronized long[] toArray() {
+            long[] codes = new long[size];
+            int count = 0;
+            for (long code : table) {
+                if (code != 0) {
+                    codes[count++] = code;
+                }
+            }
+            return codes;
+        }
+
+        private void resize(int capacity) {
+            long[] resized = new long[capacity];
+            for (long code : table) {
+                if (code != 0) {
+                    insert(resized, code);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long code) {
+            int mask = table.length - 1;
+            int slot = slot(code, mask);
+            while (table[slot] != 0) {
+                if (table[slot] == code) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code;
+            return true;
+        }
+
+        private static int slot(long code, int mask) {
+            return (int) ShortCode.hash(code) & mask;
+        }
+    }
+}
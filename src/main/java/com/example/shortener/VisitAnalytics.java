@@ -0,0 +1,272 @@
+package com.example.shortener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Аналитика переходов: поминутные и почасовые ряды по каждой ссылке и самые посещаемые ссылки за окно.
+ * <p>
+ * Переход записывается на горячем пути одним числом (код ссылки и минута) в кольцевой буфер
+ * без блокировок; буферов несколько, поток выбирает свой по идентификатору. Если буфер полон,
+ * событие отбрасывается и учитывается в {@link #getDroppedCount()} - переход никогда не ждет.
+ * Фоновый поток периодически переносит события в {@link VisitCounters} и в наброски
+ * {@link HeavyHitters}: по одному на каждую из 60 минут и 24 часов.
+ */
+public class VisitAnalytics implements AutoCloseable {
+
+    private static final long MILLIS_PER_MINUTE = 60_000;
+    // Событие: код (49 бит вместе с маркером) и минута по модулю 2^15 в старших битах
+    private static final int MINUTE_SHIFT = 49;
+    private static final long CODE_MASK = (1L << MINUTE_SHIFT) - 1;
+    private static final int MINUTE_STAMP_MASK = (1 << (64 - MINUTE_SHIFT)) - 1;
+
+    private final LongSupplier clockMillis;
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder dropped = new LongAdder();
+    private final int sketchSize;
+    private final ScheduledExecutorService scheduler;
+
+    // Состояние ниже меняется только под монитором this
+    private final VisitCounters counters;
+    private final HeavyHitters[] minuteSketches = new HeavyHitters[VisitCounters.MINUTES];
+    private final int[] minuteSketchStamps = new int[VisitCounters.MINUTES];
+    private final HeavyHitters[] hourSketches = new HeavyHitters[VisitCounters.HOURS];
+    private final int[] hourSketchStamps = new int[VisitCounters.HOURS];
+    private long processed;
+
+    /**
+     * @param bufferCapacity      сколько событий суммарно ждут переноса, прежде чем новые начнут отбрасываться
+     * @param maxLinks            для скольких ссылок хранить ряды
+     * @param sketchSize          число счетчиков в наброске одной минуты или часа
+     * @param drainIntervalMillis как часто переносить события из буферов
+     */
+    public VisitAnalytics(int bufferCapacity, int maxLinks, int sketchSize, long drainIntervalMillis) {
+        this(bufferCapacity, maxLinks, sketchSize, System::currentTimeMillis);
+        scheduler.scheduleWithFixedDelay(this::drain, drainIntervalMillis, drainIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** События переносятся только вызовами {@link #drain()} и запросами. */
+    VisitAnalytics(int bufferCapacity, int maxLinks, int sketchSize, LongSupplier clockMillis) {
+        this.clockMillis = clockMillis;
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        int stripeCapacity = Integer.highestOneBit(Math.max(2, bufferCapacity / stripeCount) * 2 - 1);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        this.stripeMask = stripeCount - 1;
+        this.sketchSize = sketchSize;
+        this.counters = new VisitCounters(maxLinks);
+        Arrays.fill(minuteSketchStamps, Integer.MIN_VALUE);
+        Arrays.fill(hourSketchStamps, Integer.MIN_VALUE);
+        this.scheduler = ThreadingModel.configured().newScheduler("analytics-drain");
+    }
+
+    /** Записывает переход по ссылке с кодом {@code code}. Не блокируется и не выделяет память. */
+    void record(long code) {
+        long minute = clockMillis.getAsLong() / MILLIS_PER_MINUTE;
+        long event = code | ((minute & MINUTE_STAMP_MASK) << MINUTE_SHIFT);
+        if (!stripes[(int) Thread.currentThread().getId() & stripeMask].offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    /** Записывает переход по ссылке; некорректный код игнорируется. */
+    public void record(String shortUrl) {
+        long code = ShortCode.encode(shortUrl);
+        if (code != ShortCode.INVALID) {
+            record(code);
+        }
+    }
+
+    /** Переносит накопленные события в счетчики. */
+    public synchronized void drain() {
+        int now = currentMinute();
+        for (Stripe stripe : stripes) {
+            for (int i = 0; i < stripe.slots.length(); i++) {
+                long event = stripe.poll();
+                if (event == 0) {
+                    break;
+                }
+                apply(event & CODE_MASK, now - ((now - (int) (event >>> MINUTE_SHIFT)) & MINUTE_STAMP_MASK), now);
+            }
+        }
+    }
+
+    /** Переходы по ссылке за последние 60 минут, по минутам. */
+    public VisitSeries minuteSeries(String shortUrl) {
+        int[] counts;
+        int now;
+        synchronized (this) {
+            drain();
+            now = currentMinute();
+            counts = counters.minutes(ShortCode.encode(shortUrl), now);
+        }
+        return new VisitSeries(shortUrl, (now - VisitCounters.MINUTES + 1) * MILLIS_PER_MINUTE, MILLIS_PER_MINUTE, counts);
+    }
+
+    /** Переходы по ссылке за последние 24 часа, по часам. */
+    public VisitSeries hourSeries(String shortUrl) {
+        int[] counts;
+        int nowHour;
+        synchronized (this) {
+            drain();
+            int now = currentMinute();
+            nowHour = now / VisitCounters.MINUTES;
+            counts = counters.hours(ShortCode.encode(shortUrl), now);
+        }
+        long hourMillis = VisitCounters.MINUTES * MILLIS_PER_MINUTE;
+        return new VisitSeries(shortUrl, (nowHour - VisitCounters.HOURS + 1) * hourMillis, hourMillis, counts);
+    }
+
+    /**
+     * Самые посещаемые ссылки за последние {@code windowMinutes} минут, по убыванию переходов.
+     * Окно до часа учитывается с точностью до минуты, длиннее - до часа, но не больше суток.
+     */
+    public synchronized List<HotLink> topLinks(int k, int windowMinutes) {
+        drain();
+        int now = currentMinute();
+        // Код -> сумма оценок, сумма погрешностей, сумма absentBound наборов, где код есть
+        Map<Long, long[]> merged = new HashMap<>();
+        long absentTotal = 0;
+        if (windowMinutes <= VisitCounters.MINUTES) {
+            absentTotal = merge(minuteSketches, minuteSketchStamps, now - Math.max(1, windowMinutes) + 1, now, merged);
+        } else {
+            int hours = Math.min(VisitCounters.HOURS, (windowMinutes + VisitCounters.MINUTES - 1) / VisitCounters.MINUTES);
+            int nowHour = now / VisitCounters.MINUTES;
+            absentTotal = merge(hourSketches, hourSketchStamps, nowHour - hours + 1, nowHour, merged);
+        }
+        List<HotLink> top = new ArrayList<>(merged.size());
+        for (Map.Entry<Long, long[]> entry : merged.entrySet()) {
+            long[] sums = entry.getValue();
+            // В наборах, где кода нет, у него могло быть до absentBound переходов
+            long missing = absentTotal - sums[2];
+            top.add(new HotLink(ShortCode.decode(entry.getKey()), sums[0] + missing, sums[1] + missing));
+        }
+        top.sort((a, b) -> Long.compare(b.getVisits(), a.getVisits()));
+        return top.size() > k ? new ArrayList<>(top.subList(0, k)) : top;
+    }
+
+    /** Сколько переходов отброшено из-за переполнения буферов. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** Для скольких ссылок хранятся ряды. */
+    public synchronized int getTrackedLinks() {
+        return counters.size();
+    }
+
+    /** Сколько переходов перенесено в счетчики. */
+    public synchronized long getProcessedCount() {
+        return processed;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(long code, int minute, int now) {
+        processed++;
+        counters.add(code, minute, now);
+        offer(minuteSketches, minuteSketchStamps, minute, code);
+        offer(hourSketches, hourSketchStamps, minute / VisitCounters.MINUTES, code);
+    }
+
+    private void offer(HeavyHitters[] sketches, int[] stamps, int bucket, long code) {
+        int i = bucket % sketches.length;
+        if (stamps[i] != bucket) {
+            if (stamps[i] > bucket) {
+                // Набор уже отдан более позднему интервалу
+                return;
+            }
+            if (sketches[i] == null) {
+                sketches[i] = new HeavyHitters(sketchSize);
+            } else {
+                sketches[i].clear();
+            }
+            stamps[i] = bucket;
+        }
+        sketches[i].offer(code);
+    }
+
+    private static long merge(HeavyHitters[] sketches, int[] stamps, int from, int to, Map<Long, long[]> merged) {
+        long absentTotal = 0;
+        for (int i = 0; i < sketches.length; i++) {
+            HeavyHitters sketch = sketches[i];
+            if (sketch == null || stamps[i] < from || stamps[i] > to) {
+                continue;
+            }
+            long absent = sketch.absentBound();
+            absentTotal += absent;
+            for (int id = 0; id < sketch.size(); id++) {
+                long[] sums = merged.computeIfAbsent(sketch.keyAt(id), key -> new long[3]);
+                sums[0] += sketch.countAt(id);
+                sums[1] += sketch.errorAt(id);
+                sums[2] += absent;
+            }
+        }
+        return absentTotal;
+    }
+
+    private int currentMinute() {
+        return (int) (clockMillis.getAsLong() / MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * Кольцевой буфер со многими писателями и одним читателем. Писатель занимает номер
+     * сравнением с обменом и публикует событие записью в ячейку; читатель забирает
+     * опубликованные события по порядку и обнуляет ячейки.
+     */
+    private static final class Stripe {
+        final AtomicLongArray slots;
+        final int mask;
+        final AtomicLong head = new AtomicLong();
+        volatile long tail;
+
+        Stripe(int capacity) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(long event) {
+            long h;
+            do {
+                h = head.get();
+                if (h - tail > mask) {
+                    return false;
+                }
+            } while (!head.compareAndSet(h, h + 1));
+            slots.lazySet((int) h & mask, event);
+            return true;
+        }
+
+        /** @return событие или 0, если следующее еще не опубликовано */
+        long poll() {
+            long t = tail;
+            int i = (int) t & mask;
+            long event = slots.get(i);
+            if (event != 0) {
+                slots.lazySet(i, 0);
+                tail = t + 1;
+            }
+            return event;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.shortener;
+
+/**
+ * Скользящие счетчики переходов по каждой ссылке: 60 поминутных и 24 почасовых корзины.
+ * <p>
+ * Все ссылки лежат в плоских массивах, индексируемых номером ячейки таблицы с открытой
+ * адресацией по коду: корзины ячейки {@code slot} занимают {@code minuteCounts[slot * 60 ...]}
+ * и {@code hourCounts[slot * 24 ...]}. Корзины одной ссылки обнуляются лениво, когда время ее
+ * последнего перехода сдвигается вперед. Ссылки без переходов за сутки освобождают ячейки при
+ * перестройке таблицы; если таблица заполнена живыми ссылками, новые ссылки не учитываются.
+ * Не потокобезопасен.
+ */
+final class VisitCounters {
+
+    static final int MINUTES = 60;
+    static final int HOURS = 24;
+
+    private static final int INITIAL_TABLE_SIZE = 1024;
+
+    private final int maxLinks;
+    private final int maxTableSize;
+    private long[] codes;
+    // Минута последнего учтенного перехода по ссылке
+    private int[] lastMinute;
+    private int[] minuteCounts;
+    private int[] hourCounts;
+    private int mask;
+    private int size;
+    private int lastPurgeMinute = Integer.MIN_VALUE;
+    private long untracked;
+
+    VisitCounters(int maxLinks) {
+        if (maxLinks <= 0) {
+            throw new IllegalArgumentException("Число ссылок должно быть положительным");
+        }
+        this.maxLinks = maxLinks;
+        this.maxTableSize = Math.max(INITIAL_TABLE_SIZE, Integer.highestOneBit((int) Math.min(maxLinks * 4L / 3, 1 << 29)) << 1);
+        allocate(Math.min(INITIAL_TABLE_SIZE, maxTableSize));
+    }
+
+    /**
+     * Учитывает переход в минуту {@code minute}.
+     *
+     * @param now текущая минута: переходы старше суток не учитываются
+     */
+    void add(long code, int minute, int now) {
+        if (minute <= now - MINUTES * HOURS) {
+            return;
+        }
+        int slot = slotFor(code, minute, now);
+        if (slot < 0) {
+            untracked++;
+            return;
+        }
+        int last = lastMinute[slot];
+        if (minute > last) {
+            advance(slot, last, minute);
+            lastMinute[slot] = minute;
+            last = minute;
+        }
+        if (minute > last - MINUTES) {
+            minuteCounts[slot * MINUTES + minute % MINUTES]++;
+        }
+        int hour = minute / MINUTES;
+        if (hour > last / MINUTES - HOURS) {
+            hourCounts[slot * HOURS + hour % HOURS]++;
+        }
+    }
+
+    /** Переходы за последние 60 минут, от самой старой минуты к текущей. */
+    int[] minutes(long code, int now) {
+        int[] result = new int[MINUTES];
+        int slot = find(code);
+        if (slot < 0) {
+            return result;
+        }
+        int last = lastMinute[slot];
+        for (int i = 0; i < MINUTES; i++) {
+            int minute = now - MINUTES + 1 + i;
+            if (minute <= last && minute > last - MINUTES) {
+                result[i] = minuteCounts[slot * MINUTES + minute % MINUTES];
+            }
+        }
+        return result;
+    }
+
+    /** Переходы за последние 24 часа, от самого старого часа к текущему. */
+    int[] hours(long code, int now) {
+        int[] result = new int[HOURS];
+        int slot = find(code);
+        if (slot < 0) {
+            return result;
+        }
+        int lastHour = lastMinute[slot] / MINUTES;
+        int nowHour = now / MINUTES;
+        for (int i = 0; i < HOURS; i++) {
+            int hour = nowHour - HOURS + 1 + i;
+            if (hour <= lastHour && hour > lastHour - HOURS) {
+                result[i] = hourCounts[slot * HOURS + hour % HOURS];
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Сколько переходов не учтено, потому что таблица ссылок заполнена. */
+    long getUntrackedCount() {
+        return untracked;
+    }
+
+    // Корзины между прошлым и новым переходом относятся к минутам и часам без переходов
+    private void advance(int slot, int last, int minute) {
+        for (int m = Math.max(last + 1, minute - MINUTES + 1); m <= minute; m++) {
+            minuteCounts[slot * MINUTES + m % MINUTES] = 0;
+        }
+        int hour = minute / MINUTES;
+        for (int h = Math.max(last / MINUTES + 1, hour - HOURS + 1); h <= hour; h++) {
+            hourCounts[slot * HOURS + h % HOURS] = 0;
+        }
+    }
+
+    private int find(long code) {
+        int i = (int) ShortCode.hash(code) & mask;
+        while (true) {
+            long c = codes[i];
+            if (c == code) {
+                return i;
+            }
+            if (c == 0) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private int slotFor(long code, int minute, int now) {
+        int slot = find(code);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size >= Math.min(maxLinks, codes.length / 4 * 3)) {
+            if (codes.length < maxTableSize) {
+                rebuild(codes.length * 2, now);
+            } else if (lastPurgeMinute != now) {
+                // Перестройка без роста проходит по всей таблице, поэтому не чаще раза в минуту
+                lastPurgeMinute = now;
+                rebuild(codes.length, now);
+            }
+            if (size >= Math.min(maxLinks, codes.length / 4 * 3)) {
+                return -1;
+            }
+        }
+        slot = (int) ShortCode.hash(code) & mask;
+        while (codes[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        codes[slot] = code;
+        lastMinute[slot] = minute;
+        size++;
+        return slot;
+    }
+
+    private void rebuild(int tableSize, int now) {
+        long[] oldCodes = codes;
+        int[] oldLastMinute = lastMinute;
+        int[] oldMinuteCounts = minuteCounts;
+        int[] oldHourCounts = hourCounts;
+        allocate(tableSize);
+        for (int old = 0; old < oldCodes.length; old++) {
+            long code = oldCodes[old];
+            if (code == 0 || oldLastMinute[old] <= now - MINUTES * HOURS) {
+                continue;
+            }
+            int slot = (int) ShortCode.hash(code) & mask;
+            while (codes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            codes[slot] = code;
+            lastMinute[slot] = oldLastMinute[old];
+            System.arraycopy(oldMinuteCounts, old * MINUTES, minuteCounts, slot * MINUTES, MINUTES);
+            System.arraycopy(oldHourCounts, old * HOURS, hourCounts, slot * HOURS, HOURS);
+            size++;
+        }
+    }
+
+    private void allocate(int tableSize) {
+        codes = new long[tableSize];
+        lastMinute = new int[tableSize];
+        minuteCounts = new int[tableSize * MINUTES];
+        hourCounts = new int[tableSize * HOURS];
+        mask = tableSize - 1;
+        size = 0;
+    }
+}
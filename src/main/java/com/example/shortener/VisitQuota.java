@@ -0,0 +1,193 @@
+package com.example.shortener;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Остаток лимита переходов одной ссылки, разделенный между потоками.
+ * <p>
+ * Пока к ссылке обращается один поток, используется единственная ячейка. При первой
+ * конкуренции за CAS создаются дополнительные ячейки (по аналогии с {@code LongAdder}),
+ * каждая в своей строке кэша процессора. Ячейка получает порцию переходов из общего
+ * бюджета и расходует ее без обращения к общим данным; так лимит не может быть
+ * превышен, а потоки не конкурируют за один счетчик.
+ * <p>
+ * Ячейка упакована в {@code long}: старший бит - признак закрытия, биты 32-62 -
+ * число выданных переходов, младшие 32 бита - остаток порции.
+ */
+final class VisitQuota {
+
+    private static final long CLOSED = 1L << 63;
+    private static final long USED_ONE = 1L << 32;
+    private static final long USED_MASK = 0x7FFFFFFFL;
+    private static final long LOCAL_MASK = 0xFFFFFFFFL;
+    // 8 long на ячейку, чтобы соседние ячейки не делили строку кэша
+    private static final int STRIDE = 8;
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    private static final int MAX_CHUNK = 64;
+
+    private static final AtomicReferenceFieldUpdater<VisitQuota, AtomicLongArray> CELLS =
+            AtomicReferenceFieldUpdater.newUpdater(VisitQuota.class, AtomicLongArray.class, "cells");
+
+    private static final int ACQUIRED = 0;
+    private static final int EMPTY = 1;
+    private static final int REFUSED = 2;
+    private static final int CONTENDED = 3;
+
+    private final AtomicInteger budget;
+    private final int chunk;
+    private final AtomicLongArray base = new AtomicLongArray(1);
+    private volatile AtomicLongArray cells;
+
+    VisitQuota(int quota) {
+        this.budget = new AtomicInteger(quota);
+        this.chunk = Math.max(1, Math.min(MAX_CHUNK, quota / (STRIPES * 4)));
+    }
+
+    /** Выдает один переход, если он еще есть в остатке и квота не закрыта. */
+    boolean tryAcquire() {
+        AtomicLongArray striped = cells;
+        if (striped == null) {
+            int result = acquireOrRefill(base, 0);
+            if (result == ACQUIRED || result == REFUSED) {
+                return result == ACQUIRED;
+            }
+            if (result == EMPTY) {
+                // Ячейки могли появиться параллельно и хранить остатки порций
+                striped = cells;
+                return striped != null && steal(striped);
+            }
+            striped = expand();
+        }
+        int index = cellIndex();
+        while (true) {
+            int result = acquireOrRefill(striped, index);
+            if (result == ACQUIRED) {
+                return true;
+            }
+            if (result == REFUSED) {
+                return false;
+            }
+            if (result == EMPTY) {
+                return steal(striped);
+            }
+        }
+    }
+
+    /** Запрещает выдачу новых переходов; уже выданные остаются учтенными в {@link #used()}. */
+    void close() {
+        budget.set(0);
+        closeCell(base, 0);
+        AtomicLongArray striped = cells;
+        if (striped != null) {
+            for (int i = 0; i < striped.length(); i += STRIDE) {
+                closeCell(striped, i);
+            }
+        }
+    }
+
+    /** Сколько переходов выдано за все время. После {@link #close()} значение окончательное. */
+    int used() {
+        long total = (base.get(0) >>> 32) & USED_MASK;
+        AtomicLongArray striped = cells;
+        if (striped != null) {
+            for (int i = 0; i < striped.length(); i += STRIDE) {
+                total += (striped.get(i) >>> 32) & USED_MASK;
+            }
+        }
+        return (int) total;
+    }
+
+    private int acquireOrRefill(AtomicLongArray array, int index) {
+        int result = acquire(array, index);
+        if (result != EMPTY) {
+            return result;
+        }
+        int portion = takeFromBudget();
+        if (portion == 0) {
+            return EMPTY;
+        }
+        while (true) {
+            long state = array.get(index);
+            if ((state & CLOSED) != 0) {
+                return REFUSED;
+            }
+            // Один переход из порции сразу выдается вызывающему потоку
+            if (array.compareAndSet(index, state, state + USED_ONE + portion - 1)) {
+                return ACQUIRED;
+            }
+        }
+    }
+
+    private static int acquire(AtomicLongArray array, int index) {
+        long state = array.get(index);
+        if ((state & CLOSED) != 0) {
+            return REFUSED;
+        }
+        if ((state & LOCAL_MASK) == 0) {
+            return EMPTY;
+        }
+        return array.compareAndSet(index, state, state + USED_ONE - 1) ? ACQUIRED : CONTENDED;
+    }
+
+    private int takeFromBudget() {
+        while (true) {
+            int available = budget.get();
+            if (available == 0) {
+                return 0;
+            }
+            int portion = Math.min(chunk, available);
+            if (budget.compareAndSet(available, available - portion)) {
+                return portion;
+            }
+        }
+    }
+
+    // Общий бюджет исчерпан: забираем переход из порции другой ячейки, чтобы
+    // остатки, розданные потокам, не терялись, пока хранилище считает лимит не исчерпанным
+    private boolean steal(AtomicLongArray striped) {
+        if (stealFrom(base, 0)) {
+            return true;
+        }
+        for (int i = 0; i < striped.length(); i += STRIDE) {
+            if (stealFrom(striped, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean stealFrom(AtomicLongArray array, int index) {
+        while (true) {
+            int result = acquire(array, index);
+            if (result == ACQUIRED) {
+                return true;
+            }
+            if (result != CONTENDED) {
+                return false;
+            }
+        }
+    }
+
+    private AtomicLongArray expand() {
+        AtomicLongArray created = new AtomicLongArray(STRIPES * STRIDE);
+        if (!CELLS.compareAndSet(this, null, created)) {
+            return cells;
+        }
+        return created;
+    }
+
+    private static void closeCell(AtomicLongArray array, int index) {
+        long state;
+        do {
+            state = array.get(index);
+        } while ((state & CLOSED) == 0 && !array.compareAndSet(index, state, state | CLOSED));
+    }
+
+    private static int cellIndex() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id * 0x9E3779B97F4A7C15L >>> 32);
+        return (hash & (STRIPES - 1)) * STRIDE;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.shortener;
+
+import java.util.Arrays;
+
+/** Переходы по ссылке в последовательных интервалах одинаковой длины, от самого старого. */
+public class VisitSeries {
+
+    private final String shortUrl;
+    private final long startMillis;
+    private final long stepMillis;
+    private final int[] counts;
+
+    public VisitSeries(String shortUrl, long startMillis, long stepMillis, int[] counts) {
+        this.shortUrl = shortUrl;
+        this.startMillis = startMillis;
+        this.stepMillis = stepMillis;
+        this.counts = counts;
+    }
+
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    /** Начало первого интервала в миллисекундах эпохи. */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getStepMillis() {
+        return stepMillis;
+    }
+
+    public int[] getCounts() {
+        return counts.clone();
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return shortUrl + " " + Arrays.toString(counts);
+    }
+}
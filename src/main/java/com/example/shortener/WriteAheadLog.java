@@ -0,0 +1,402 @@
+package com.example.shortener;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал предзаписи, разбитый на сегменты {@code wal-<номер>.log}.
+ * <p>
+ * Записи ставятся в очередь, а единственный поток записи забирает их пачками,
+ * пишет одной операцией через {@link FileChannel} и, в режиме {@link Durability#SYNC},
+ * выполняет один {@code fsync} на всю пачку (group commit).
+ * Каждая запись хранится в кадре {@code [длина][CRC32][данные]}, поэтому оборванный
+ * при сбое хвост сегмента распознается и отбрасывается при чтении.
+ * <p>
+ * После ошибки ввода-вывода или {@link #close()} поток записи останавливается: все ожидающие
+ * и последующие операции завершаются исключением, а не ждут вечно.
+ */
+class WriteAheadLog implements AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_BATCH = 4096;
+    static final int MAX_RECORD_BYTES = 1 << 20;
+    private static final long ASYNC_FORCE_INTERVAL_MILLIS = 1000;
+
+    private final Path directory;
+    private final Durability durability;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+    private final CRC32 crc = new CRC32();
+    private final Thread writer;
+    private FileChannel channel;
+    private long segment;
+    private long lastForceMillis;
+    private volatile IOException failure;
+    // Запись в очередь идет под блокировкой чтения, закрытие - под блокировкой записи,
+    // поэтому STOP всегда оказывается последним элементом очереди
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+    private CompletableFuture<Long> stopped;
+
+    WriteAheadLog(Path directory, Durability durability, long firstSegment) throws IOException {
+        this.directory = directory;
+        this.durability = durability;
+        this.segment = firstSegment;
+        this.channel = openSegment(firstSegment);
+        this.writer = new Thread(this::writeLoop, "wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    Durability durability() {
+        return durability;
+    }
+
+    /**
+     * Добавляет запись в журнал.
+     *
+     * @param await дождаться ли попадания записи на диск (имеет смысл в режиме SYNC)
+     * @throws IllegalArgumentException если запись длиннее {@value #MAX_RECORD_BYTES} байт:
+     *                                  при чтении такой кадр был бы принят за оборванный хвост
+     */
+    void append(byte[] record, boolean await) {
+        if (record.length > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Запись журнала длиннее " + MAX_RECORD_BYTES + " байт: " + record.length);
+        }
+        if (await && durability == Durability.SYNC) {
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            enqueue(new Entry(Entry.RECORD, record, done));
+            join(done);
+        } else {
+            enqueue(new Entry(Entry.RECORD, record, null));
+        }
+    }
+
+    /**
+     * Дожидается попадания на диск всех ранее добавленных записей (в режиме SYNC).
+     * Позволяет добавить пачку записей без ожидания и оплатить один {@code fsync} на всю пачку.
+     */
+    void sync() {
+        if (durability == Durability.SYNC) {
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            enqueue(new Entry(Entry.SYNC, null, done));
+            join(done);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый. Все записи, добавленные до вызова,
+     * окажутся в прежних сегментах, все последующие - в новом.
+     *
+     * @return future с номером нового сегмента
+     */
+    CompletableFuture<Long> rotate() {
+        CompletableFuture<Long> done = new CompletableFuture<>();
+        enqueue(new Entry(Entry.ROTATE, null, done));
+        return done;
+    }
+
+    void deleteSegmentsBefore(long firstKept) throws IOException {
+        for (long number : listSegments(directory)) {
+            if (number < firstKept) {
+                Files.deleteIfExists(segmentPath(directory, number));
+            }
+        }
+    }
+
+    /**
+     * Дописывает все ранее добавленные записи и останавливает поток записи. Последующие
+     * операции завершаются {@link IllegalStateException}. Повторный вызов ждет той же остановки.
+     */
+    @Override
+    public void close() {
+        CompletableFuture<Long> done;
+        closeLock.writeLock().lock();
+        try {
+            if (stopped == null) {
+                closed = true;
+                stopped = new CompletableFuture<>();
+                queue.add(new Entry(Entry.STOP, null, stopped));
+                if (failure != null) {
+                    failPending();
+                }
+            }
+            done = stopped;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            // Поток записи остановлен ошибкой, о которой уже сообщено
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new IllegalStateException("Журнал недоступен для записи", failure);
+        }
+    }
+
+    // Запись, добавленная одновременно с остановкой потока записи из-за ошибки, завершается
+    // здесь же: поток выставляет failure до того, как вычерпывает очередь в последний раз
+    private void enqueue(Entry entry) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Журнал закрыт");
+            }
+            checkFailure();
+            queue.add(entry);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        if (failure != null) {
+            failPending();
+        }
+    }
+
+    private void join(CompletableFuture<Long> done) {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Журнал недоступен для записи", e.getCause());
+        }
+    }
+
+    private void fail(IOException e, List<Entry> batch, List<CompletableFuture<Long>> waiters) {
+        failure = e;
+        for (Entry entry : batch) {
+            if (entry.done != null) {
+                entry.done.completeExceptionally(e);
+            }
+        }
+        for (CompletableFuture<Long> waiter : waiters) {
+            waiter.completeExceptionally(e);
+        }
+        waiters.clear();
+        failPending();
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Канал уже неисправен
+        }
+    }
+
+    private void failPending() {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            if (entry.done != null) {
+                entry.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        List<CompletableFuture<Long>> waiters = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (Entry entry : batch) {
+                    switch (entry.kind) {
+                        case Entry.RECORD:
+                            put(entry.record);
+                            if (entry.done != null) {
+                                waiters.add(entry.done);
+                            }
+                            break;
+                        case Entry.SYNC:
+                            waiters.add(entry.done);
+                            break;
+                        case Entry.ROTATE:
+                            flush(true);
+                            channel.close();
+                            channel = openSegment(++segment);
+                            entry.done.complete(segment);
+                            break;
+                        default:
+                            flush(true);
+                            channel.close();
+                            complete(waiters);
+                            entry.done.complete(segment);
+                            return;
+                    }
+                }
+                flush(durability == Durability.SYNC);
+                complete(waiters);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new InterruptedIOException("Поток записи журнала прерван"), batch, waiters);
+                return;
+            } catch (IOException e) {
+                System.err.println("Ошибка записи журнала: " + e.getMessage());
+                fail(e, batch, waiters);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void put(byte[] record) throws IOException {
+        if (buffer.remaining() < record.length + 8) {
+            writeBuffer();
+        }
+        crc.reset();
+        crc.update(record);
+        if (record.length + 8 > buffer.capacity()) {
+            ByteBuffer frame = ByteBuffer.allocate(record.length + 8);
+            frame.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            return;
+        }
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record);
+    }
+
+    private void flush(boolean force) throws IOException {
+        writeBuffer();
+        long now = System.currentTimeMillis();
+        if (force || now - lastForceMillis >= ASYNC_FORCE_INTERVAL_MILLIS) {
+            channel.force(false);
+            lastForceMillis = now;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void complete(List<CompletableFuture<Long>> waiters) {
+        for (CompletableFuture<Long> waiter : waiters) {
+            waiter.complete(null);
+        }
+        waiters.clear();
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentPath(directory, number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static Path segmentPath(Path directory, long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /** Номера существующих сегментов по возрастанию. */
+    static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * Читает записи сегмента по порядку. Чтение останавливается на первом
+     * неполном или поврежденном кадре - это оборванный при сбое хвост.
+     *
+     * @return false, если сегмент закончился поврежденным кадром
+     */
+    static boolean readSegment(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            // Буфер держим в режиме чтения и дочитываем файл, только когда данных не хватает
+            ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+            buf.flip();
+            CRC32 checksum = new CRC32();
+            while (true) {
+                buf = ensure(in, buf, 8);
+                if (buf.remaining() < 8) {
+                    return !buf.hasRemaining();
+                }
+                int length = buf.getInt();
+                int expectedCrc = buf.getInt();
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    return false;
+                }
+                buf = ensure(in, buf, length);
+                if (buf.remaining() < length) {
+                    return false;
+                }
+                ByteBuffer record = buf.slice();
+                record.limit(length);
+                checksum.reset();
+                checksum.update(record.duplicate());
+                if ((int) checksum.getValue() != expectedCrc) {
+                    return false;
+                }
+                consumer.accept(record);
+                buf.position(buf.position() + length);
+            }
+        }
+    }
+
+    /**
+     * Дочитывает файл, пока в буфере не окажется хотя бы {@code bytes} непрочитанных байт
+     * или не кончится файл. Возвращает буфер в режиме чтения, при необходимости увеличенный.
+     */
+    private static ByteBuffer ensure(FileChannel in, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() >= bytes) {
+            return buf;
+        }
+        if (bytes > buf.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(bytes);
+            bigger.put(buf);
+            buf = bigger;
+        } else {
+            buf.compact();
+        }
+        while (buf.position() < bytes) {
+            if (in.read(buf) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static final class Entry {
+        static final int RECORD = 0;
+        static final int ROTATE = 1;
+        static final int STOP = 2;
+        static final int SYNC = 3;
+
+        final int kind;
+        final byte[] record;
+        final CompletableFuture<Long> done;
+
+        Entry(int kind, byte[] record, CompletableFuture<Long> done) {
+            this.kind = kind;
+            this.record = record;
+            this.done = done;
+        }
+    }
+}
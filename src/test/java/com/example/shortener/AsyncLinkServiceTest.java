@@ -0,0 +1,62 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AsyncLinkServiceTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+
+    @Test
+    void adapter_ShouldRunOperationsOnExecutor() {
+        ExecutorService executor = ThreadingModel.PLATFORM.newTaskExecutor("async-test", 4);
+        try (AsyncLinkService service = AsyncLinkService.adapt(new LinkServiceImpl(), executor)) {
+            Link link = service.create(testUrl, testUserUuid, 100).join();
+            List<CompletableFuture<?>> visits = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                visits.add(service.getOriginalUrlAndRegisterVisit(link.getShortUrl()));
+            }
+            CompletableFuture.allOf(visits.toArray(new CompletableFuture[0])).join();
+
+            assertEquals(100, service.getByShortUrl(link.getShortUrl()).join().orElseThrow().getVisitCount());
+            assertEquals(1, service.deleteAllByUser(testUserUuid).join());
+            assertTrue(service.listByUser(testUserUuid, 0, 10).join().isEmpty());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void adapter_ShouldCompleteExceptionally_WhenStoreFails() {
+        ExecutorService executor = ThreadingModel.PLATFORM.newTaskExecutor("async-test", 1);
+        try (AsyncLinkService service = AsyncLinkService.adapt(new LinkServiceImpl(), executor)) {
+            CompletableFuture<Link> future = service.create(null, testUserUuid, 10);
+
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertNotNull(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void virtualThreads_ShouldRunTasks_WhenSupported() throws Exception {
+        assumeTrue(ThreadingModel.isVirtualSupported(), "Виртуальные потоки требуют Java 21");
+        ExecutorService executor = ThreadingModel.VIRTUAL.newTaskExecutor("virtual-test", 0);
+        try {
+            Object isVirtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get();
+            assertEquals(Boolean.TRUE, isVirtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
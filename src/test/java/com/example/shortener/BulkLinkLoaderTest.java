@@ -0,0 +1,90 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkLinkLoaderTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final Clock clock = Clock.fixed(Instant.parse("2025-11-04T10:00:00Z"), ZoneId.of("UTC"));
+
+    @Test
+    void exportAndLoad_ShouldKeepCodesAndVisitCounts() throws Exception {
+        for (LinkRecordFormat format : LinkRecordFormat.values()) {
+            try (LinkServiceImpl source = new LinkServiceImpl(clock);
+                 LinkServiceImpl target = new LinkServiceImpl(clock)) {
+                for (int i = 0; i < 250; i++) {
+                    Link link = source.create("https://example.com/page?id=" + i + "&tags=a,b", testUserUuid, 10);
+                    for (int v = 0; v < i % 5; v++) {
+                        source.resolveAndRegisterVisit(link.getShortUrl());
+                    }
+                }
+                StringWriter output = new StringWriter();
+                assertEquals(250, new BulkLinkExporter(source, clock).export(output, format));
+
+                BulkLinkLoader loader = new BulkLinkLoader(target, 4, 16, clock);
+                BulkLinkLoader.Report report = loader.load(
+                        new BufferedReader(new StringReader(output.toString())), format, null, null);
+
+                assertEquals(250, report.getRead(), format.name());
+                assertEquals(250, report.getImported(), format.name());
+                source.forEachLink(link -> {
+                    Link copy = target.lookup(link.getShortUrl());
+                    assertNotNull(copy, format.name());
+                    assertEquals(link.getOriginalUrl(), copy.getOriginalUrl());
+                    assertEquals(link.getVisitCount(), copy.getVisitCount());
+                    assertEquals(link.getExpiresAtMillis(), copy.getExpiresAtMillis());
+                });
+            }
+        }
+    }
+
+    @Test
+    void load_ShouldReportRejectedLines() throws Exception {
+        try (LinkServiceImpl target = new LinkServiceImpl(clock)) {
+            String existing = target.create("https://example.com", testUserUuid, 10).getShortUrl();
+            String input = "short_url,original_url,user_uuid\n"
+                    + "AbcDef12,https://example.com/ok," + testUserUuid + "\n"
+                    + "AbcDef13,ftp://example.com," + testUserUuid + "\n"
+                    + "bad!code,https://example.com," + testUserUuid + "\n"
+                    + existing + ",https://example.com/taken," + testUserUuid + "\n"
+                    + "AbcDef14,\"https://example.com/unterminated\n";
+            StringWriter rejects = new StringWriter();
+
+            BulkLinkLoader.Report report = new BulkLinkLoader(target, 2, 2, clock)
+                    .load(new BufferedReader(new StringReader(input)), LinkRecordFormat.CSV, rejects, null);
+
+            assertEquals(5, report.getRead());
+            assertEquals(1, report.getImported());
+            assertEquals(4, report.getRejected());
+            assertEquals("https://example.com/ok", target.lookup("AbcDef12").getOriginalUrl());
+            assertEquals("https://example.com", target.lookup(existing).getOriginalUrl());
+            String[] lines = rejects.toString().split(System.lineSeparator());
+            assertEquals(4, lines.length);
+            assertTrue(rejects.toString().contains("3\tНевалидный URL"));
+            assertTrue(rejects.toString().contains("5\tКод уже занят\t" + existing + ",https://example.com/taken"));
+        }
+    }
+
+    @Test
+    void urlValidator_ShouldAcceptOnlyWellFormedHttpUrls() {
+        assertTrue(UrlValidator.isValid("https://example.com"));
+        assertTrue(UrlValidator.isValid("http://user@example.com:8080/path?q=1#frag"));
+        assertTrue(UrlValidator.isValid("https://[::1]/a%20b"));
+        assertTrue(UrlValidator.isValid("https://пример.рф/путь"));
+        assertFalse(UrlValidator.isValid("ftp://example.com"));
+        assertFalse(UrlValidator.isValid("https://"));
+        assertFalse(UrlValidator.isValid("https://example.com:123456"));
+        assertFalse(UrlValidator.isValid("https://example.com/a b"));
+        assertFalse(UrlValidator.isValid("https://example.com/%zz"));
+        assertFalse(UrlValidator.isValid("example.com"));
+    }
+}
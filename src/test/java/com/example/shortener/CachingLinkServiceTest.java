@@ -0,0 +1,154 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingLinkServiceTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+    private final Clock clock = Clock.fixed(Instant.parse("2025-11-04T10:00:00Z"), ZoneId.of("UTC"));
+
+    @Test
+    void resolve_ShouldServeRepeatedVisitsFromCache() {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        try (CachingLinkService cache = new CachingLinkService(storage, 1 << 20, 60_000, clock)) {
+            String shortUrl = cache.create(testUrl, testUserUuid, 100).getShortUrl();
+
+            for (int i = 0; i < 10; i++) {
+                assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+            }
+
+            assertEquals(1, cache.getLoadCount());
+            assertEquals(9, cache.getHitCount());
+            assertEquals(0.9, cache.getHitRatio(), 1e-9);
+            assertEquals(0, storage.lookup(shortUrl).getVisitCount(), "Переходы еще не сброшены в хранилище");
+            assertEquals(10, cache.getByShortUrl(shortUrl).orElseThrow().getVisitCount());
+        }
+    }
+
+    @Test
+    void resolve_ShouldNotExceedLimitUnderConcurrentVisits() throws Exception {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        int limit = 1000;
+        try (CachingLinkService cache = new CachingLinkService(storage, 1 << 20, 1, clock)) {
+            String shortUrl = cache.create(testUrl, testUserUuid, limit).getShortUrl();
+            AtomicInteger granted = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < limit; i++) {
+                        if (cache.resolveAndRegisterVisit(shortUrl) != null) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            assertEquals(limit, granted.get());
+            assertTrue(cache.getByShortUrl(shortUrl).isEmpty(), "Исчерпанная ссылка удаляется хранилищем");
+        }
+    }
+
+    @Test
+    void updateLimitAndDelete_ShouldInvalidateCachedEntry() {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        try (CachingLinkService cache = new CachingLinkService(storage, 1 << 20, 60_000, clock)) {
+            String shortUrl = cache.create(testUrl, testUserUuid, 1).getShortUrl();
+            assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+
+            assertTrue(cache.updateLimit(shortUrl, testUserUuid, 3));
+            assertEquals(1, storage.lookup(shortUrl).getVisitCount(), "Переход из кэша сброшен до изменения лимита");
+            assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+            assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+            assertNull(cache.resolveAndRegisterVisit(shortUrl));
+
+            shortUrl = cache.create(testUrl, testUserUuid, 10).getShortUrl();
+            assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+
+            assertTrue(cache.delete(shortUrl, testUserUuid));
+            assertNull(cache.resolveAndRegisterVisit(shortUrl));
+        }
+    }
+
+    @Test
+    void resolve_ShouldDropEntryAndCountMiss_WhenStorageRefuses() {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        try (CachingLinkService cache = new CachingLinkService(storage, 1 << 20, 60_000, clock)) {
+            String shortUrl = cache.create(testUrl, testUserUuid, 1).getShortUrl();
+            assertEquals(testUrl, cache.resolveAndRegisterVisit(shortUrl));
+            long weight = cache.getWeightedSize();
+
+            assertNull(cache.resolveAndRegisterVisit(shortUrl));
+
+            assertEquals(0, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+            assertTrue(cache.getWeightedSize() < weight, "Исчерпанная запись выведена из кэша");
+        }
+    }
+
+    @Test
+    void load_ShouldEvictWhenWeightLimitIsExceeded() {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        try (CachingLinkService cache = new CachingLinkService(storage, 4096, 60_000, clock)) {
+            List<String> codes = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                codes.add(cache.create(testUrl + "/" + i, testUserUuid, 100).getShortUrl());
+            }
+            for (String code : codes) {
+                cache.resolveAndRegisterVisit(code);
+            }
+
+            assertTrue(cache.getEvictionCount() > 0);
+            assertTrue(cache.getWeightedSize() <= 4096);
+            // Переходы вытесненных записей не теряются
+            for (String code : codes) {
+                assertEquals(1, cache.getByShortUrl(code).orElseThrow().getVisitCount());
+            }
+        }
+    }
+
+    @Test
+    void load_ShouldKeepFrequentEntry_WhenScannedByOneOffKeys() {
+        LinkServiceImpl storage = new LinkServiceImpl(clock);
+        try (CachingLinkService cache = new CachingLinkService(storage, 64 * 1024, 60_000, clock)) {
+            String hot = cache.create(testUrl + "/hot", testUserUuid, Integer.MAX_VALUE).getShortUrl();
+            List<String> scan = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                // Разная длина URL: загрузка одной записи иногда вытесняет несколько
+                scan.add(cache.create(testUrl + "/" + "x".repeat(i % 200) + i, testUserUuid, 100).getShortUrl());
+            }
+            for (int i = 0; i < 20; i++) {
+                cache.resolveAndRegisterVisit(hot);
+            }
+
+            for (String code : scan) {
+                cache.resolveAndRegisterVisit(code);
+            }
+            long loads = cache.getLoadCount();
+            cache.resolveAndRegisterVisit(hot);
+
+            assertTrue(cache.getEvictionCount() > 0);
+            assertEquals(loads, cache.getLoadCount(), "Частая запись пережила проход по разовым ключам");
+            assertTrue(cache.getWeightedSize() <= 64 * 1024);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsoleAppBatchTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+
+    @Test
+    void runBatch_ShouldKeepPerCodeOrderAndInputOrderOfOutput() throws Exception {
+        try (LinkServiceImpl linkService = new LinkServiceImpl()) {
+            List<String> codes = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                codes.add(linkService.create(testUrl + "/" + i, testUserUuid, 3).getShortUrl());
+            }
+            StringBuilder script = new StringBuilder();
+            for (String code : codes) {
+                script.append(code).append('\n')
+                        .append("update ").append(code).append(" 1\n")
+                        .append(code).append('\n')
+                        .append("delete ").append(code).append('\n');
+            }
+            script.append("list\nexit\ncreate https://ignored.example\n");
+            StringWriter output = new StringWriter();
+
+            ConsoleApp.BatchSummary summary = new ConsoleApp(linkService, testUserUuid)
+                    .runBatch(new BufferedReader(new StringReader(script.toString())), output, 4);
+
+            assertEquals(201, summary.getCommands());
+            // Второй переход упирается в уменьшенный лимит, после чего ссылка удаляется и delete не находит ее
+            assertEquals(100, summary.getErrors());
+            String[] lines = output.toString().split(System.lineSeparator());
+            for (int i = 0; i < codes.size(); i++) {
+                assertEquals("Переход на: " + testUrl + "/" + i, lines[4 * i]);
+                assertEquals("Лимит для ссылки " + codes.get(i) + " обновлен на 1.", lines[4 * i + 1]);
+                assertTrue(lines[4 * i + 2].startsWith("Ошибка"), lines[4 * i + 2]);
+                assertTrue(lines[4 * i + 3].startsWith("Ошибка"), lines[4 * i + 3]);
+            }
+            assertEquals("У вас пока нет ссылок.", lines[lines.length - 1]);
+            assertEquals(0, linkService.size());
+        }
+    }
+
+    @Test
+    void redirect_ShouldOnlyPrintUrl_WhenHeadless() {
+        try (LinkServiceImpl linkService = new LinkServiceImpl()) {
+            String code = linkService.create(testUrl, testUserUuid, 3).getShortUrl();
+
+            String output = new ConsoleApp(linkService, testUserUuid, true).execute(code);
+
+            assertEquals("Переход на: " + testUrl + System.lineSeparator()
+                    + "Режим без графики: откройте ссылку вручную." + System.lineSeparator(), output);
+            assertEquals(1, linkService.getByShortUrl(code).orElseThrow().getVisitCount());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkMetricsTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+
+    @Test
+    void histogram_ShouldReportPercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_000, histogram.valueAtPercentile(50), 50_000_000 / 32.0);
+        assertEquals(99_000_000, histogram.valueAtPercentile(99), 99_000_000 / 32.0);
+        assertEquals(100_000_000, histogram.valueAtPercentile(100));
+        for (long value : new long[]{0, 1, 63, 64, 65, 1000, 123_456_789, LatencyHistogram.MAX_VALUE}) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value && highest - value <= value / 32, "Корзина значения " + value);
+        }
+    }
+
+    @Test
+    void instrumentedService_ShouldCountEventsOfWrappedStore() {
+        AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2025-11-04T10:00:00Z"));
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneId.of("UTC");
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        LinkMetrics metrics = new LinkMetrics();
+        try (LinkService service = new InstrumentedLinkService(new LinkServiceImpl(clock, metrics), metrics)) {
+            String limited = service.create(testUrl, testUserUuid, 1).getShortUrl();
+            String expiring = service.create(testUrl, testUserUuid, 10).getShortUrl();
+
+            assertNotNull(service.resolveAndRegisterVisit(limited));
+            assertNull(service.resolveAndRegisterVisit(limited));
+            assertNull(service.lookup("AbcDef12"));
+            now.set(now.get().plus(Duration.ofSeconds(Configuration.getExpirationSeconds() + 1)));
+            assertNull(service.lookup(expiring));
+
+            assertEquals(2, metrics.getCreates());
+            assertEquals(1, metrics.getHits());
+            assertEquals(3, metrics.getMisses());
+            assertEquals(1, metrics.getLimitExhaustions());
+            assertEquals(1, metrics.getExpirations());
+            assertEquals(2, metrics.latency(LinkMetrics.Operation.RESOLVE).getCount());
+            assertEquals(0L, metrics.getGauges().get("links_stored"));
+
+            StringBuilder text = new StringBuilder();
+            metrics.writeText(text);
+            assertTrue(text.toString().contains("shortener_creates_total 2\n"));
+            assertTrue(text.toString().contains("shortener_operation_latency_seconds_count{op=\"lookup\"} 2\n"));
+            assertTrue(text.toString().contains("shortener_operation_latency_seconds{op=\"lookup\",quantile=\"0.999\"} "));
+            assertFalse(text.toString().contains("0.9990000"));
+            assertTrue(text.toString().contains("shortener_links_stored 0\n"));
+            assertTrue(text.toString().contains("shortener_jvm_heap_used_bytes "), "Метрики JVM подключаются к первому снимку");
+        }
+    }
+
+    @Test
+    void eventLog_ShouldWriteStructuredLinesInBackground() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        AsyncEventLog log = new AsyncEventLog(new PrintStream(buffer, true, StandardCharsets.UTF_8), 16);
+
+        log.log(AsyncEventLog.Event.LINK_EXPIRED, "AbcDef12");
+        log.log(AsyncEventLog.Event.PURGE, "3");
+        log.flush();
+
+        String[] lines = buffer.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].matches("time=\\S+ level=INFO event=link_expired short_url=AbcDef12 msg=\".*AbcDef12.*\""),
+                lines[0]);
+        assertTrue(lines[1].contains("event=purge removed=3"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LinkServiceAllocationTest {
+
+    private static final int ITERATIONS = 1_000_000;
+
+    @Test
+    void hitPath_ShouldNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "JVM не поддерживает учет выделенной памяти");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        try (LinkServiceImpl linkService = new LinkServiceImpl(Clock.systemUTC())) {
+            String shortUrl = linkService.create("https://example.com", "test-user-1", Integer.MAX_VALUE).getShortUrl();
+            long threadId = Thread.currentThread().getId();
+
+            runHitPath(linkService, shortUrl);
+            long before = threads.getThreadAllocatedBytes(threadId);
+            int hits = runHitPath(linkService, shortUrl);
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+            assertEquals(2 * ITERATIONS, hits);
+            // Допуск покрывает служебные выделения самого замера, а не работу на каждый вызов
+            assertTrue(allocated < 4096, "Горячий путь выделил " + allocated + " байт на " + ITERATIONS + " итераций");
+        }
+    }
+
+    private static int runHitPath(LinkServiceImpl linkService, String shortUrl) {
+        int hits = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (linkService.lookup(shortUrl) != null) {
+                hits++;
+            }
+            if (linkService.resolveAndRegisterVisit(shortUrl) != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
@@ -4,9 +4,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +45,16 @@ class LinkServiceImplTest {
         assertEquals(8, link.getShortUrl().length());
     }
 
+    @Test
+    void getCreatedAt_ShouldUseZoneOfServiceClock() {
+        Clock tokyo = Clock.fixed(Instant.parse("2025-11-04T10:00:00Z"), ZoneId.of("Asia/Tokyo"));
+        try (LinkServiceImpl service = new LinkServiceImpl(tokyo)) {
+            Link link = service.create(testUrl, testUserUuid, 10);
+
+            assertEquals(LocalDateTime.of(2025, 11, 4, 19, 0), link.getCreatedAt());
+        }
+    }
+
     @Test
     void delete_ShouldDeleteLink_WhenUserIsOwner() {
         Link link = linkService.create(testUrl, testUserUuid, 10);
@@ -118,11 +137,282 @@ class LinkServiceImplTest {
 
         Clock futureClock = Clock.offset(clock, java.time.Duration.ofHours(25));
         try (LinkServiceImpl futureService = new LinkServiceImpl(futureClock)) {
-            futureService.linkStorage.put(shortUrl, link);
+            futureService.insert(link);
 
             Optional<Link> expiredLink = futureService.getByShortUrl(shortUrl);
 
             assertTrue(expiredLink.isEmpty(), "Ссылка должна была истечь и удалиться");
         }
     }
+
+    @Test
+    void getOriginalUrlAndRegisterVisit_ShouldCountEveryVisit_UnderConcurrentLoad() throws Exception {
+        int threads = 16;
+        int visitsPerThread = 10_000;
+        Link link = linkService.create(testUrl, testUserUuid, Integer.MAX_VALUE);
+
+        int successful = hammer(link.getShortUrl(), threads, visitsPerThread);
+
+        assertEquals(threads * visitsPerThread, successful);
+        assertEquals(threads * visitsPerThread, link.getVisitCount());
+    }
+
+    @Test
+    void getOriginalUrlAndRegisterVisit_ShouldNotExceedLimit_UnderConcurrentLoad() throws Exception {
+        int limit = 50_000;
+        Link link = linkService.create(testUrl, testUserUuid, limit);
+
+        int successful = hammer(link.getShortUrl(), 16, 10_000);
+
+        assertEquals(limit, successful, "Переходов должно быть ровно столько, сколько позволяет лимит");
+        assertEquals(limit, link.getVisitCount());
+        assertTrue(linkService.getByShortUrl(link.getShortUrl()).isEmpty(), "Исчерпанная ссылка должна быть удалена");
+    }
+
+    private int hammer(String shortUrl, int threads, int visitsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    int ok = 0;
+                    for (int i = 0; i < visitsPerThread; i++) {
+                        if (linkService.getOriginalUrlAndRegisterVisit(shortUrl).isPresent()) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get(30, TimeUnit.SECONDS);
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void insert_ShouldRejectOccupiedCode() {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+        Link duplicate = new Link("https://example.org", link.getShortUrl(), anotherUserUuid, 5,
+                link.getCreatedAtMillis(), link.getExpiresAtMillis());
+
+        assertFalse(linkService.insert(duplicate));
+        assertSame(link, linkService.getByShortUrl(link.getShortUrl()).orElseThrow());
+    }
+
+    @Test
+    void create_ShouldRetryWithNewCode_WhenGeneratedCodeIsTaken() {
+        Link taken = new Link(testUrl, "AbcDef12", anotherUserUuid, 10, clock.millis(), clock.millis() + 60_000);
+        // Первые два сгенерированных кода совпадают с уже занятым
+        int[] generated = {0};
+        try (LinkServiceImpl service = new LinkServiceImpl(clock) {
+            @Override
+            Link newLink(String originalUrl, String userUuid, int limit) {
+                Link link = super.newLink(originalUrl, userUuid, limit);
+                return generated[0]++ < 2 ? new Link(originalUrl, taken.getShortUrl(), userUuid, limit,
+                        link.getCreatedAtMillis(), link.getExpiresAtMillis()) : link;
+            }
+        }) {
+            assertTrue(service.insert(taken));
+
+            Link created = service.create("https://example.org", testUserUuid, 5);
+
+            assertNotEquals(taken.getShortUrl(), created.getShortUrl());
+            assertEquals(2, service.getCodeCollisionCount());
+            assertEquals(3, generated[0]);
+            assertSame(taken, service.getByShortUrl(taken.getShortUrl()).orElseThrow());
+            assertSame(created, service.getByShortUrl(created.getShortUrl()).orElseThrow());
+        }
+    }
+
+    @Test
+    void getByShortUrl_ShouldReturnEmpty_WhenCodeIsMalformed() {
+        assertTrue(linkService.getByShortUrl("too-short").isEmpty());
+        assertTrue(linkService.getByShortUrl("bad code").isEmpty());
+        assertTrue(linkService.getOriginalUrlAndRegisterVisit("абвгдеёж").isEmpty());
+    }
+
+    @Test
+    void create_ShouldKeepEveryLink_WhenManyLinksAreCreatedConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                List<String> codes = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    codes.add(linkService.create(testUrl, testUserUuid, 10).getShortUrl());
+                }
+                return codes;
+            }));
+        }
+        List<String> created = new ArrayList<>();
+        for (Future<List<String>> result : results) {
+            created.addAll(result.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertEquals(created.size(), linkService.size());
+        for (String shortUrl : created) {
+            assertTrue(linkService.getByShortUrl(shortUrl).isPresent());
+        }
+    }
+
+    @Test
+    void listByUser_ShouldReturnOwnLinksPagedInCreationOrder() {
+        MutableClock mutableClock = new MutableClock(clock.instant());
+        try (LinkServiceImpl service = new LinkServiceImpl(mutableClock)) {
+            List<String> own = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                own.add(service.create(testUrl + "/" + i, testUserUuid, 10).getShortUrl());
+                service.create(testUrl, anotherUserUuid, 10);
+                mutableClock.advance(Duration.ofSeconds(1));
+            }
+
+            List<Link> firstPage = service.listByUser(testUserUuid, 0, 3);
+            List<Link> secondPage = service.listByUser(testUserUuid, 3, 3);
+
+            assertEquals(3, firstPage.size());
+            assertEquals(2, secondPage.size());
+            List<String> listed = new ArrayList<>();
+            firstPage.forEach(link -> listed.add(link.getShortUrl()));
+            secondPage.forEach(link -> listed.add(link.getShortUrl()));
+            assertEquals(own, listed);
+            assertTrue(service.listByUser("unknown-user", 0, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void bulkOperations_ShouldAffectOnlyOwnLinks() {
+        Link own = linkService.create(testUrl, testUserUuid, 10);
+        linkService.create(testUrl, testUserUuid, 10);
+        Link foreign = linkService.create(testUrl, anotherUserUuid, 10);
+
+        assertEquals(2, linkService.updateLimitForUser(testUserUuid, 42));
+        assertEquals(42, linkService.getByShortUrl(own.getShortUrl()).orElseThrow().getLimit());
+        assertEquals(10, linkService.getByShortUrl(foreign.getShortUrl()).orElseThrow().getLimit());
+
+        assertEquals(2, linkService.deleteAllByUser(testUserUuid));
+        assertTrue(linkService.listByUser(testUserUuid, 0, 10).isEmpty());
+        assertTrue(linkService.getByShortUrl(foreign.getShortUrl()).isPresent());
+        assertEquals(0, linkService.deleteAllByUser(testUserUuid));
+    }
+
+    @Test
+    void userIndex_ShouldForgetExpiredAndExhaustedLinks() {
+        MutableClock mutableClock = new MutableClock(clock.instant());
+        try (LinkServiceImpl service = new LinkServiceImpl(mutableClock)) {
+            Link exhausted = service.create(testUrl, testUserUuid, 1);
+            service.getOriginalUrlAndRegisterVisit(exhausted.getShortUrl());
+            service.getOriginalUrlAndRegisterVisit(exhausted.getShortUrl());
+            service.create(testUrl, testUserUuid, 10);
+            assertEquals(1, service.listByUser(testUserUuid, 0, 10).size());
+
+            mutableClock.advance(Duration.ofHours(25));
+            service.purgeExpiredLinks();
+
+            assertTrue(service.listByUser(testUserUuid, 0, 10).isEmpty());
+            assertEquals(0, service.deleteAllByUser(testUserUuid));
+        }
+    }
+
+    @Test
+    void purgeExpiredLinks_ShouldRemoveOnlyExpiredLinks() {
+        MutableClock mutableClock = new MutableClock(clock.instant());
+        try (LinkServiceImpl service = new LinkServiceImpl(mutableClock)) {
+            Link first = service.create(testUrl, testUserUuid, 10);
+            Link second = service.create(testUrl, testUserUuid, 10);
+            mutableClock.advance(Duration.ofHours(12));
+            Link fresh = service.create(testUrl, testUserUuid, 10);
+
+            mutableClock.advance(Duration.ofHours(12).plusSeconds(2));
+            service.purgeExpiredLinks();
+
+            assertEquals(2, service.getTotalPurgedCount());
+            assertNull(service.get(first.getShortUrl()));
+            assertNull(service.get(second.getShortUrl()));
+            assertNotNull(service.get(fresh.getShortUrl()));
+        }
+    }
+
+    @Test
+    void purgeExpiredLinks_ShouldIgnoreDeletedLinks() {
+        MutableClock mutableClock = new MutableClock(clock.instant());
+        try (LinkServiceImpl service = new LinkServiceImpl(mutableClock)) {
+            Link link = service.create(testUrl, testUserUuid, 10);
+            service.delete(link.getShortUrl(), testUserUuid);
+
+            mutableClock.advance(Duration.ofHours(25));
+            service.purgeExpiredLinks();
+
+            assertEquals(0, service.getTotalPurgedCount());
+        }
+    }
+
+    @Test
+    void create_ShouldShareOriginalUrlBetweenLinks_WhenInterningEnabled() {
+        try (LinkServiceImpl service = new LinkServiceImpl(clock, new LinkMetrics(), false, true)) {
+            Link first = service.create(new String("https://example.com/popular"), testUserUuid, 10);
+            Link second = service.create(new String("https://example.com/popular"), anotherUserUuid, 10);
+
+            assertNotSame(first, second);
+            assertSame(first.getOriginalUrl(), second.getOriginalUrl());
+        }
+        try (LinkServiceImpl service = new LinkServiceImpl(clock, new LinkMetrics(), false, false)) {
+            Link first = service.create(new String("https://example.com/popular"), testUserUuid, 10);
+            Link second = service.create(new String("https://example.com/popular"), anotherUserUuid, 10);
+
+            assertNotSame(first.getOriginalUrl(), second.getOriginalUrl());
+        }
+    }
+
+    @Test
+    void create_ShouldReuseLinkOfSameUserAndUrl_WhenDeduplicationEnabled() {
+        try (LinkServiceImpl service = new LinkServiceImpl(clock, new LinkMetrics(), true)) {
+            Link link = service.create(testUrl, testUserUuid, 10);
+
+            assertSame(link, service.create(testUrl, testUserUuid, 10));
+            assertNotEquals(link.getShortUrl(), service.create(testUrl, anotherUserUuid, 10).getShortUrl());
+            Link otherLimit = service.create(testUrl, testUserUuid, 5);
+            assertNotEquals(link.getShortUrl(), otherLimit.getShortUrl());
+            assertSame(otherLimit, service.create(testUrl, testUserUuid, 5));
+
+            service.delete(otherLimit.getShortUrl(), testUserUuid);
+            assertNotEquals(otherLimit.getShortUrl(), service.create(testUrl, testUserUuid, 5).getShortUrl());
+        }
+    }
+
+    /** Часы, время которых тест может сдвигать вперед. */
+    static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapLinkServiceTest {
+
+    private static final long MAX_LINKS = 10_000;
+    private static final long ARENA_BYTES = 4 * 1024 * 1024;
+
+    private final String testUserUuid = "test-user-1";
+    private final String anotherUserUuid = "test-user-2";
+    private final String testUrl = "https://example.com";
+
+    @TempDir
+    Path directory;
+
+    private LinkServiceImplTest.MutableClock clock;
+    private OffHeapLinkService linkService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        clock = new LinkServiceImplTest.MutableClock(Instant.parse("2025-11-04T10:00:00Z"));
+        linkService = open(clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        linkService.close();
+    }
+
+    @Test
+    void create_ShouldStoreLinkOffHeap() {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+
+        Link stored = linkService.getByShortUrl(link.getShortUrl()).orElseThrow();
+
+        assertEquals(8, link.getShortUrl().length());
+        assertEquals(testUrl, stored.getOriginalUrl());
+        assertEquals(testUserUuid, stored.getUserUuid());
+        assertEquals(10, stored.getLimit());
+        assertEquals(1, linkService.size());
+    }
+
+    @Test
+    void getOriginalUrlAndRegisterVisit_ShouldEnforceLimit() {
+        Link link = linkService.create(testUrl, testUserUuid, 2);
+
+        assertEquals(testUrl, linkService.getOriginalUrlAndRegisterVisit(link.getShortUrl()).orElseThrow());
+        assertEquals(testUrl, linkService.getOriginalUrlAndRegisterVisit(link.getShortUrl()).orElseThrow());
+        assertTrue(linkService.getOriginalUrlAndRegisterVisit(link.getShortUrl()).isEmpty());
+        assertTrue(linkService.getByShortUrl(link.getShortUrl()).isEmpty(), "Исчерпанная ссылка должна быть удалена");
+    }
+
+    @Test
+    void updateAndDelete_ShouldRequireOwner() {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+
+        assertFalse(linkService.updateLimit(link.getShortUrl(), anotherUserUuid, 20));
+        assertTrue(linkService.updateLimit(link.getShortUrl(), testUserUuid, 20));
+        assertEquals(20, linkService.getByShortUrl(link.getShortUrl()).orElseThrow().getLimit());
+
+        assertFalse(linkService.delete(link.getShortUrl(), anotherUserUuid));
+        assertTrue(linkService.delete(link.getShortUrl(), testUserUuid));
+        assertTrue(linkService.getByShortUrl(link.getShortUrl()).isEmpty());
+        assertEquals(0, linkService.size());
+    }
+
+    @Test
+    void getByShortUrl_ShouldReturnEmpty_WhenLinkIsExpired() {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+
+        clock.advance(Duration.ofHours(25));
+
+        assertTrue(linkService.getByShortUrl(link.getShortUrl()).isEmpty());
+    }
+
+    @Test
+    void sweepExpired_ShouldRemoveExpiredLinks() {
+        for (int i = 0; i < 100; i++) {
+            linkService.create(testUrl, testUserUuid, 10);
+        }
+        clock.advance(Duration.ofHours(25));
+
+        linkService.sweepExpired();
+
+        assertEquals(0, linkService.size());
+    }
+
+    @Test
+    void deleteAllByUser_ShouldNotCountExpiredLinks() {
+        for (int i = 0; i < 3; i++) {
+            linkService.create(testUrl + "/" + i, testUserUuid, 10);
+        }
+        clock.advance(Duration.ofHours(25));
+        Link live = linkService.create(testUrl + "/live", testUserUuid, 10);
+
+        assertEquals(1, linkService.deleteAllByUser(testUserUuid));
+
+        assertTrue(linkService.getByShortUrl(live.getShortUrl()).isEmpty());
+        linkService.sweepExpired();
+        assertEquals(0, linkService.size());
+    }
+
+    @Test
+    void sweepExpired_ShouldNotRemoveLinkThatReusedSlot() {
+        long now = clock.millis();
+        Link expired = new Link(testUrl, "AbcDef12", testUserUuid, 10, now - 2000, now - 1000);
+        assertTrue(linkService.importLink(expired));
+        long before = linkService.find(expired.getCode());
+        linkService.sweepExpired();
+        // Между чтениями обхода ячейку заняла новая действующая ссылка с тем же кодом
+        Link fresh = new Link(testUrl + "/fresh", "AbcDef12", anotherUserUuid, 10, now, now + 60_000);
+        assertTrue(linkService.importLink(fresh));
+        long after = linkService.find(fresh.getCode());
+        long base = OffHeapLinkService.slotOffset(after >>> 32);
+        assertEquals(before >>> 32, after >>> 32, "Ссылка заняла ту же ячейку");
+
+        assertFalse(linkService.removeIfExpired(base, (int) before, now), "Поколение прежней ссылки");
+        assertFalse(linkService.removeIfExpired(base, (int) after, now), "Срок жизни новой ссылки");
+        assertEquals(testUrl + "/fresh", linkService.getByShortUrl("AbcDef12").orElseThrow().getOriginalUrl());
+    }
+
+    @Test
+    void reopen_ShouldMapExistingFiles() throws IOException {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+        linkService.getOriginalUrlAndRegisterVisit(link.getShortUrl());
+        linkService.close();
+
+        linkService = open(clock);
+
+        Link restored = linkService.getByShortUrl(link.getShortUrl()).orElseThrow();
+        assertEquals(testUrl, restored.getOriginalUrl());
+        assertEquals(1, restored.getVisitCount());
+    }
+
+    @Test
+    void reopen_ShouldRepairSeqLockLeftOddByCrash() throws IOException {
+        Link link = linkService.create(testUrl, testUserUuid, 10);
+        linkService.close();
+        // Процесс упал между beginWrite и endWrite: во всех ячейках нечетный seq, флаг закрытия снят
+        try (FileChannel file = FileChannel.open(directory.resolve("links.idx"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer word = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder());
+            for (long slot = 0; OffHeapLinkService.slotOffset(slot) < file.size(); slot++) {
+                word.clear();
+                word.putInt(0, 7);
+                file.write(word, OffHeapLinkService.slotOffset(slot) + OffHeapLinkService.SEQ);
+            }
+            word.clear();
+            word.putInt(0, 0);
+            file.write(word, OffHeapLinkService.H_CLEAN);
+        }
+
+        linkService = open(clock);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertEquals(testUrl, linkService.getByShortUrl(link.getShortUrl()).orElseThrow().getOriginalUrl());
+            assertTrue(linkService.getByShortUrl("AbcDef12").isEmpty());
+        });
+    }
+
+    @Test
+    void userIndex_ShouldBeBuiltOnFirstUseAfterReopen() throws IOException {
+        Link first = linkService.create(testUrl, testUserUuid, 10);
+        clock.advance(Duration.ofSeconds(1));
+        Link second = linkService.create(testUrl, testUserUuid, 10);
+        linkService.create(testUrl, anotherUserUuid, 10);
+        linkService.close();
+
+        linkService = open(clock);
+        // Изменения до первого обращения к индексу владельцев в нем не теряются
+        clock.advance(Duration.ofSeconds(1));
+        Link third = linkService.create(testUrl, testUserUuid, 10);
+        assertTrue(linkService.delete(first.getShortUrl(), testUserUuid));
+
+        List<Link> links = linkService.listByUser(testUserUuid, 0, 10);
+        assertEquals(2, links.size());
+        assertEquals(second.getShortUrl(), links.get(0).getShortUrl());
+        assertEquals(third.getShortUrl(), links.get(1).getShortUrl());
+        assertEquals(2, linkService.updateLimitForUser(testUserUuid, 3));
+        assertEquals(3, linkService.getByShortUrl(second.getShortUrl()).orElseThrow().getLimit());
+        assertEquals(2, linkService.deleteAllByUser(testUserUuid));
+        assertEquals(1, linkService.size());
+    }
+
+    @Test
+    void createAndDelete_ShouldReuseSlots() {
+        for (int round = 0; round < 5; round++) {
+            List<Link> created = new ArrayList<>();
+            for (int i = 0; i < (int) (MAX_LINKS * 1.2); i++) {
+                created.add(linkService.create(testUrl + "/" + i, testUserUuid, 10));
+            }
+            for (Link link : created) {
+                assertTrue(linkService.delete(link.getShortUrl(), testUserUuid));
+            }
+        }
+        Link last = linkService.create(testUrl, testUserUuid, 10);
+
+        assertEquals(1, linkService.size());
+        assertTrue(linkService.getByShortUrl(last.getShortUrl()).isPresent());
+    }
+
+    @Test
+    void getOriginalUrlAndRegisterVisit_ShouldNotExceedLimit_UnderConcurrentLoad() throws Exception {
+        int limit = 20_000;
+        Link link = linkService.create(testUrl, testUserUuid, limit);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int ok = 0;
+                for (int i = 0; i < 5_000; i++) {
+                    if (linkService.resolveAndRegisterVisit(link.getShortUrl()) != null) {
+                        ok++;
+                    }
+                }
+                return ok;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(limit, total);
+    }
+
+    private OffHeapLinkService open(Clock clock) throws IOException {
+        return new OffHeapLinkService(directory, MAX_LINKS, ARENA_BYTES, clock);
+    }
+}
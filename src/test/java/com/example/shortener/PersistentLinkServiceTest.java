@@ -0,0 +1,140 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentLinkServiceTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+    private final Clock clock = Clock.fixed(Instant.parse("2025-11-04T10:00:00Z"), ZoneId.of("UTC"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_ShouldRestoreLinksFromLog() throws IOException {
+        String kept;
+        String deleted;
+        try (PersistentLinkService service = open()) {
+            kept = service.create(testUrl, testUserUuid, 10).getShortUrl();
+            deleted = service.create(testUrl, testUserUuid, 10).getShortUrl();
+            service.getOriginalUrlAndRegisterVisit(kept);
+            service.getOriginalUrlAndRegisterVisit(kept);
+            service.updateLimit(kept, testUserUuid, 20);
+            service.delete(deleted, testUserUuid);
+        }
+
+        try (PersistentLinkService service = open()) {
+            Link link = service.getByShortUrl(kept).orElseThrow();
+            assertEquals(testUrl, link.getOriginalUrl());
+            assertEquals(testUserUuid, link.getUserUuid());
+            assertEquals(20, link.getLimit());
+            assertEquals(2, link.getVisitCount());
+            assertTrue(service.getByShortUrl(deleted).isEmpty());
+        }
+    }
+
+    @Test
+    void reopen_ShouldRestoreSnapshotAndLogTail() throws IOException {
+        String beforeSnapshot;
+        String afterSnapshot;
+        try (PersistentLinkService service = open()) {
+            beforeSnapshot = service.create(testUrl, testUserUuid, 10).getShortUrl();
+            service.getOriginalUrlAndRegisterVisit(beforeSnapshot);
+            service.snapshot();
+            afterSnapshot = service.create("https://example.org", testUserUuid, 5).getShortUrl();
+            service.getOriginalUrlAndRegisterVisit(beforeSnapshot);
+        }
+
+        assertTrue(Files.exists(directory.resolve("snapshot.dat")));
+        assertFalse(Files.exists(WriteAheadLog.segmentPath(directory, 0)), "Сегменты до снимка должны быть удалены");
+
+        try (PersistentLinkService service = open()) {
+            assertEquals(2, service.getByShortUrl(beforeSnapshot).orElseThrow().getVisitCount());
+            assertEquals("https://example.org", service.getByShortUrl(afterSnapshot).orElseThrow().getOriginalUrl());
+        }
+    }
+
+    @Test
+    void reopen_ShouldDiscardTornLogTail() throws IOException {
+        String shortUrl;
+        try (PersistentLinkService service = open()) {
+            shortUrl = service.create(testUrl, testUserUuid, 10).getShortUrl();
+        }
+        Path lastSegment = WriteAheadLog.segmentPath(directory, WriteAheadLog.listSegments(directory).get(0));
+        Files.write(lastSegment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        try (PersistentLinkService service = open()) {
+            assertTrue(service.getByShortUrl(shortUrl).isPresent());
+            service.create(testUrl, testUserUuid, 10);
+        }
+        try (PersistentLinkService service = open()) {
+            assertTrue(service.getByShortUrl(shortUrl).isPresent());
+        }
+    }
+
+    @Test
+    void append_ShouldRejectRecordLongerThanReplayAccepts() throws IOException {
+        try (WriteAheadLog log = new WriteAheadLog(directory, Durability.SYNC, 0)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> log.append(new byte[WriteAheadLog.MAX_RECORD_BYTES + 1], true));
+            log.append(new byte[]{1, 2, 3}, true);
+        }
+        List<Integer> lengths = new ArrayList<>();
+        assertTrue(WriteAheadLog.readSegment(WriteAheadLog.segmentPath(directory, 0), record -> lengths.add(record.remaining())));
+        assertEquals(List.of(3), lengths);
+    }
+
+    @Test
+    void writerFailure_ShouldFailPendingAndLaterWritesInsteadOfHanging() throws IOException {
+        Path walDirectory = Files.createDirectory(directory.resolve("wal"));
+        WriteAheadLog log = new WriteAheadLog(walDirectory, Durability.SYNC, 0);
+        Files.delete(WriteAheadLog.segmentPath(walDirectory, 0));
+        Files.delete(walDirectory);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            // Новый сегмент негде создать: поток записи останавливается ошибкой
+            assertThrows(CompletionException.class, () -> log.rotate().join());
+            assertThrows(IllegalStateException.class, () -> log.append(new byte[]{1}, true));
+            assertThrows(IllegalStateException.class, log::sync);
+            log.close();
+        });
+    }
+
+    @Test
+    void close_ShouldWritePendingRecordsAndRejectLaterWrites() throws IOException {
+        Path walDirectory = Files.createDirectory(directory.resolve("wal"));
+        WriteAheadLog log = new WriteAheadLog(walDirectory, Durability.SYNC, 0);
+        log.append(new byte[]{1}, false);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            log.close();
+            assertThrows(IllegalStateException.class, () -> log.append(new byte[]{2}, true));
+            assertThrows(IllegalStateException.class, () -> log.append(new byte[]{3}, false));
+            assertThrows(IllegalStateException.class, log::sync);
+            log.close();
+        });
+        List<Byte> records = new ArrayList<>();
+        assertTrue(WriteAheadLog.readSegment(WriteAheadLog.segmentPath(walDirectory, 0), record -> records.add(record.get())));
+        assertEquals(List.of((byte) 1), records);
+    }
+
+    private PersistentLinkService open() throws IOException {
+        return new PersistentLinkService(directory, Durability.SYNC, 0, clock);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void tryAcquire_ShouldAllowBurstThenRefillAtRate() {
+        RateLimiter limiter = new RateLimiter(10, 5, 1024, nanos::get);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire(42), "Запрос " + i + " в пределах корзины");
+        }
+        long wait = limiter.tryAcquire(42);
+        assertEquals(100_000, wait, "Следующее разрешение через интервал 1/10 с");
+        assertEquals(0, limiter.tryAcquire(43), "У другого ключа своя корзина");
+
+        nanos.addAndGet(100_000_000L);
+        assertEquals(0, limiter.tryAcquire(42));
+        assertTrue(limiter.tryAcquire(42) > 0);
+
+        nanos.addAndGet(10_000_000_000L);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire(42), "После простоя корзина снова полна");
+        }
+        assertEquals(2, limiter.getRejectedCount());
+    }
+
+    @Test
+    void tryAcquire_ShouldReuseSlotsOfIdleKeys() {
+        RateLimiter limiter = new RateLimiter(1, 1, 8, nanos::get);
+
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(0, limiter.tryAcquire(key));
+            nanos.addAndGet(1_000_000_000L);
+        }
+
+        assertEquals(0, limiter.getOverflowCount(), "Простаивающие ключи освобождают ячейки");
+        assertEquals(0, limiter.tryAcquire(999));
+        assertTrue(limiter.tryAcquire(999) > 0);
+    }
+
+    @Test
+    void decorator_ShouldRejectCreatesAndRedirectsOverLimit() {
+        try (LinkServiceImpl storage = new LinkServiceImpl()) {
+            LinkService service = new RateLimitedLinkService(storage,
+                    new RateLimiter(1, 2, 1024, nanos::get), new RateLimiter(1, 3, 1024, nanos::get));
+
+            String shortUrl = service.create("https://example.com", "test-user-1", 100).getShortUrl();
+            service.create("https://example.com", "test-user-1", 100);
+            assertThrows(RateLimitExceededException.class,
+                    () -> service.create("https://example.com", "test-user-1", 100));
+            assertNotNull(service.create("https://example.com", "test-user-2", 100));
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals("https://example.com", service.resolveAndRegisterVisit(shortUrl));
+            }
+            RateLimitExceededException e = assertThrows(RateLimitExceededException.class,
+                    () -> service.resolveAndRegisterVisit(shortUrl));
+            assertEquals(1000, e.getRetryAfterMillis());
+            assertEquals(3, storage.lookup(shortUrl).getVisitCount());
+        }
+    }
+}
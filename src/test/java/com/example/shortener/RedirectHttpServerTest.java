@@ -0,0 +1,353 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectHttpServerTest {
+
+    private final String testUserUuid = "test-user-1";
+    private final String anotherUserUuid = "test-user-2";
+    private final String testUrl = "https://example.com";
+
+    private LinkServiceImpl linkService;
+    private RedirectHttpServer server;
+    private HttpClient client;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        linkService = new LinkServiceImpl();
+        server = new RedirectHttpServer(linkService, new InetSocketAddress("127.0.0.1", 0), 2, 60, 100);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getPort();
+        client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        linkService.close();
+    }
+
+    @Test
+    void redirect_ShouldRespondWith302AndRegisterVisit() throws Exception {
+        Link link = linkService.create(testUrl, testUserUuid, 5);
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + link.getShortUrl())).GET());
+
+        assertEquals(302, response.statusCode());
+        assertEquals(testUrl, response.headers().firstValue("Location").orElse(null));
+        assertEquals(1, link.getVisitCount());
+    }
+
+    @Test
+    void redirect_ShouldRespondWith404_WhenLinkIsUnknown() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/unknown1")).GET());
+
+        assertEquals(404, response.statusCode());
+    }
+
+    @Test
+    void create_ShouldStoreLinkForUser() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/links"))
+                .header("X-User-Uuid", testUserUuid)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("url=https%3A%2F%2Fexample.com&limit=7")));
+
+        assertEquals(201, response.statusCode());
+        String shortUrl = extract(response.body(), "shortUrl");
+        Link link = linkService.getByShortUrl(shortUrl).orElseThrow();
+        assertEquals(testUrl, link.getOriginalUrl());
+        assertEquals(testUserUuid, link.getUserUuid());
+        assertEquals(7, link.getLimit());
+    }
+
+    @Test
+    void create_ShouldRejectInvalidUrl() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/links?url=not-a-url"))
+                .POST(HttpRequest.BodyPublishers.noBody()));
+
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void create_ShouldRespondWith400_WhenParameterIsNotUrlEncoded() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/links"))
+                .header("X-User-Uuid", testUserUuid)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("url=%ZZ&limit=7")));
+
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void redirect_ShouldNotExposeExceptionMessage_WhenStorageFails() throws Exception {
+        LinkServiceImpl failing = new LinkServiceImpl() {
+            @Override
+            public String resolveAndRegisterVisit(String shortUrl) {
+                throw new IllegalStateException("секретная подробность");
+            }
+        };
+        try (RedirectHttpServer failingServer = new RedirectHttpServer(failing,
+                new InetSocketAddress("127.0.0.1", 0), 1, 60, 100)) {
+            failingServer.start();
+
+            HttpResponse<String> response = send(HttpRequest.newBuilder(
+                    URI.create("http://127.0.0.1:" + failingServer.getPort() + "/unknown1")).GET());
+
+            assertEquals(500, response.statusCode());
+            assertFalse(response.body().contains("секретная"), response.body());
+        } finally {
+            failing.close();
+        }
+    }
+
+    @Test
+    void info_ShouldReturnLinkAsJson() throws Exception {
+        Link link = linkService.create(testUrl, testUserUuid, 5);
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/links/" + link.getShortUrl())).GET());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(testUrl, extract(response.body(), "originalUrl"));
+    }
+
+    @Test
+    void update_ShouldChangeLimit_OnlyForOwner() throws Exception {
+        Link link = linkService.create(testUrl, testUserUuid, 5);
+        URI uri = URI.create(baseUrl + "/api/links/" + link.getShortUrl() + "?limit=20");
+
+        HttpResponse<String> denied = send(HttpRequest.newBuilder(uri).header("X-User-Uuid", anotherUserUuid)
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+        HttpResponse<String> updated = send(HttpRequest.newBuilder(uri).header("X-User-Uuid", testUserUuid)
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+
+        assertEquals(404, denied.statusCode());
+        assertEquals(204, updated.statusCode());
+        assertEquals(20, link.getLimit());
+    }
+
+    @Test
+    void delete_ShouldRemoveLink_OnlyForOwner() throws Exception {
+        Link link = linkService.create(testUrl, testUserUuid, 5);
+        URI uri = URI.create(baseUrl + "/api/links/" + link.getShortUrl());
+
+        HttpResponse<String> denied = send(HttpRequest.newBuilder(uri).header("X-User-Uuid", anotherUserUuid).DELETE());
+        HttpResponse<String> deleted = send(HttpRequest.newBuilder(uri).header("X-User-Uuid", testUserUuid).DELETE());
+
+        assertEquals(404, denied.statusCode());
+        assertEquals(204, deleted.statusCode());
+        assertTrue(linkService.getByShortUrl(link.getShortUrl()).isEmpty());
+    }
+
+    @Test
+    void keepAlive_ShouldServePipelinedRequestsOnOneConnection() throws Exception {
+        Link link = linkService.create(testUrl, testUserUuid, 5);
+        String request = "GET /" + link.getShortUrl() + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write((request + request + request).getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String responses = readAtLeast(socket.getInputStream(), 3);
+
+            assertEquals(3, count(responses, "HTTP/1.1 302 Found"));
+        }
+        assertEquals(3, link.getVisitCount());
+    }
+
+    @Test
+    void request_ShouldRespondWith400AndClose_WhenContentLengthIsInvalid() throws Exception {
+        for (String contentLength : new String[]{"abc", "-5", "+5", "99999999999"}) {
+            String request = "POST /create HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + contentLength + "\r\n\r\n";
+            try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+                socket.setSoTimeout(5000);
+                OutputStream out = socket.getOutputStream();
+                out.write(request.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+                String expected = contentLength.startsWith("9") ? "HTTP/1.1 413 " : "HTTP/1.1 400 ";
+                assertTrue(response.startsWith(expected), contentLength + ": " + response);
+                assertTrue(response.contains("Connection: close"), response);
+            }
+        }
+    }
+
+    @Test
+    void offloadedRequests_ShouldAnswerPipelinedRequestsInOrder() throws Exception {
+        Link first = linkService.create(testUrl + "/1", testUserUuid, 5);
+        Link second = linkService.create(testUrl + "/2", testUserUuid, 5);
+        ExecutorService requests = ThreadingModel.PLATFORM.newTaskExecutor("test-request", 4);
+        try (RedirectHttpServer offloading = new RedirectHttpServer(linkService,
+                new InetSocketAddress("127.0.0.1", 0), 1, 60, 100, null, requests);
+             Socket socket = new Socket("127.0.0.1", startAndGetPort(offloading))) {
+            String pipeline = "";
+            for (int i = 0; i < 3; i++) {
+                pipeline += "GET /" + first.getShortUrl() + " HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                        + "GET /" + second.getShortUrl() + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(pipeline.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String responses = readAtLeast(socket.getInputStream(), 6);
+
+            assertEquals(6, count(responses, "HTTP/1.1 302 Found"));
+            int position = 0;
+            for (int i = 0; i < 6; i++) {
+                String expected = "Location: " + testUrl + "/" + (i % 2 + 1);
+                position = responses.indexOf(expected, position);
+                assertTrue(position >= 0, "Ответ " + i + " не по порядку: " + responses);
+                position += expected.length();
+            }
+        } finally {
+            requests.shutdown();
+        }
+        assertEquals(3, first.getVisitCount());
+    }
+
+    @Test
+    void pipelining_ShouldStopReading_WhileClientDoesNotReadResponses() throws Exception {
+        byte[] request = "GET /unknown1 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] chunk = new byte[request.length * 1024];
+        for (int i = 0; i < 1024; i++) {
+            System.arraycopy(request, 0, chunk, i * request.length, request.length);
+        }
+        long total = 256L * 1024 * 1024;
+        AtomicLong written = new AtomicLong();
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+            Thread writer = new Thread(() -> {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    while (written.get() < total) {
+                        out.write(chunk);
+                        written.addAndGet(chunk.length);
+                    }
+                } catch (IOException e) {
+                    // Сокет закрыт в конце теста
+                }
+            });
+            writer.setDaemon(true);
+            writer.start();
+            writer.join(3000);
+            long stalledAt = written.get();
+            writer.join(2000);
+
+            // Сервер читает, только пока успевает отправлять ответы, поэтому запись клиента
+            // упирается в буферы сокетов и дальше не продвигается
+            assertTrue(writer.isAlive(), "Сервер прочитал все " + written.get() + " байт запросов");
+            assertTrue(written.get() - stalledAt < 1024 * 1024,
+                    "Запись продолжилась с " + stalledAt + " до " + written.get() + " байт");
+
+            InputStream in = socket.getInputStream();
+            byte[] buf = new byte[1 << 16];
+            long responses = 0;
+            while (responses < 1024) {
+                int read = in.read(buf);
+                assertTrue(read > 0);
+                responses += count(new String(buf, 0, read, StandardCharsets.US_ASCII), "HTTP/1.1 404");
+            }
+        }
+    }
+
+    private static int startAndGetPort(RedirectHttpServer server) {
+        server.start();
+        return server.getPort();
+    }
+
+    @Test
+    void metrics_ShouldExposeCountersAndLatencies() throws Exception {
+        LinkMetrics metrics = new LinkMetrics();
+        LinkService instrumented = new InstrumentedLinkService(linkService, metrics);
+        try (RedirectHttpServer metricsServer = new RedirectHttpServer(instrumented,
+                new InetSocketAddress("127.0.0.1", 0), 1, 60, 100, metrics)) {
+            metricsServer.start();
+            String metricsUrl = "http://127.0.0.1:" + metricsServer.getPort();
+            Link link = instrumented.create(testUrl, testUserUuid, 5);
+            send(HttpRequest.newBuilder(URI.create(metricsUrl + "/" + link.getShortUrl())).GET());
+
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(metricsUrl + "/metrics")).GET());
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().contains("shortener_hits_total 1\n"));
+            assertTrue(response.body().contains("shortener_operation_latency_seconds_count{op=\"resolve\"} 1\n"));
+        }
+        assertEquals(404, send(HttpRequest.newBuilder(URI.create(baseUrl + "/metrics")).GET()).statusCode());
+    }
+
+    @Test
+    void analytics_ShouldExposeVisitSeriesAndTopLinks() throws Exception {
+        VisitAnalytics analytics = new VisitAnalytics(1024, 1024, 64, 1000);
+        LinkService recorded = new AnalyticsLinkService(linkService, analytics);
+        try (RedirectHttpServer analyticsServer = new RedirectHttpServer(recorded,
+                new InetSocketAddress("127.0.0.1", 0), 1, 60, 100, null, null, analytics)) {
+            String analyticsUrl = "http://127.0.0.1:" + startAndGetPort(analyticsServer);
+            Link link = recorded.create(testUrl, testUserUuid, 5);
+            send(HttpRequest.newBuilder(URI.create(analyticsUrl + "/" + link.getShortUrl())).GET());
+            send(HttpRequest.newBuilder(URI.create(analyticsUrl + "/" + link.getShortUrl())).GET());
+
+            HttpResponse<String> series = send(HttpRequest.newBuilder(
+                    URI.create(analyticsUrl + "/api/analytics/" + link.getShortUrl())).GET());
+            HttpResponse<String> top = send(HttpRequest.newBuilder(
+                    URI.create(analyticsUrl + "/api/analytics/top?k=5&window=10")).GET());
+
+            assertEquals(200, series.statusCode());
+            assertTrue(series.body().contains(",2]}"), series.body());
+            assertEquals("[{\"shortUrl\":\"" + link.getShortUrl() + "\",\"visits\":2,\"error\":0}]", top.body());
+        } finally {
+            analytics.close();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws Exception {
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String extract(String json, String field) {
+        String marker = "\"" + field + "\":\"";
+        int start = json.indexOf(marker) + marker.length();
+        return json.substring(start, json.indexOf('"', start));
+    }
+
+    private static String readAtLeast(InputStream in, int responses) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        byte[] buf = new byte[4096];
+        while (count(sb.toString(), "HTTP/1.1 ") < responses) {
+            int read = in.read(buf);
+            if (read < 0) {
+                break;
+            }
+            sb.append(new String(buf, 0, read, StandardCharsets.US_ASCII));
+        }
+        return sb.toString();
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLinkServiceTest {
+
+    private static final int VIRTUAL_NODES = 64;
+
+    private final String testUserUuid = "test-user-1";
+    private final String testUrl = "https://example.com";
+    private final Clock clock = Clock.fixed(Instant.parse("2025-11-04T10:00:00Z"), ZoneId.of("UTC"));
+    private final List<ShardServer> servers = new ArrayList<>();
+    private final Map<String, LinkServiceImpl> backends = new HashMap<>();
+    private ShardedLinkService cluster;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Map<String, LinkService> shards = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            shards.put("shard-" + i, startShard("shard-" + i));
+        }
+        cluster = new ShardedLinkService(shards, VIRTUAL_NODES, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+        servers.forEach(ShardServer::close);
+        backends.values().forEach(LinkServiceImpl::close);
+    }
+
+    @Test
+    void operations_ShouldBeRoutedToOwningShard() {
+        Link link = cluster.create(testUrl, testUserUuid, 2);
+        String shortUrl = link.getShortUrl();
+        String owner = cluster.shardOf(shortUrl);
+
+        assertNotNull(backends.get(owner).get(shortUrl));
+        assertEquals(testUrl, cluster.resolveAndRegisterVisit(shortUrl));
+        assertEquals(1, cluster.getByShortUrl(shortUrl).orElseThrow().getVisitCount());
+        assertTrue(cluster.updateLimit(shortUrl, testUserUuid, 5));
+        assertEquals(5, backends.get(owner).get(shortUrl).getLimit());
+        assertFalse(cluster.delete(shortUrl, "another-user"));
+        assertTrue(cluster.delete(shortUrl, testUserUuid));
+        assertNull(cluster.resolveAndRegisterVisit(shortUrl));
+        assertNull(cluster.lookup("not-a-code"));
+    }
+
+    @Test
+    void create_ShouldSpreadLinksAcrossShards() {
+        for (int i = 0; i < 3000; i++) {
+            cluster.create(testUrl + "/" + i, testUserUuid, 10);
+        }
+
+        for (LinkServiceImpl backend : backends.values()) {
+            assertTrue(backend.size() > 500, "Шард получил слишком мало ссылок: " + backend.size());
+        }
+        assertEquals(3000, cluster.listByUser(testUserUuid, 0, Integer.MAX_VALUE).size());
+        assertEquals(10, cluster.listByUser(testUserUuid, 2990, 100).size());
+    }
+
+    @Test
+    void addShard_ShouldMoveOnlyKeysOfTakenRanges() throws IOException {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            codes.add(cluster.create(testUrl + "/" + i, testUserUuid, 10).getShortUrl());
+        }
+        cluster.resolveAndRegisterVisit(codes.get(0));
+        Map<String, String> ownersBefore = new HashMap<>();
+        for (String code : codes) {
+            ownersBefore.put(code, cluster.shardOf(code));
+        }
+
+        int moved = cluster.addShard("shard-3", startShard("shard-3"));
+
+        int changedOwner = 0;
+        for (String code : codes) {
+            String owner = cluster.shardOf(code);
+            if (!owner.equals(ownersBefore.get(code))) {
+                assertEquals("shard-3", owner, "Ключ может переехать только на новый шард");
+                changedOwner++;
+            }
+            assertNotNull(backends.get(owner).get(code));
+        }
+        assertEquals(changedOwner, moved);
+        assertEquals(moved, backends.get("shard-3").size());
+        assertTrue(moved > 400 && moved < 1200, "Перенесено ключей: " + moved);
+        assertEquals(1, cluster.getByShortUrl(codes.get(0)).orElseThrow().getVisitCount());
+    }
+
+    @Test
+    void removeShard_ShouldRedistributeItsLinks() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            codes.add(cluster.create(testUrl + "/" + i, testUserUuid, 10).getShortUrl());
+        }
+
+        cluster.removeShard("shard-1");
+
+        assertEquals(0, backends.get("shard-1").size());
+        for (String code : codes) {
+            assertNotEquals("shard-1", cluster.shardOf(code));
+            assertEquals(testUrl, cluster.lookup(code).getOriginalUrl().substring(0, testUrl.length()));
+        }
+        assertEquals(1000, cluster.deleteAllByUser(testUserUuid));
+    }
+
+    @Test
+    void addShard_ShouldRollBack_WhenLinkCannotBeMoved() throws IOException {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            codes.add(cluster.create(testUrl + "/" + i, testUserUuid, 10).getShortUrl());
+        }
+        ConsistentHashRing next = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), VIRTUAL_NODES);
+        String conflicting = null;
+        for (String code : codes) {
+            if (next.ownerOf(ShortCode.encode(code)).equals("shard-3")) {
+                conflicting = code;
+            }
+        }
+        assertNotNull(conflicting);
+        RemoteLinkService newShard = startShard("shard-3");
+        // На новом шарде код уже занят чужой ссылкой
+        long now = clock.millis();
+        backends.get("shard-3").importLink(new Link("https://example.org", ShortCode.encode(conflicting), "other-user", 5, now, now + 60_000));
+
+        assertThrows(IllegalStateException.class, () -> cluster.addShard("shard-3", newShard));
+
+        assertEquals(3, cluster.getShardCount());
+        assertEquals(1, backends.get("shard-3").size(), "Скопированные ссылки удалены с нового шарда");
+        for (String code : codes) {
+            assertNotEquals("shard-3", cluster.shardOf(code));
+            assertTrue(cluster.getByShortUrl(code).isPresent(), "Ссылка " + code + " осталась доступной");
+        }
+        newShard.close();
+    }
+
+    @Test
+    void scan_ShouldReportErrorRaisedMidStream() throws IOException {
+        LinkServiceImpl backend = new LinkServiceImpl(clock) {
+            @Override
+            public void forEachLink(Consumer<Link> action) {
+                super.forEachLink(action);
+                throw new IllegalStateException("обход прерван");
+            }
+        };
+        backend.create(testUrl, testUserUuid, 10);
+        ShardServer server = new ShardServer(backend, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        servers.add(server);
+        backends.put("failing", backend);
+        try (RemoteLinkService remote = new RemoteLinkService(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()))) {
+            List<Link> received = new ArrayList<>();
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> remote.forEachLink(received::add));
+
+            assertTrue(e.getMessage().contains("обход прерван"), e.getMessage());
+            assertEquals(1, received.size());
+            // Клиент остается работоспособным на новом соединении
+            assertEquals(testUrl, remote.lookup(received.get(0).getShortUrl()).getOriginalUrl());
+        }
+    }
+
+    private RemoteLinkService startShard(String id) throws IOException {
+        LinkServiceImpl backend = new LinkServiceImpl(clock);
+        ShardServer server = new ShardServer(backend, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        servers.add(server);
+        backends.put(id, backend);
+        return new RemoteLinkService(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitAnalyticsTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    // Начало часа, чтобы границы минут и часов совпадали с шагами теста
+    private final AtomicLong millis = new AtomicLong(480_000 * HOUR);
+
+    @Test
+    void series_ShouldBucketVisitsByMinuteAndHour() {
+        try (VisitAnalytics analytics = new VisitAnalytics(1024, 1024, 64, millis::get)) {
+            long code = ShortCode.random();
+            String shortUrl = ShortCode.decode(code);
+
+            analytics.record(code);
+            analytics.record(code);
+            millis.addAndGet(MINUTE);
+            analytics.record(code);
+            millis.addAndGet(2 * HOUR);
+            analytics.record(code);
+
+            int[] minutes = analytics.minuteSeries(shortUrl).getCounts();
+            assertEquals(1, minutes[59], "Текущая минута");
+            assertEquals(1, analytics.minuteSeries(shortUrl).getTotal(), "Переходы старше часа выпали из поминутного ряда");
+
+            int[] hours = analytics.hourSeries(shortUrl).getCounts();
+            assertEquals(1, hours[23]);
+            assertEquals(0, hours[22]);
+            assertEquals(3, hours[21]);
+
+            millis.addAndGet(24 * HOUR);
+            assertEquals(0, analytics.hourSeries(shortUrl).getTotal(), "Через сутки ряд пуст");
+            assertEquals(4, analytics.getProcessedCount());
+        }
+    }
+
+    @Test
+    void topLinks_ShouldFindHeavyHittersAmongManyLinks() {
+        try (VisitAnalytics analytics = new VisitAnalytics(1 << 20, 1024, 64, millis::get)) {
+            long hot = ShortCode.random();
+            long warm = ShortCode.random();
+            for (int round = 0; round < 100; round++) {
+                for (int i = 0; i < 10; i++) {
+                    analytics.record(hot);
+                }
+                for (int i = 0; i < 5; i++) {
+                    analytics.record(warm);
+                }
+                // Редкие ссылки вытесняют друг друга из наброска из 64 счетчиков
+                for (int i = 0; i < 20; i++) {
+                    analytics.record(ShortCode.random());
+                }
+            }
+
+            List<HotLink> top = analytics.topLinks(2, 5);
+
+            assertEquals(2, top.size());
+            assertEquals(ShortCode.decode(hot), top.get(0).getShortUrl());
+            assertEquals(ShortCode.decode(warm), top.get(1).getShortUrl());
+            HotLink first = top.get(0);
+            assertTrue(first.getVisits() >= 1000 && first.getVisits() - first.getError() <= 1000,
+                    "Настоящее число переходов внутри оценки: " + first);
+            assertEquals(1024, analytics.getTrackedLinks(), "Ряды хранятся не больше чем для max-links ссылок");
+        }
+    }
+
+    @Test
+    void topLinks_ShouldOnlyCountVisitsInsideWindow() {
+        try (VisitAnalytics analytics = new VisitAnalytics(1024, 1024, 64, millis::get)) {
+            long old = ShortCode.random();
+            long recent = ShortCode.random();
+            for (int i = 0; i < 100; i++) {
+                analytics.record(old);
+            }
+            millis.addAndGet(10 * MINUTE);
+            analytics.record(recent);
+
+            List<HotLink> lastFiveMinutes = analytics.topLinks(10, 5);
+            assertEquals(1, lastFiveMinutes.size());
+            assertEquals(ShortCode.decode(recent), lastFiveMinutes.get(0).getShortUrl());
+
+            assertEquals(ShortCode.decode(old), analytics.topLinks(10, 120).get(0).getShortUrl());
+        }
+    }
+
+    @Test
+    void record_ShouldDropEventsWhenBufferIsFull() {
+        try (VisitAnalytics analytics = new VisitAnalytics(2, 1024, 64, millis::get)) {
+            long code = ShortCode.random();
+            for (int i = 0; i < 100; i++) {
+                analytics.record(code);
+            }
+
+            assertTrue(analytics.getDroppedCount() > 0);
+            assertEquals(100, analytics.getDroppedCount() + analytics.minuteSeries(ShortCode.decode(code)).getTotal());
+        }
+    }
+
+    @Test
+    void decorator_ShouldRecordOnlySuccessfulRedirects() {
+        try (VisitAnalytics analytics = new VisitAnalytics(1024, 1024, 64, millis::get);
+             LinkService service = new AnalyticsLinkService(new LinkServiceImpl(), analytics)) {
+            String shortUrl = service.create("https://example.com", "test-user-1", 2).getShortUrl();
+
+            service.getOriginalUrlAndRegisterVisit(shortUrl);
+            service.getOriginalUrlAndRegisterVisit(shortUrl);
+            service.getOriginalUrlAndRegisterVisit(shortUrl);
+            service.getOriginalUrlAndRegisterVisit("missing1");
+
+            assertEquals(2, analytics.minuteSeries(shortUrl).getTotal(), "Переход сверх лимита не учитывается");
+        }
+    }
+}
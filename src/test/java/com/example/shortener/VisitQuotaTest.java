@@ -0,0 +1,61 @@
+package com.example.shortener;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitQuotaTest {
+
+    @Test
+    void tryAcquire_ShouldGrantExactlyQuotaAcrossThreads() throws Exception {
+        int quota = 100_000;
+        int threads = 8;
+        VisitQuota visitQuota = new VisitQuota(quota);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                int granted = 0;
+                for (int i = 0; i < quota; i++) {
+                    if (visitQuota.tryAcquire()) {
+                        granted++;
+                    }
+                }
+                return granted;
+            }));
+        }
+        start.countDown();
+        int total = 0;
+        for (Future<Integer> future : futures) {
+            total += future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(quota, total);
+        assertEquals(quota, visitQuota.used());
+        assertFalse(visitQuota.tryAcquire());
+    }
+
+    @Test
+    void close_ShouldRefuseFurtherVisitsAndKeepUsedCount() {
+        VisitQuota visitQuota = new VisitQuota(10);
+        assertTrue(visitQuota.tryAcquire());
+        assertTrue(visitQuota.tryAcquire());
+
+        visitQuota.close();
+
+        assertFalse(visitQuota.tryAcquire());
+        assertEquals(2, visitQuota.used());
+    }
+}